@@ -27,7 +27,7 @@ public class ClientMessageHandler extends MessageManager
         super(session);
         this.tcpClient = tcpClient;
 	buildMessageHandlers();
-	tcpClient.sendMessage(Message.handshake(tcpClient.playerName));
+	tcpClient.sendMessage(Message.handshake(tcpClient.playerName, WireFormat.preferred()));
     }
 
     private void buildMessageHandlers() {
@@ -35,6 +35,7 @@ public class ClientMessageHandler extends MessageManager
 	messageHandlers.put(MessageType.STOP_ACK, new StopAckMessageHandler());
 	messageHandlers.put(MessageType.GET_BATTLEFIELD, new GetBattlefieldMessageHandler());
 	messageHandlers.put(MessageType.STOP, new StopMessageHandler());
+	messageHandlers.put(MessageType.SYNC, new SyncMessageHandler());
 	messageHandlers.put(MessageType.SYNC_SENT, new SyncSentMessageHandler());
 	messageHandlers.put(MessageType.ASSIGN_ID, new AssignIDMessageHandler());
     }
@@ -70,18 +71,27 @@ public class ClientMessageHandler extends MessageManager
 	}
     }
 
+    private class SyncMessageHandler implements MessageHandler
+    {
+	public void handleMessage(final Message message) {
+	    tcpClient.getClientSession().synchronizeClient();
+	}
+    }
+
     private class SyncSentMessageHandler implements MessageHandler
     {
 	public void handleMessage(final Message message) {
-	    tcpClient.notifyNewGameModel();
+	    tcpClient.notifyNewGameModel(message.getSequenceArg(0));
 	}
     }
 
     private class AssignIDMessageHandler implements MessageHandler
     {
 	public void handleMessage(final Message message) {
-	    Team clientID = Team.valueOf(message.getArgs()[0]);
+	    Team clientID = message.getTeamArg(0);
 	    tcpClient.setConnectedTeam(clientID);
+	    // Servers from before the binary format don't name one, and only speak text.
+	    tcpClient.setWireFormat(message.getArgCount() > 1 ? WireFormat.parse(message.getTextArg(1)) : WireFormat.TEXT);
 	    LOGGER.log(Level.FINE, "Was assigned new connection ID: " + tcpClient.getConnectedTeam());
 	}
     }
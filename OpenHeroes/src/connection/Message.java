@@ -3,7 +3,6 @@ package connection;
 import entity.Interactable;
 import gamemodel.Team;
 
-import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,8 +16,10 @@ import java.util.logging.Logger;
  * Hash: Clients must send a copy of their GameModel hash with their message so that the server can validate it.
  * Clients do not attempt to validate the server GameModel hash.
  * <p>
- * Args: Message-specific arguments that inform the handling of that event. InteractableIDs, positions, etc.
- * Properly decoding these arguments is left to the message receiver, based on the MessageType.
+ * Args: Message-specific arguments that inform the handling of that event. InteractableIDs, teams, names, etc.
+ * Each argument is kept as the type its MessageType declares for it, so InteractableIDs and teams go from the
+ * factories to the binary wire format and back without being turned into text. Only the TEXT wire format and
+ * toString spell them out.
  * <p>
  * When communicating by Message, it's best to use the pre-defined static message functions to ensure
  * proper message structure. For this reason, the message constructor itself is private and static
@@ -29,39 +30,83 @@ public final class Message
     private static final Logger LOGGER = Logger.getLogger(Message.class.getName());
     private MessageType header;
     private Team sender = null;
-    private String hash = "0";
-    private String[] args;
+    private long hash = 0;
+    // The arguments by index, each in the array of its ArgType. An array is null if no argument has its type.
+    private final int argCount;
+    private final int[] ids;
+    private final Team[] teams;
+    private final String[] texts;
+    private final long[] sequences;
 
-    private Message(final MessageType header, final String... args) {
-	this.header = header;
-	this.args = args;
-	LOGGER.log(Level.FINEST, "Constructed a new message " + this);
+    private Message(final MessageType header, final int[] ids, final Team[] teams, final String[] texts) {
+	this(header, null, 0, ids, teams, texts, null);
     }
 
-    private Message(final MessageType header, final Team sender, final String hash, final String[] args) {
+    private Message(final MessageType header, final Team sender, final long hash, final int[] ids,
+		    final Team[] teams, final String[] texts, final long[] sequences)
+    {
 	this.header = header;
 	this.sender = sender;
 	this.hash = hash;
-	this.args = args;
-	LOGGER.log(Level.FINEST, "Constructed a new message " + this);
+	// Every array there is has a slot for each argument.
+	this.argCount = ids != null ? ids.length : teams != null ? teams.length : texts != null ? texts.length :
+			sequences != null ? sequences.length : 0;
+	this.ids = ids;
+	this.teams = teams;
+	this.texts = texts;
+	this.sequences = sequences;
+	LOGGER.log(Level.FINEST, "Constructed a new message {0}", this);
     }
 
+    /** Parses a message in the text wire format, or returns null if it isn't one. */
     public static Message parseMessage(String message) {
 
 	    String[] messageParts = message.split(";");
+	    if (messageParts.length < 3) {
+		return null;
+	    }
 
-	    for (MessageType messagetype : MessageType.values()) {
-		if (messagetype.name().equals(messageParts[0])) {
-		    Message constructedMessage = new Message(messagetype,
-						     Team.valueOf(messageParts[1]),
-						     messageParts[2],
-						     Arrays.copyOfRange(messageParts, 3, messageParts.length));
-
-		    assert constructedMessage.getArgs().length != messagetype.getExpectedArguments();
-		    return constructedMessage;
+	    try {
+		MessageType messagetype = MessageType.valueOf(messageParts[0]);
+		int argCount = messageParts.length - 3;
+		assert argCount <= messagetype.getExpectedArguments();
+		int[] ids = null;
+		Team[] teams = null;
+		String[] texts = null;
+		long[] sequences = null;
+		for (int index = 0; index < argCount; index++) {
+		    String part = messageParts[3 + index];
+		    switch (messagetype.getArgType(index)) {
+			case ID:
+			    ids = ids == null ? new int[argCount] : ids;
+			    ids[index] = Integer.parseInt(part);
+			    break;
+			case TEAM:
+			    teams = teams == null ? new Team[argCount] : teams;
+			    teams[index] = Team.valueOf(part);
+			    break;
+			case SEQUENCE:
+			    sequences = sequences == null ? new long[argCount] : sequences;
+			    sequences[index] = Long.parseLong(part);
+			    break;
+			default:
+			    texts = texts == null ? new String[argCount] : texts;
+			    texts[index] = part;
+		    }
 		}
+		return new Message(messagetype, Team.valueOf(messageParts[1]), Long.parseLong(messageParts[2]),
+				   ids, teams, texts, sequences);
+	    } catch (IllegalArgumentException e) {
+		// Also covers the NumberFormatException of a malformed hash or id.
+		return null;
 	    }
-	    return null;
+    }
+
+    /** A message read from the binary wire format, whose arguments the codec has already checked. */
+    static Message decoded(final MessageType header, final Team sender, final long hash, final int[] ids,
+			   final Team[] teams, final String[] texts, final long[] sequences)
+    {
+	return new Message(header, sender, hash, ids, teams, texts, sequences);
     }
 
     public MessageType getHeader() {
@@ -72,12 +117,46 @@ public final class Message
 	return sender;
     }
 
-    public String getHash() {
+    public long getHash() {
 	return hash;
     }
 
-    public String[] getArgs() {
-	return args;
+    public int getArgCount() {
+	return argCount;
+    }
+
+    /** The InteractableID at an index whose ArgType is ID. */
+    public int getIdArg(final int index) {
+	return ids[index];
+    }
+
+    /** The team at an index whose ArgType is TEAM. */
+    public Team getTeamArg(final int index) {
+	return teams[index];
+    }
+
+    /** The text at an index whose ArgType is TEXT. */
+    public String getTextArg(final int index) {
+	return texts[index];
+    }
+
+    /** The command sequence number at an index whose ArgType is SEQUENCE. */
+    public long getSequenceArg(final int index) {
+	return sequences[index];
+    }
+
+    /** The argument at the index as it is written in the text wire format. */
+    String formatArg(final int index) {
+	switch (header.getArgType(index)) {
+	    case ID:
+		return Integer.toString(ids[index]);
+	    case TEAM:
+		return teams[index].name();
+	    case SEQUENCE:
+		return Long.toString(sequences[index]);
+	    default:
+		return texts[index];
+	}
     }
 
     @Override public String toString() {
@@ -85,123 +164,150 @@ public final class Message
 
 	sb.append("[").append(header.name()).append(";").append(sender).append(";").append(hash);
 
-	for (final String arg : args) {
-	    sb.append(";").append(arg);
+	for (int index = 0; index < argCount; index++) {
+	    sb.append(";").append(formatArg(index));
 	}
 
 	return sb.append("]").toString();
     }
 
     public void rebrand(Team newSender) {
-	LOGGER.log(Level.FINEST, "Rebranding " + this);
+	LOGGER.log(Level.FINEST, "Rebranding {0}", this);
 	this.sender = newSender;
-	LOGGER.log(Level.FINEST, "Rebranded to " + this);
+	LOGGER.log(Level.FINEST, "Rebranded to {0}", this);
+    }
+
+    public void updateHash(final long newHash) {
+	this.hash = newHash;
     }
 
-    /* Convenience methods for translating data into message arguments. */
+    /* Convenience methods for building messages from their arguments. */
+
+    private static Message withoutArgs(final MessageType header) {
+	return new Message(header, null, null, null);
+    }
 
-    public static String translate(int integer) {
-	return Integer.toString(integer);
+    private static Message withIds(final MessageType header, final int... ids) {
+	return new Message(header, ids, null, null);
     }
 
-    public void updateHash(final int newHash) {
-	this.hash = translate(newHash);
+    private static Message withTeam(final MessageType header, final Team team) {
+	return new Message(header, null, new Team[] { team }, null);
     }
 
-    public static Message move( final String heroID) {
-	return new Message(MessageType.MOVE_HERO, heroID);
+    private static Message withSequence(final MessageType header, final long sequence) {
+	return new Message(header, null, 0, null, null, null, new long[] { sequence });
     }
 
-    public static Message heroBattle( final String actorID, final String targetID)
+    private static Message withTexts(final MessageType header, final String... texts) {
+	return new Message(header, null, null, texts);
+    }
+
+    public static Message move( final int heroID) {
+	return withIds(MessageType.MOVE_HERO, heroID);
+    }
+
+    public static Message heroBattle( final int actorID, final int targetID)
     {
-	return new Message(MessageType.HERO_BATTLE, actorID, targetID);
+	return withIds(MessageType.HERO_BATTLE, actorID, targetID);
     }
 
-    public static Message heroTrade( final String actorID, final String targetID)
+    public static Message heroTrade( final int actorID, final int targetID)
     {
-	return new Message(MessageType.HERO_TRADE, actorID, targetID);
+	return withIds(MessageType.HERO_TRADE, actorID, targetID);
     }
 
-    public static Message captureResource( final String heroID, final String resourceMineID)
+    public static Message captureResource( final int heroID, final int resourceMineID)
     {
-	return new Message(MessageType.CAPTURE_RESOURCE, heroID, resourceMineID);
+	return withIds(MessageType.CAPTURE_RESOURCE, heroID, resourceMineID);
     }
 
-    public static Message townBattle( final String heroID, final String townID)
+    public static Message townBattle( final int heroID, final int townID)
     {
-	return new Message(MessageType.TOWN_BATTLE, heroID, townID);
+	return withIds(MessageType.TOWN_BATTLE, heroID, townID);
     }
 
-    public static Message townInteract( final String heroID, final String townID)
+    public static Message townInteract( final int heroID, final int townID)
     {
-	return new Message(MessageType.TOWN_INTERACT, heroID, townID);
+	return withIds(MessageType.TOWN_INTERACT, heroID, townID);
     }
 
-    public static Message assignID(final Team team) {
-	return new Message(MessageType.ASSIGN_ID, team.name());
+    public static Message assignID(final Team team, final WireFormat wireFormat) {
+	return new Message(MessageType.ASSIGN_ID, null, new Team[] { team, null },
+			   new String[] { null, wireFormat.name() });
     }
 
     public static Message endBattle() {
-	return new Message(MessageType.END_BATTLE_TURN);
+	return withoutArgs(MessageType.END_BATTLE_TURN);
     }
 
     public static Message tradeConcluded() {
-	return new Message(MessageType.TRADE_CONCLUDED);
+	return withoutArgs(MessageType.TRADE_CONCLUDED);
     }
 
+    /** A request for the whole model. */
     public static Message sync() {
-	return new Message(MessageType.SYNC);
+	return withoutArgs(MessageType.SYNC);
+    }
+
+    /** A request for the commands applied since the model with the given sequence number. */
+    public static Message sync(final long sequence) {
+	return withSequence(MessageType.SYNC, sequence);
+    }
+
+    public static Message syncSent(final long sequence) {
+	return withSequence(MessageType.SYNC_SENT, sequence);
     }
 
-    public static Message syncSent() {
-	return new Message(MessageType.SYNC_SENT);
+    public static Message commandsSent(final long firstSequence) {
+	return withSequence(MessageType.COMMANDS_SENT, firstSequence);
     }
 
     public static Message stop() {
-	return new Message(MessageType.STOP);
+	return withoutArgs(MessageType.STOP);
     }
 
     public static Message stopAck() {
-	return new Message(MessageType.STOP_ACK);
+	return withoutArgs(MessageType.STOP_ACK);
     }
 
-    public static Message handshake(final String playerName) {
-	return new Message(MessageType.HANDSHAKE, playerName);
+    public static Message handshake(final String playerName, final WireFormat wireFormat) {
+	return withTexts(MessageType.HANDSHAKE, playerName, wireFormat.name());
     }
 
     public static Message getBattlefield() {
-	return new Message(MessageType.GET_BATTLEFIELD);
+	return withoutArgs(MessageType.GET_BATTLEFIELD);
     }
 
     public static Message endTurn() {
-	return new Message(MessageType.TURN_END);
+	return withoutArgs(MessageType.TURN_END);
     }
 
     public static Message surrender() {
-	return new Message(MessageType.SURRENDER);
+	return withoutArgs(MessageType.SURRENDER);
     }
 
     public static Message teamDefeated( final Team defeatedTeam) {
-	return new Message(MessageType.TEAM_DEFEATED, defeatedTeam.name());
+	return withTeam(MessageType.TEAM_DEFEATED, defeatedTeam);
     }
 
-    public static Message heroDefeated( final String heroID) {
-	return new Message(MessageType.HERO_DEFEATED, heroID);
+    public static Message heroDefeated( final int heroID) {
+	return withIds(MessageType.HERO_DEFEATED, heroID);
     }
 
     public static Message connectionLost() {
-        return new Message(MessageType.CONNECTION_LOST);
+        return withoutArgs(MessageType.CONNECTION_LOST);
     }
 
     public static Message playerDisconnected(final Team team) {
-        return new Message(MessageType.PLAYER_DISCONNECTED, team.name());
+        return withTeam(MessageType.PLAYER_DISCONNECTED, team);
     }
 
     public static Message buyHero(final Interactable interactable) {
-        return new Message(MessageType.BUY_HERO, interactable.getInteractableID());
+        return withIds(MessageType.BUY_HERO, interactable.getInteractableID());
     }
 
-    public static Message addHero(final Team team, final String townID) {
-        return new Message(MessageType.ADD_HERO, team.name(), townID);
+    public static Message addHero(final Team team, final int townID) {
+        return new Message(MessageType.ADD_HERO, new int[] { 0, townID }, new Team[] { team, null }, null);
     }
 }
@@ -0,0 +1,319 @@
+package connection;
+
+import gamemodel.Team;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes Messages to a stream and reads them back, in either WireFormat.
+ * <p>
+ * A binary frame is FRAME_MARKER, the length of the rest of the frame as a varint, the
+ * ordinals of the MessageType and the sending Team as a byte each, the hash as eight
+ * bytes, and the number of arguments as a varint followed by the arguments. How an
+ * argument is encoded depends on its ArgType in the MessageType: ids are zigzag varints,
+ * so that NO_ID stays short, teams are their ordinal as a varint, sequence numbers are
+ * varints of up to 64 bits, and text is its UTF-8 length as a varint followed by the
+ * bytes. A text message is a line of the fields separated by semicolons, which always
+ * starts with the ASCII name of its type and so never with FRAME_MARKER.
+ * <p>
+ * A codec reuses a single buffer for everything it writes or reads, so it must only be
+ * used by one thread at a time, and a connection needs one for each direction.
+ */
+final class MessageCodec
+{
+    static final int FRAME_MARKER = 0x80;
+    // Frames and lines longer than this are taken to be garbage rather than read into memory.
+    private static final int MAX_FRAME_BYTES = 1 << 16;
+    // Room for the marker and the longest varint length, which are put in front of the rest last.
+    private static final int HEADER_ROOM = 1 + 5;
+    private static final MessageType[] TYPES = MessageType.values();
+    private static final Team[] TEAMS = Team.values();
+
+    private byte[] buffer = new byte[128];
+    private int size = 0;
+    // Where decode is in the frame, and where the frame ends.
+    private int position = 0;
+    private int limit = 0;
+
+    /** Writes the message as a single binary frame, with one write to the stream. */
+    void writeFrame(final Message message, final OutputStream out) throws IOException {
+	size = HEADER_ROOM;
+	MessageType header = message.getHeader();
+	putByte(header.ordinal());
+	putByte(message.getSender().ordinal());
+	putLong(message.getHash());
+	int argCount = message.getArgCount();
+	putVarint(argCount);
+	for (int index = 0; index < argCount; index++) {
+	    putArg(header.getArgType(index), message, index);
+	}
+	int bodyLength = size - HEADER_ROOM;
+	int start = HEADER_ROOM - 1 - varintSize(bodyLength);
+	buffer[start] = (byte) FRAME_MARKER;
+	int end = size;
+	size = start + 1;
+	putVarint(bodyLength);
+	out.write(buffer, start, end - start);
+    }
+
+    /** Writes the message as a single line of text, with one write to the stream. */
+    void writeText(final Message message, final OutputStream out) throws IOException {
+	StringBuilder line = new StringBuilder();
+	line.append(message.getHeader().name()).append(';').append(message.getSender()).append(';')
+		.append(message.getHash());
+	for (int index = 0; index < message.getArgCount(); index++) {
+	    line.append(';').append(message.formatArg(index));
+	}
+	line.append('\n');
+	byte[] bytes = line.toString().getBytes(StandardCharsets.ISO_8859_1);
+	out.write(bytes);
+    }
+
+    /**
+     * Reads the next message, in whichever format it was sent.
+     *
+     * @return the message, or null if it couldn't be made sense of. Its bytes have been
+     * read either way, so the next message can be read after it.
+     * @throws EOFException once the stream has ended.
+     */
+    Message read(final InputStream in) throws IOException {
+	int first = in.read();
+	if (first == -1) {
+	    throw new EOFException();
+	}
+	if (first == FRAME_MARKER) {
+	    int length = readVarint(in);
+	    if (length < 0 || length > MAX_FRAME_BYTES) {
+		throw new IOException("Frame of " + length + " bytes is out of bounds");
+	    }
+	    size = 0;
+	    ensureCapacity(length);
+	    int read = 0;
+	    while (read < length) {
+		int count = in.read(buffer, read, length - read);
+		if (count == -1) {
+		    throw new EOFException();
+		}
+		read += count;
+	    }
+	    return decode(length);
+	}
+	size = 0;
+	for (int next = first; next != '\n'; next = in.read()) {
+	    if (next == -1) {
+		throw new EOFException();
+	    }
+	    if (size == MAX_FRAME_BYTES) {
+		throw new IOException("Message line is longer than " + MAX_FRAME_BYTES + " bytes");
+	    }
+	    if (next != '\r') {
+		putByte(next);
+	    }
+	}
+	return Message.parseMessage(new String(buffer, 0, size, StandardCharsets.ISO_8859_1));
+    }
+
+    private Message decode(final int length) {
+	position = 0;
+	limit = length;
+	try {
+	    int typeOrdinal = getByte();
+	    int senderOrdinal = getByte();
+	    if (typeOrdinal >= TYPES.length || senderOrdinal >= TEAMS.length) {
+		return null;
+	    }
+	    MessageType header = TYPES[typeOrdinal];
+	    long hash = getLong();
+	    int argCount = getVarint();
+	    if (argCount < 0 || argCount > limit - position) {
+		return null;
+	    }
+	    // The arguments go straight into the slots of their type, which are only made for types there are.
+	    int[] ids = null;
+	    Team[] teams = null;
+	    String[] texts = null;
+	    long[] sequences = null;
+	    for (int index = 0; index < argCount; index++) {
+		switch (header.getArgType(index)) {
+		    case ID:
+			ids = ids == null ? new int[argCount] : ids;
+			ids[index] = getId();
+			break;
+		    case TEAM:
+			teams = teams == null ? new Team[argCount] : teams;
+			teams[index] = getTeam();
+			break;
+		    case SEQUENCE:
+			sequences = sequences == null ? new long[argCount] : sequences;
+			sequences[index] = getVarlong();
+			break;
+		    default:
+			texts = texts == null ? new String[argCount] : texts;
+			texts[index] = getText();
+		}
+	    }
+	    if (position != limit) {
+		return null;
+	    }
+	    return Message.decoded(header, TEAMS[senderOrdinal], hash, ids, teams, texts, sequences);
+	} catch (MalformedFrame e) {
+	    return null;
+	}
+    }
+
+    private void putArg(final MessageType.ArgType argType, final Message message, final int index) {
+	switch (argType) {
+	    case ID:
+		int id = message.getIdArg(index);
+		putVarint((id << 1) ^ (id >> 31));
+		break;
+	    case TEAM:
+		putVarint(message.getTeamArg(index).ordinal());
+		break;
+	    case SEQUENCE:
+		putVarlong(message.getSequenceArg(index));
+		break;
+	    default:
+		byte[] bytes = message.getTextArg(index).getBytes(StandardCharsets.UTF_8);
+		putVarint(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, size, bytes.length);
+		size += bytes.length;
+	}
+    }
+
+    private int getId() throws MalformedFrame {
+	int zigzag = getVarint();
+	return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private Team getTeam() throws MalformedFrame {
+	int ordinal = getVarint();
+	if (ordinal < 0 || ordinal >= TEAMS.length) {
+	    throw new MalformedFrame();
+	}
+	return TEAMS[ordinal];
+    }
+
+    private String getText() throws MalformedFrame {
+	int length = getVarint();
+	if (length < 0 || length > limit - position) {
+	    throw new MalformedFrame();
+	}
+	String text = new String(buffer, position, length, StandardCharsets.UTF_8);
+	position += length;
+	return text;
+    }
+
+    private void putByte(final int value) {
+	ensureCapacity(1);
+	buffer[size++] = (byte) value;
+    }
+
+    private void putLong(final long value) {
+	for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+	    putByte((int) (value >>> shift));
+	}
+    }
+
+    /** Seven bits at a time, lowest first, with the top bit set on every byte but the last. */
+    private void putVarint(final int value) {
+	int rest = value;
+	while ((rest & ~0x7F) != 0) {
+	    putByte((rest & 0x7F) | 0x80);
+	    rest >>>= 7;
+	}
+	putByte(rest);
+    }
+
+    private void putVarlong(final long value) {
+	long rest = value;
+	while ((rest & ~0x7FL) != 0) {
+	    putByte((int) (rest & 0x7F) | 0x80);
+	    rest >>>= 7;
+	}
+	putByte((int) rest);
+    }
+
+    private static int varintSize(final int value) {
+	int bytes = 1;
+	for (int rest = value >>> 7; rest != 0; rest >>>= 7) {
+	    bytes++;
+	}
+	return bytes;
+    }
+
+    private int getByte() throws MalformedFrame {
+	if (position >= limit) {
+	    throw new MalformedFrame();
+	}
+	return buffer[position++] & 0xFF;
+    }
+
+    private long getLong() throws MalformedFrame {
+	long value = 0;
+	for (int index = 0; index < Long.BYTES; index++) {
+	    value = (value << Byte.SIZE) | getByte();
+	}
+	return value;
+    }
+
+    private int getVarint() throws MalformedFrame {
+	int value = 0;
+	for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+	    int next = getByte();
+	    value |= (next & 0x7F) << shift;
+	    if ((next & 0x80) == 0) {
+		return value;
+	    }
+	}
+	throw new MalformedFrame();
+    }
+
+    private long getVarlong() throws MalformedFrame {
+	long value = 0;
+	for (int shift = 0; shift < Long.SIZE; shift += 7) {
+	    int next = getByte();
+	    value |= (long) (next & 0x7F) << shift;
+	    if ((next & 0x80) == 0) {
+		return value;
+	    }
+	}
+	throw new MalformedFrame();
+    }
+
+    private static int readVarint(final InputStream in) throws IOException {
+	int value = 0;
+	for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+	    int next = in.read();
+	    if (next == -1) {
+		throw new EOFException();
+	    }
+	    value |= (next & 0x7F) << shift;
+	    if ((next & 0x80) == 0) {
+		return value;
+	    }
+	}
+	throw new IOException("Frame length is not a varint");
+    }
+
+    private void ensureCapacity(final int more) {
+	if (size + more > buffer.length) {
+	    byte[] larger = new byte[Integer.max(buffer.length * 2, size + more)];
+	    System.arraycopy(buffer, 0, larger, 0, size);
+	    buffer = larger;
+	}
+    }
+
+    /** Thrown while decoding a frame whose contents don't add up. Never leaves the codec. */
+    private static final class MalformedFrame extends Exception
+    {
+	private MalformedFrame() {
+	    super(null, null, false, false);
+	}
+    }
+}
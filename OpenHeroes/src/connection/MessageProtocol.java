@@ -7,8 +7,9 @@ import gamemodel.Team;
 import resources.GameResourceManager;
 import resources.SocketGenerationException;
 
-import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -41,6 +42,9 @@ public abstract class MessageProtocol implements Runnable
 
     private final ObjectOutputStream dataOut;
     private final DataOutputStream messageOut;
+    // Only used while holding the lock on messageOut.
+    private final MessageCodec encoder = new MessageCodec();
+    private volatile WireFormat wireFormat = WireFormat.TEXT;
     protected final ObjectInputStream dataIn;
     private final String socketID;
 
@@ -77,6 +81,16 @@ public abstract class MessageProtocol implements Runnable
     	return socketID;
     }
 
+    public WireFormat getWireFormat() {
+	return wireFormat;
+    }
+
+    /** Picks the format of the messages sent from now on. Those received may come in either. */
+    protected void setWireFormat(final WireFormat wireFormat) {
+	LOGGER.log(Level.FINE, "Sending messages as " + wireFormat + " on interface " + connectedTeam);
+	this.wireFormat = wireFormat;
+    }
+
     protected Message readMessage() throws InterruptedException {
         return messageQueue.take();
     }
@@ -85,11 +99,15 @@ public abstract class MessageProtocol implements Runnable
     public void sendMessage(Message message) throws IOException {
 	message.rebrand(connectedTeam);
 	LOGGER.log(Level.INFO, "Sending message " + message);
-	messageOut.writeBytes(message.getHeader() + ";" + connectedTeam + ";" + message.getHash());
-	for (String arg : message.getArgs()) {
-	    messageOut.writeBytes(";" + arg);
+	// Messages are sent from more than one thread, and each must reach the socket in one piece.
+	synchronized (messageOut) {
+	    if (wireFormat == WireFormat.BINARY && message.getHeader() != MessageType.HANDSHAKE) {
+		encoder.writeFrame(message, messageOut);
+	    } else {
+		encoder.writeText(message, messageOut);
+	    }
+	    messageOut.flush();
 	}
-	messageOut.writeBytes("\n");
     }
 
     public void terminate() throws IOException {
@@ -137,7 +155,7 @@ public abstract class MessageProtocol implements Runnable
 	chainQueue.add(message);
     }
 
-    public void sendChainMessage(final int newHash) throws IOException {
+    public void sendChainMessage(final long newHash) throws IOException {
 	Message chainMessage = chainQueue.poll();
 	if (chainMessage != null) {
 	    chainMessage.updateHash(newHash);
@@ -163,19 +181,19 @@ public abstract class MessageProtocol implements Runnable
     }
 
     /**
-     * The TCPListener class listens for String-formatted Message objects on a
-     * BufferedReader.
+     * The TCPListener class listens for Message objects on the message socket, in either
+     * WireFormat.
      * <p>
-     * If a line is read, we attempt to parse it as a Message. If successful, we deposit
-     * it into a BlockingQueue. The BlockingQueue can then be polled by an underlying
-     * TCPServer or TCPClient as a blocking action.
+     * If a message is read, we deposit it into a BlockingQueue. The BlockingQueue can then
+     * be polled by an underlying TCPServer or TCPClient as a blocking action.
      * <p>
-     * If we fail to recognize the read String as a Message, it is simply discarded
+     * If we fail to recognize what was read as a Message, it is simply discarded
      * and the TCPListener resumes listening.
      */
     private final class TCPListener implements Runnable
     {
-	private final BufferedReader messageIn;
+	private final DataInputStream messageIn;
+	private final MessageCodec decoder = new MessageCodec();
 
 	private TCPListener() throws IOException, SocketGenerationException {
 	    this.messageIn = GameResourceManager.instance().getMessageIn(socketID);
@@ -184,13 +202,13 @@ public abstract class MessageProtocol implements Runnable
 	@Override public void run() {
 	    try {
 		while (!Thread.interrupted()) {
-		    String s = messageIn.readLine();
-
-		    if (s == null) {
+		    Message m;
+		    try {
+			m = decoder.read(messageIn);
+		    } catch (EOFException e) {
 			break;
 		    }
 
-		    Message m = Message.parseMessage(s);
 		    if (m != null) {
 			LOGGER.log(Level.FINER, "Adding message on TCPListener interface " + connectedTeam);
 			messageQueue.add(m);
@@ -202,12 +220,12 @@ public abstract class MessageProtocol implements Runnable
 	    } catch (IOException e) {
 
 		/*
-		 * Because of how BufferedReader is implemented it is not possible to interrupt it normally using
-		 * interrupt(). The only way to halt the TCPListener thread once it has entered the readLine()
-		 * call is to close the socket providing the underlying stream, which will throw an IOException.
+		 * Because of how socket streams are implemented it is not possible to interrupt them normally using
+		 * interrupt(). The only way to halt the TCPListener thread once it has entered a blocking read
+		 * is to close the socket providing the underlying stream, which will throw an IOException.
 		 */
 
-		LOGGER.log(Level.INFO, "BufferedReader socket was closed suddenly. This is okay at the end of a game.", e);
+		LOGGER.log(Level.INFO, "Message socket was closed suddenly. This is okay at the end of a game.", e);
 		Message lostConnectionMessage = Message.connectionLost();
 		lostConnectionMessage.rebrand(connectedTeam);
 		messageQueue.add(lostConnectionMessage);
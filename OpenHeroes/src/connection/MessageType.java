@@ -1,72 +1,108 @@
 package connection;
 
+import static connection.MessageType.ArgType.*;
+
 /**
- * Enumerators to help classify valid messageTypes. Each messageType declares how many
- * arguments they should be sent with. This is used to perform some rudimentary sanity
- * checks in the message protocol.
+ * Enumerators to help classify valid messageTypes. Each messageType declares the types of
+ * the arguments they should be sent with. These decide how the arguments are encoded in
+ * the binary wire format, and are used to perform some rudimentary sanity checks in the
+ * message protocol.
  */
 public enum MessageType
 {
-    /** A request from the client to synchronize the GameModel. */
-    SYNC(0),
-    /** A command from the server to resynchronize the GameModel. */
-    SYNC_SENT(0),
+    /**
+     * A request from the client to synchronize the GameModel, with the sequence number of the
+     * last model it was sent if it kept that model. From the server, a request to the client to
+     * send one.
+     */
+    SYNC(SEQUENCE),
+    /** A command from the server to resynchronize the GameModel, with the sequence number of the model sent. */
+    SYNC_SENT(SEQUENCE),
     /** Due notice to the receiver that this end of the connection intends to close. */
-    STOP(0),
+    STOP(),
     /** Acknowledgement from any side of the connection that they are about to shut down. */
-    STOP_ACK(0),
+    STOP_ACK(),
     /** A request to move the hero. Tentative if from a client, authorative if from the server. */
-    MOVE_HERO(2),
-    /** A client requesting a connection ID from the server, as well as an initial GameModel. */
-    HANDSHAKE(0),
+    MOVE_HERO(ID),
+    /**
+     * A client requesting a connection ID from the server, as well as an initial GameModel.
+     * Always sent as text, with the player name and the wire format the client would like.
+     */
+    HANDSHAKE(TEXT, TEXT),
     /** A server command telling a client to read a new battlefield map. */
-    GET_BATTLEFIELD(0),
+    GET_BATTLEFIELD(),
     /** A request to end the current turn. Tentative if from a client, authorative if from the server. */
-    TURN_END(0),
+    TURN_END(),
     /** A request to fight a map entity. Tentative if from a client, authorative if from the server. */
-    FIGHT_MOB(0),
+    FIGHT_MOB(),
     /** Serverside declaration that a hero was defeated. */
-    HERO_DEFEATED(1),
+    HERO_DEFEATED(ID),
     /** A request to capture a map resource feature. Tentative if from a client, authorative if from the server. */
-    CAPTURE_RESOURCE(2),
+    CAPTURE_RESOURCE(ID, ID),
     /** A request to attack a town. Tentative if from a client, authorative if from the server. */
-    TOWN_BATTLE(2),
+    TOWN_BATTLE(ID, ID),
     /** A client wants to send a hero into a friendly town . */
-    TOWN_INTERACT(2),
+    TOWN_INTERACT(ID, ID),
     /** Serverside declaration that a town was captured. */
-    TOWN_CAPTURED(2),
+    TOWN_CAPTURED(ID, ID),
     /** A request to attack another hero. Tentative if from a client, authorative if from the server. */
-    HERO_BATTLE(2),
+    HERO_BATTLE(ID, ID),
     /** A request to trade with another hero. Tentative if from a client, authorative if from the server. */
-    HERO_TRADE(2),
+    HERO_TRADE(ID, ID),
     /** Informs the server that the client is done trading between heroes. */
-    TRADE_CONCLUDED(0),
+    TRADE_CONCLUDED(),
     /** A serverside declaration that a team was defeated. */
-    TEAM_DEFEATED(1),
+    TEAM_DEFEATED(TEAM),
     /** A serverside declaration that a team has won the game. */
-    VICTORY(1),
-    /** An assignment of connection ID from the server. */
-    ASSIGN_ID(2),
+    VICTORY(TEAM),
+    /** An assignment of connection ID from the server, along with the wire format both ends use from then on. */
+    ASSIGN_ID(TEAM, TEXT),
     /** End a battlefield turn. */
-    END_BATTLE_TURN(0),
+    END_BATTLE_TURN(),
     /** Surrender the game. */
-    SURRENDER(0),
+    SURRENDER(),
     /** Error Message sent by a TCPListener when it has lost connection. */
-    CONNECTION_LOST(0),
+    CONNECTION_LOST(),
     /** Notify a client that another client has lost connection. */
-    PLAYER_DISCONNECTED(1),
+    PLAYER_DISCONNECTED(TEAM),
     /** Buy a new hero */
-    BUY_HERO(1),
+    BUY_HERO(ID),
     /** Read a new hero from the server */
-    ADD_HERO(2);
+    ADD_HERO(TEAM, ID),
+    /**
+     * The commands applied on the server from the given sequence number on, for a client to
+     * apply to the last model it was sent. The hash is that of the model they lead to.
+     */
+    COMMANDS_SENT(SEQUENCE);
+
+    /**
+     * What an argument of a message stands for, which decides how it is encoded in the
+     * binary wire format.
+     */
+    public enum ArgType
+    {
+	/** An InteractableID, sent as a varint. */
+	ID,
+	/** The name of a Team, sent as its ordinal. */
+	TEAM,
+	/** Free text such as a player name, sent as UTF-8. */
+	TEXT,
+	/** The sequence number of a command in a CommandLog, sent as a varint. */
+	SEQUENCE
+    }
 
-    private final int expectedArguments;
+    private final ArgType[] arguments;
 
-    MessageType(final int expectedArguments) {
-	this.expectedArguments = expectedArguments;
+    MessageType(final ArgType... arguments) {
+	this.arguments = arguments;
     }
 
     public int getExpectedArguments() {
-	return expectedArguments;
+	return arguments.length;
+    }
+
+    /** The type of the argument at the index. Arguments past the expected ones are sent as text. */
+    public ArgType getArgType(final int index) {
+	return index < arguments.length ? arguments[index] : ArgType.TEXT;
     }
 }
@@ -1,8 +1,11 @@
 package connection;
 
 import gamelogic.GameHandler;
+import gamemodel.GameCommand;
+import gamemodel.GameModel;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * MessageHandler class for server-specific messages.
@@ -32,11 +35,25 @@ public class ServerMessageHandler extends MessageManager
 	messageHandlers.getOrDefault(message.getHeader(), defaultMessageHandler).handleMessage(message);
     }
 
-    public void sendGameModel() throws IOException {
+    /** Sends the model, and the sequence number of the next command that will be applied to it. */
+    public void sendGameModel(final GameModel gameModel, final long sequence) throws IOException {
 	synchronized (tcpServer.dataOut) {
 	    tcpServer.dataOut.reset();
-	    tcpServer.sendMessage(Message.syncSent());
-	    tcpServer.dataOut.writeObject(tcpServer.serverSession.getGameModel());
+	    tcpServer.sendMessage(Message.syncSent(sequence));
+	    tcpServer.dataOut.writeObject(gameModel);
+	}
+    }
+
+    /** Sends the commands from the sequence number on, and the hash of the model they lead to. */
+    public void sendCommands(final long firstSequence, final List<GameCommand> commands, final long hash)
+	    throws IOException
+    {
+	synchronized (tcpServer.dataOut) {
+	    tcpServer.dataOut.reset();
+	    Message message = Message.commandsSent(firstSequence);
+	    message.updateHash(hash);
+	    tcpServer.sendMessage(message);
+	    tcpServer.dataOut.writeObject(commands);
 	}
     }
 
@@ -50,7 +67,11 @@ public class ServerMessageHandler extends MessageManager
     {
 
 	public void handleMessage(final Message message) throws IOException {
-	    tcpServer.serverMessageHandler.sendGameModel();
+	    if (message.getArgCount() > 0) {
+		tcpServer.serverSession.synchronizeClient(tcpServer, message.getSequenceArg(0));
+	    } else {
+		tcpServer.serverSession.synchronizeClient(tcpServer);
+	    }
 	}
     }
 
@@ -66,9 +87,12 @@ public class ServerMessageHandler extends MessageManager
     {
 	public void handleMessage(final Message message) throws IOException {
 	    tcpServer.setConnectedTeam(tcpServer.getServerSession().nextClientID());
-	    tcpServer.getServerSession().addPlayer(tcpServer, message.getArgs()[0], tcpServer.getConnectedTeam());
-	    tcpServer.sendMessage(Message.assignID(tcpServer.getConnectedTeam()));
-	    tcpServer.serverMessageHandler.sendGameModel();
+	    tcpServer.getServerSession().addPlayer(tcpServer, message.getTextArg(0), tcpServer.getConnectedTeam());
+	    // The client reads either format, so the answer can already be sent in the one it asked for.
+	    WireFormat wireFormat = message.getArgCount() > 1 ? WireFormat.parse(message.getTextArg(1)) : WireFormat.TEXT;
+	    tcpServer.setWireFormat(wireFormat);
+	    tcpServer.sendMessage(Message.assignID(tcpServer.getConnectedTeam(), wireFormat));
+	    tcpServer.serverSession.synchronizeClient(tcpServer);
 	}
     }
 
@@ -6,7 +6,8 @@ package connection;
  */
 public interface SynchronizationListener
 {
-    public void synchronizeGameModel();
+    /** Reads the model sent, whose next command will have the given sequence number. */
+    public void synchronizeGameModel(final long sequence);
 
     public void synchronizeBattlefield();
 }
@@ -64,9 +64,9 @@ public class TCPClient extends MessageProtocol
 
 
 
-    public void notifyNewGameModel() {
+    public void notifyNewGameModel(final long sequence) {
 	for (SynchronizationListener sl : syncListeners) {
-	    sl.synchronizeGameModel();
+	    sl.synchronizeGameModel(sequence);
 	}
     }
 
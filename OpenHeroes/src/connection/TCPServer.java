@@ -2,11 +2,14 @@ package connection;
 
 
 import gamelogic.ServerSession;
+import gamemodel.GameCommand;
+import gamemodel.GameModel;
 import resources.GameResourceManager;
 import resources.SocketGenerationException;
 
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,8 +71,14 @@ public class TCPServer extends MessageProtocol
 	return serverSession;
     }
 
-    public void sendGameModel() throws IOException {
-	serverMessageHandler.sendGameModel();
+    public void sendGameModel(final GameModel gameModel, final long sequence) throws IOException {
+	serverMessageHandler.sendGameModel(gameModel, sequence);
+    }
+
+    public void sendCommands(final long firstSequence, final List<GameCommand> commands, final long hash)
+	    throws IOException
+    {
+	serverMessageHandler.sendCommands(firstSequence, commands, hash);
     }
 
     public void sendBattlefield() throws IOException {
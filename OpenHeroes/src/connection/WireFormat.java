@@ -0,0 +1,31 @@
+package connection;
+
+/**
+ * The formats Messages can be sent in. Every message says which format it is in by its
+ * first byte, so either end of a connection reads both, and the ends only have to agree on
+ * what they send. They do so at the handshake, which is always sent as text.
+ */
+public enum WireFormat
+{
+    /** Lines of semicolon separated fields, as readable in a packet capture as in a log. For debugging. */
+    TEXT,
+    /** Length prefixed frames with the type as a byte and the arguments as varints. */
+    BINARY;
+
+    private static final String PROPERTY = "openheroes.wireFormat";
+
+    /** The format a client asks for: binary, unless the openheroes.wireFormat system property says TEXT. */
+    public static WireFormat preferred() {
+	return parse(System.getProperty(PROPERTY, BINARY.name()));
+    }
+
+    /** The format of the given name, or TEXT for one this version doesn't know. */
+    public static WireFormat parse(final String name) {
+	for (WireFormat wireFormat : values()) {
+	    if (wireFormat.name().equalsIgnoreCase(name)) {
+		return wireFormat;
+	    }
+	}
+	return TEXT;
+    }
+}
@@ -20,8 +20,8 @@ public class Hero extends Mover
     private String imagePath;
     private String heroName;
 
-    public Hero(final String imagePath, final int maxMoveLength, final String heroName) {
-	super(imagePath, new Passability[][] { { Passability.IMPASSABLE } }, new Position(0, 0), maxMoveLength);
+    public Hero(final String imagePath, final int maxMoveLength, final int sightRadius, final String heroName) {
+	super(imagePath, new Passability[][] { { Passability.IMPASSABLE } }, Position.of(0, 0), maxMoveLength, sightRadius);
 	this.heroName = heroName;
 	this.imagePath = imagePath;
     }
@@ -49,7 +49,8 @@ public class Hero extends Mover
 	if (this == o) return true;
 	if (o == null || !Objects.equals(getClass(), o.getClass())) return false;
 	final Mover hero = (Mover) o;
-	return Objects.equals(getInteractableID(), hero.getInteractableID());
+	// Heroes that haven't joined the game yet are all without an id, and only equal to themselves.
+	return getInteractableID() != NO_ID && getInteractableID() == hero.getInteractableID();
     }
 
     @Override public int hashCode() {
@@ -12,6 +12,7 @@ public final class HeroFactory
 {
 
     private static final int STANDARD_MAX_MOVE = 20;
+    private static final int STANDARD_SIGHT_RADIUS = 4;
 
     private HeroFactory() {}
 
@@ -21,6 +22,11 @@ public final class HeroFactory
 		    "Kit the Hungry" };
 
     public static Hero makeHero() {
-	return new Hero("img/horse.png", STANDARD_MAX_MOVE, heroNames[ThreadLocalRandom.current().nextInt(heroNames.length)]);
+	return makeHero(heroNames[ThreadLocalRandom.current().nextInt(heroNames.length)]);
+    }
+
+    /** Makes the hero of the given name again, as when a game is replayed. */
+    public static Hero makeHero(final String heroName) {
+	return new Hero("img/horse.png", STANDARD_MAX_MOVE, STANDARD_SIGHT_RADIUS, heroName);
     }
 }
@@ -31,19 +31,20 @@ import static view.HeroesFrame.PIXEL_TILE_SIZE;
  * for when we are left clicked, right clicked, and if we are directly interacted
  * with by another Interactable.
  * <p>
- * Also of note is that all Interactables are provided an unique InteractableID
- * through the superconstructor that allows us to identify it later using the
+ * Also of note is that the GameModel gives every Interactable it holds an InteractableID
+ * that is unique within that game, which allows us to identify it later using the
  * MessageProtocol.
  */
 public abstract class Interactable implements Serializable
 {
+    /** The InteractableID of an Interactable that isn't part of a game. */
+    public static final int NO_ID = -1;
     private final static Logger LOGGER = Logger.getLogger(Interactable.class.getName());
     private Position interactionPointOffset;
     private Position interactionPoint = null;
     private Position position = null;
     private Passability[][] passabilityMap;
-    private static int idCounter = 0;
-    private final String interactableID;
+    private int interactableID = NO_ID;
     private final String imagePath;
     private transient BufferedImage image;
     private Team owner = Team.NEUTRAL;
@@ -55,7 +56,6 @@ public abstract class Interactable implements Serializable
 	this.imagePath = imagePath;
 	this.image = getImage();
 	this.passabilityMap = passabilityMap;
-	this.interactableID = getNewID();
 	this.interactionPointOffset = interactionPointOffset;
     }
 
@@ -78,12 +78,6 @@ public abstract class Interactable implements Serializable
 
     public abstract InteractionType leftClick(final Team team);
 
-    private static String getNewID() {
-	String stringId = Integer.toString(idCounter);
-	idCounter++;
-	return stringId;
-    }
-
     public Team getOwner() {
             	return owner;
             }
@@ -96,10 +90,15 @@ public abstract class Interactable implements Serializable
 	return position;
     }
 
-    public String getInteractableID() {
+    public int getInteractableID() {
 	return interactableID;
     }
 
+    /** Only for the GameModel, when the Interactable joins or leaves the game. */
+    public void setInteractableID(final int interactableID) {
+	this.interactableID = interactableID;
+    }
+
     public void setPosition(final Position position) {
 	this.position = position;
 	this.interactionPoint = position.add(interactionPointOffset);
@@ -143,13 +142,12 @@ public abstract class Interactable implements Serializable
 	return getWidth() == that.getWidth() && getHeight() == that.getHeight() &&
 	       Objects.equals(interactionPointOffset, that.interactionPointOffset) &&
 	       Objects.equals(interactionPoint, that.interactionPoint) && Objects.equals(position, that.position) &&
-	       Objects.equals(interactableID, that.interactableID);
+	       interactableID == that.interactableID;
     }
 
     @Override public int hashCode() {
 
-	return (int) (interactionPoint.getX() * Integer.parseInt(interactableID) +
-		      interactionPoint.getY() * Math.pow(Integer.parseInt(interactableID), 10.0d));
+	return (int) (interactionPoint.getX() * interactableID + interactionPoint.getY() * Math.pow(interactableID, 10.0d));
     }
 
     public boolean interactionPointIsPassable() {
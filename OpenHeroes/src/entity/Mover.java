@@ -13,13 +13,15 @@ public abstract class Mover extends Interactable
 {
     protected int maxMoveLength;
     protected int remainingMoveLength;
+    protected int sightRadius;
 
     protected Mover(final String imagePath, final Passability[][] passabilityMap, final Position interactionPointOffset,
-		    final int maxMoveLength)
+		    final int maxMoveLength, final int sightRadius)
     {
 	super(imagePath, passabilityMap, interactionPointOffset);
 	this.maxMoveLength = maxMoveLength;
 	this.remainingMoveLength = maxMoveLength;
+	this.sightRadius = sightRadius;
     }
 
     public void refreshMove() {
@@ -33,4 +35,9 @@ public abstract class Mover extends Interactable
     public void setRemainingMoveLength(final int remainingMoveLength) {
 	this.remainingMoveLength = remainingMoveLength;
     }
+
+    /** How many tiles away the mover can see, where nothing blocks its sight. */
+    public int getSightRadius() {
+	return sightRadius;
+    }
 }
@@ -24,10 +24,14 @@ public class ResourceMine extends Interactable
 		      { Passability.IMPASSABLE, Passability.IMPASSABLE },
 		      { Passability.IMPASSABLE, Passability.NORMAL },
 		      { Passability.IMPASSABLE, Passability.IMPASSABLE } },
-	      new Position(1, 1));
+	      Position.of(1, 1));
 	this.type = type;
     }
 
+    public Resource getResourceType() {
+	return type;
+    }
+
     @Override public Message interaction(final Interactable other) {
 	if (!isFriendly(other)) {
 	    return Message.captureResource(other.getInteractableID(), this.getInteractableID());
@@ -23,7 +23,7 @@ public class Town extends Interactable
 		      { Passability.IMPASSABLE, Passability.IMPASSABLE },
 		      { Passability.IMPASSABLE, Passability.NORMAL },
 		      { Passability.IMPASSABLE, Passability.IMPASSABLE } },
-	      new Position(1, 1));
+	      Position.of(1, 1));
 	this.resourceGeneration = resourceGeneration;
     }
 
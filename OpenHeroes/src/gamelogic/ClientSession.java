@@ -8,9 +8,12 @@ import connection.TCPClient;
 import entity.Hero;
 import entity.Interactable;
 import entity.Mover;
+import gamemodel.CommandLog;
+import gamemodel.GameCommand;
 import gamemodel.GameModel;
 import gamemodel.InvalidMainMapStateException;
 import gamemodel.Position;
+import gamemodel.ReachableTiles;
 import gamemodel.Team;
 import gamemodel.listeners.GameEvent;
 import resources.GameResourceManager;
@@ -23,7 +26,10 @@ import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -39,15 +45,28 @@ import static gamemodel.listeners.GameEvent.GameEventType.TURN_START;
  * <p>
  * A ClientSession may request to synchronize with the ServerSession, but the object transfer itself is
  * handled by the TCPClient class instance generated during construction.
+ * It asks for the commands the server has applied since the last model it was sent, and only
+ * gets the whole model again if the server no longer has them all (see CommandLog).
  * <p>
  * What primarily separates a ClientSession from a ServerSession besides not driving game logic is that the
- * ClientSession shares the GameModel with a View, in our case HeroesFrame.
+ * ClientSession shares the GameModel with a View, in our case HeroesFrame. The view paints the published
+ * snapshots. The MainMap keeps its path cache, cluster graph and search workspace for a single thread, so
+ * the view hands its path searches to the session thread through runOnSessionThread, where they run
+ * between messages.
  */
 public class ClientSession extends GameHandler implements SynchronizationListener, Runnable
 {
     private final static Logger LOGGER = Logger.getLogger(ClientSession.class.getName());
     private final TCPClient tcpClient;
     private final ReentrantLock gameModelLock = new ReentrantLock();
+    // The messages to apply and the searches the view asked for, run in order on the session thread.
+    private final BlockingQueue<Runnable> sessionTasks = new LinkedBlockingQueue<>();
+    // The last model the server sent and the commands it has sent since, numbered as the server
+    // numbers them, so that the client can catch up without being sent the whole model again.
+    // Only used while holding the gameModelLock.
+    private CommandLog serverLog = null;
+    // Where the log stops, or -1 if there is none. Read when asking to be synchronized.
+    private volatile long serverSequence = -1;
 
     private List<ClientListener> clientListeners = new ArrayList<>();
     private boolean connectionLost;
@@ -61,8 +80,34 @@ public class ClientSession extends GameHandler implements SynchronizationListene
 	tcpClient.addSyncListener(this);
     }
 
-    public boolean move(final Mover hero, final Deque<Position> proposedPath) {
+    /** Sends the part of the path the hero can walk, which is worked out on the session thread. */
+    public void move(final Mover hero, final Deque<Position> proposedPath) {
+	final Deque<Position> path = new LinkedList<>(proposedPath);
+	runOnSessionThread(new Runnable()
+	{
+	    @Override public void run() {
+		moveAlong(hero, path);
+	    }
+	});
+    }
+
+    private boolean moveAlong(final Mover hero, final Deque<Position> proposedPath) {
 	Deque<Position> legalPath = getGameModel().getMainMap().legalMoves(hero, proposedPath);
+	return sendMove(hero, proposedPath, legalPath);
+    }
+
+    /** Validates the path against a movement range table instead of recomputing step costs. */
+    public void move(final Mover hero, final Deque<Position> proposedPath, final ReachableTiles reachableTiles) {
+	final Deque<Position> path = new LinkedList<>(proposedPath);
+	runOnSessionThread(new Runnable()
+	{
+	    @Override public void run() {
+		sendMove(hero, path, reachableTiles.legalMoves(path));
+	    }
+	});
+    }
+
+    private boolean sendMove(final Mover hero, final Deque<Position> proposedPath, final Deque<Position> legalPath) {
 	boolean legal = proposedPath.size() == legalPath.size();
 	sendMessage(Message.move(hero.getInteractableID()));
 	sendPath(legalPath);
@@ -73,14 +118,36 @@ public class ClientSession extends GameHandler implements SynchronizationListene
 	clientListeners.add(cl);
     }
 
-    @Override public void synchronizeGameModel() {
+    @Override public void addMessage(final Message message) {
+	sessionTasks.add(new Runnable()
+	{
+	    @Override public void run() {
+		handleMessage(message);
+	    }
+	});
+    }
+
+    /**
+     * Runs the task on the session thread once the messages received before it have been
+     * applied. Anything that searches the MainMap must run there.
+     */
+    public void runOnSessionThread(final Runnable task) {
+	sessionTasks.add(task);
+    }
+
+    @Override public void synchronizeGameModel(final long sequence) {
 	gameModelLock.lock();
 	try {
 	    GameModel newGameModel;
 	    newGameModel = readGameModel();
 
 	    if (newGameModel != null) {
+		startServerLog(newGameModel, sequence);
+		// Only the client searches for paths. The landmark tables of the model it had are
+		// reused as long as the map is the same, which it is for the rest of the game.
+		newGameModel.useLandmarkHeuristic(getGameModel());
 		setGameModel(newGameModel);
+		publishSnapshot();
 		notifyListeners();
 	    }
 	} finally {
@@ -97,6 +164,70 @@ public class ClientSession extends GameHandler implements SynchronizationListene
 	}
     }
 
+    private void startServerLog(final GameModel gameModel, final long sequence) {
+	try {
+	    serverLog = new CommandLog(gameModel, sequence);
+	    serverSequence = sequence;
+	} catch (IOException e) {
+	    LOGGER.log(Level.WARNING, "Unable to checkpoint the GameModel. The whole model will be sent on every sync.", e);
+	    serverLog = null;
+	    serverSequence = -1;
+	}
+    }
+
+    /**
+     * Rebuilds the model from the last one the server sent and the commands it has applied
+     * since, which it sends instead of the whole model. Any changes made to the model since
+     * it was sent are thrown away, so this also mends a model that has gone wrong. If the
+     * rebuilt model doesn't match the one on the server, the whole model is asked for.
+     */
+    private void catchUp(final Message message) throws IOException {
+	List<GameCommand> commands = readCommands();
+	GameModel newGameModel = null;
+	if (commands != null && serverLog != null && serverLog.extend(message.getSequenceArg(0), commands)) {
+	    try {
+		newGameModel = serverLog.replay();
+	    } catch (InvalidMainMapStateException e) {
+		LOGGER.log(Level.WARNING, "Commands from the server don't apply to the last model it sent.", e);
+	    }
+	}
+	if (newGameModel == null || newGameModel.gameBoardHash() != message.getHash()) {
+	    serverLog = null;
+	    serverSequence = -1;
+	    sendMessage(Message.sync());
+	    return;
+	}
+	LOGGER.log(Level.FINE, "Caught up with " + commands.size() + " commands from the server.");
+	// The next catch up starts from this model, so the commands needn't be applied again.
+	startServerLog(newGameModel, serverLog.nextSequence());
+	newGameModel.useLandmarkHeuristic(getGameModel());
+	setGameModel(newGameModel);
+	notifyListeners();
+    }
+
+    private List<GameCommand> readCommands() throws IOException {
+	try {
+	    /*
+	     * Stepped casting for a collection ensures type safety.
+	     */
+	    List<?> tentativeCommands = (List<?>) tcpClient.readData();
+	    List<GameCommand> commands = new ArrayList<>(tentativeCommands.size());
+	    for (Object tentativeCommand : tentativeCommands) {
+		commands.add((GameCommand) tentativeCommand);
+	    }
+	    return commands;
+	} catch (ClassNotFoundException | ClassCastException e) {
+	    LOGGER.log(Level.WARNING, "Wrong object class read on client instead of commands.", e);
+	    return null;
+	}
+    }
+
+    /** Asks for what the server has applied since the last model it sent, or for the whole model if there is none. */
+    private Message syncRequest() {
+	long sequence = serverSequence;
+	return sequence < 0 ? Message.sync() : Message.sync(sequence);
+    }
+
     public void notifyListeners() {
 	for (ClientListener cl : clientListeners) {
 	    cl.clientUpdated();
@@ -117,36 +248,49 @@ public class ClientSession extends GameHandler implements SynchronizationListene
 	GameResourceManager.instance().executeParallel(tcpClient);
 
 	while (true) {
+	    Runnable task;
 	    try {
-		Message message = messageQueue.take();
-		gameModelLock.lock();
-		try {
-		    LOGGER.log(Level.INFO, "Client got message " + message);
-		    synchronized (this) {
-			processMessage(message);
-			if (getGameModel().isGameOver() && !getGameModel().hasWon()) {
-			    tcpClient.sendMessage(Message.stop());
-			}
-		    }
-		    LOGGER.log(Level.INFO, "Client finished handling message.");
-		    // Some commands must chain a movement first. The movement changes the GameModel hash,
-		    // so we must wait with the actual interaction command until the movement has completed.
-		    if (message.getHeader() == MessageType.MOVE_HERO) {
-			sendChainMessage();
-		    }
-		} catch (InvalidMainMapStateException e) {
-		    LOGGER.log(Level.WARNING, "ClientSession MainMap is corrupt. Attempting to synchronize..", e);
-		    sendMessage(Message.sync());
-		} catch (IOException e) {
-		    LOGGER.log(Level.WARNING, "Lost connection to the host!", e);
-		    closeGameSession();
-		} finally {
-		    gameModelLock.unlock();
-		}
+		task = sessionTasks.take();
 	    } catch (InterruptedException e) {
 		LOGGER.log(Level.WARNING, "ClientSession was interrupted!", e);
 		return;
 	    }
+	    // The model is also replaced on the TCPClient thread when the server sends a new one.
+	    gameModelLock.lock();
+	    try {
+		task.run();
+	    } finally {
+		gameModelLock.unlock();
+	    }
+	}
+    }
+
+    private void handleMessage(final Message message) {
+	try {
+	    LOGGER.log(Level.INFO, "Client got message " + message);
+	    synchronized (this) {
+		if (message.getHeader() == MessageType.COMMANDS_SENT) {
+		    catchUp(message);
+		} else {
+		    processMessage(message);
+		}
+		publishSnapshot();
+		if (getGameModel().isGameOver() && !getGameModel().hasWon()) {
+		    tcpClient.sendMessage(Message.stop());
+		}
+	    }
+	    LOGGER.log(Level.INFO, "Client finished handling message.");
+	    // Some commands must chain a movement first. The movement changes the GameModel hash,
+	    // so we must wait with the actual interaction command until the movement has completed.
+	    if (message.getHeader() == MessageType.MOVE_HERO) {
+		sendChainMessage();
+	    }
+	} catch (InvalidMainMapStateException e) {
+	    LOGGER.log(Level.WARNING, "ClientSession MainMap is corrupt. Attempting to synchronize..", e);
+	    sendMessage(syncRequest());
+	} catch (IOException e) {
+	    LOGGER.log(Level.WARNING, "Lost connection to the host!", e);
+	    closeGameSession();
 	}
     }
 
@@ -160,12 +304,13 @@ public class ClientSession extends GameHandler implements SynchronizationListene
     }
 
     private void sendChainMessage() throws IOException {
-        tcpClient.sendChainMessage(getGameModel().gameBoardHashCode());
+        tcpClient.sendChainMessage(getSnapshot().getBoardHash());
     }
 
     public void sendMessage(final Message message) {
 	try {
-	    message.updateHash(getGameModel().gameBoardHashCode());
+	    // Called from the view as well, which must not read the model while a message changes it.
+	    message.updateHash(getSnapshot().getBoardHash());
 	    tcpClient.sendMessage(message);
 	} catch (IOException e) {
 	    LOGGER.log(Level.WARNING, "Lost connection with the host!", e);
@@ -207,7 +352,7 @@ public class ClientSession extends GameHandler implements SynchronizationListene
 		System.exit(ExitCode.CONNECTION.ordinal());
 	    } catch (ClassCastException e) {
 		LOGGER.log(Level.WARNING, "Wrong object class read on client. Attempting to synchronize again..", e);
-		sendMessage(Message.sync());
+		sendMessage(syncRequest());
 		return null;
 	    }
 	    return null;
@@ -226,17 +371,28 @@ public class ClientSession extends GameHandler implements SynchronizationListene
     }
 
     public boolean affordsHero() {
-    	return getGameModel().affordsHero();
+    	return getSnapshot().affordsHero();
+    }
+
+    /** Walks the path to the target and interacts with it. Worked out on the session thread. */
+    public void sendInteractMessage(final Hero actor, final Interactable target, final Deque<Position> proposedPath) {
+	final Deque<Position> path = new LinkedList<>(proposedPath);
+	runOnSessionThread(new Runnable()
+	{
+	    @Override public void run() {
+		interact(actor, target, path);
+	    }
+	});
     }
 
-    public void sendInteractMessage(Hero actor, final Interactable target, Deque<Position> proposedPath) {
+    private void interact(final Hero actor, final Interactable target, final Deque<Position> proposedPath) {
         Message interaction = target.interaction(actor);
 	if (interaction.getHeader() == MessageType.MOVE_HERO) {
-	    move(actor, proposedPath);
+	    moveAlong(actor, proposedPath);
 	    return;
 	}
 	if (!proposedPath.isEmpty()) {
-	    if (move(actor, proposedPath)) {
+	    if (moveAlong(actor, proposedPath)) {
 		queueChainMessage(interaction);
 	    }
 	} else if (getGameModel().getMainMap().unitCanInteractWith(actor, target)) {
@@ -249,7 +405,7 @@ public class ClientSession extends GameHandler implements SynchronizationListene
     }
 
     public void synchronizeClient() {
-	sendMessage(Message.sync());
+	sendMessage(syncRequest());
     }
 
     public void surrender() {
@@ -2,9 +2,10 @@ package gamelogic;
 
 import connection.Message;
 import entity.Hero;
-import entity.ResourceMine;
-import entity.Town;
+import gamemodel.CommandLog;
+import gamemodel.GameCommand;
 import gamemodel.GameModel;
+import gamemodel.GameSnapshot;
 import gamemodel.InvalidMainMapStateException;
 import gamemodel.Position;
 import gamemodel.Team;
@@ -13,7 +14,9 @@ import gamemodel.listeners.GameEvent.GameEventType;
 
 import java.io.IOException;
 import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -33,6 +36,15 @@ public abstract class GameHandler
 {
     private final static Logger LOGGER = Logger.getLogger(GameHandler.class.getName());
     private volatile GameModel gameModel = null;
+    // What readers see of the model, replaced whenever it is published. Read without locking.
+    private volatile GameSnapshot snapshot = null;
+    // The model the snapshot was frozen from. A new model shares nothing with it.
+    private GameModel snapshotModel = null;
+    private final List<SnapshotListener> snapshotListeners = new CopyOnWriteArrayList<>();
+    // The commands applied since the last checkpoint of the model, if they are kept.
+    private CommandLog commandLog = null;
+    // Counts the commands applied to the model, which numbers them in the command log.
+    private long commandSequence = 0;
     protected Deque<Position> movePath = null;
     private final ReentrantLock gameModelLock = new ReentrantLock();
     protected final BlockingQueue<Message> messageQueue = new LinkedBlockingQueue<>();
@@ -54,15 +66,98 @@ public abstract class GameHandler
         	messageQueue.add(message);
             }
 
+    /**
+     * The live model, which the thread processing messages changes. Other threads should
+     * read the snapshot instead, and leave searching the map to that thread.
+     */
     public GameModel getGameModel() {
-	gameModelLock.lock();
+	return gameModel;
+    }
+
+    /**
+     * The model as it was when it was last published, or null if it never was. Never changes
+     * once handed out.
+     */
+    public GameSnapshot getSnapshot() {
+	return snapshot;
+    }
+
+    public CommandLog getCommandLog() {
+	return commandLog;
+    }
+
+    /** The sequence number the next command applied to the model gets. */
+    public long getCommandSequence() {
+	return commandSequence;
+    }
+
+    /**
+     * The commands applied since the model had the given sequence number, or null if they
+     * aren't all logged any more.
+     */
+    protected List<GameCommand> commandsSince(final long sequence) {
+	return commandLog == null ? null : commandLog.since(sequence);
+    }
+
+    /** Starts keeping the commands applied to the model from its current state on. */
+    protected void startCommandLog() {
 	try {
-	    LOGGER.log(Level.FINEST, "GameHandler GameModel was read.");
-	    return gameModel;
-	} finally {
-	    gameModelLock.unlock();
+	    commandLog = new CommandLog(gameModel, commandSequence);
+	} catch (IOException e) {
+	    LOGGER.log(Level.WARNING, "Unable to checkpoint the GameModel. Commands won't be logged.", e);
+	    commandLog = null;
 	}
+    }
 
+    /** Applies the command to the model and logs it, if commands are logged. */
+    protected void execute(final GameCommand command) throws InvalidMainMapStateException {
+	gameModel.execute(command);
+	commandSequence++;
+	if (commandLog != null) {
+	    try {
+		commandLog.append(command, gameModel);
+	    } catch (IOException e) {
+		LOGGER.log(Level.WARNING, "Unable to checkpoint the GameModel. Commands won't be logged.", e);
+		commandLog = null;
+	    }
+	}
+    }
+
+    /**
+     * Replaces the model with one rebuilt from the command log, as it was before the command
+     * that was being applied when the model broke.
+     *
+     * @return whether there was a log to rebuild the model from.
+     */
+    protected boolean restoreFromCommandLog() {
+	if (commandLog == null) {
+	    return false;
+	}
+	try {
+	    setGameModel(commandLog.replay());
+	    commandSequence = commandLog.nextSequence();
+	    return true;
+	} catch (InvalidMainMapStateException e) {
+	    LOGGER.log(Level.SEVERE, "Replaying the command log failed.", e);
+	    return false;
+	}
+    }
+
+    public void addSnapshotListener(final SnapshotListener listener) {
+	snapshotListeners.add(listener);
+    }
+
+    /**
+     * Publishes the current state of the model to the readers. Only called by the thread that
+     * changes it, and only by sessions that have readers, since freezing the model isn't free.
+     */
+    protected void publishSnapshot() {
+	GameSnapshot published = gameModel.freeze(snapshotModel == gameModel ? snapshot : null);
+	snapshotModel = gameModel;
+	snapshot = published;
+	for (SnapshotListener listener : snapshotListeners) {
+	    listener.snapshotPublished(published);
+	}
     }
 
     public abstract Deque<Position> readPath(final Team id) throws IOException;
@@ -119,44 +214,37 @@ public abstract class GameHandler
     }
 
     private void handleTeamDefeatedMessage(final Message message) throws InvalidMainMapStateException {
-	gameModel.defeatTeam(Team.valueOf(message.getArgs()[0]));
+	execute(GameCommand.defeatTeam(message.getTeamArg(0)));
     }
 
     private void handleAddHero(final Message message) throws InvalidMainMapStateException, IOException {
-	Town town = gameModel.getTownByID(message.getArgs()[1]);
 	Hero hero = readHero(message.getSender());
-	Team team = Team.valueOf(message.getArgs()[0]);
-	gameModel.buyHero(team, hero, town);
+	Team team = message.getTeamArg(0);
+	execute(GameCommand.buyHero(team, message.getIdArg(1), hero));
     }
 
     private void handlePlayerDisconnectMessage(final Message message) {
-        getGameModel().notifyGameEventListeners(new GameEvent(Team.valueOf(message.getArgs()[0]),
+        getGameModel().notifyGameEventListeners(new GameEvent(message.getTeamArg(0),
 							      GameEventType.PLAYER_DISCONNECTED));
     }
 
     private void handleHeroDefeatedMessage(final Message message) throws InvalidMainMapStateException {
-	Hero hero = gameModel.getHeroByID(message.getArgs()[0]);
-	gameModel.killHero(hero);
+	execute(GameCommand.killHero(message.getIdArg(0)));
     }
 
-    private void handleEndBattleTurnMessage() {
-	gameModel.battleConcluded();
+    private void handleEndBattleTurnMessage() throws InvalidMainMapStateException {
+	execute(GameCommand.backToMainMap());
     }
 
-    private void handleHeroTradeMessage() {
-	gameModel.trade();
+    private void handleHeroTradeMessage() throws InvalidMainMapStateException {
+	execute(GameCommand.startTrade());
     }
 
     private void handleTownBattleMessage(final Message message) throws InvalidMainMapStateException {
 
 	gameModelLock.lock();
 	try {
-	    Team team = gameModel.getHeroByID(message.getArgs()[0]).getOwner();
-	    String townID = message.getArgs()[1];
-	    Town town = gameModel.getTownByID(townID);
-	    town.setOwner(team);
-	    gameModel.getMainMap().notifyMainMapListeners();
-	    gameModel.checkDefeat();
+	    execute(GameCommand.captureTown(message.getIdArg(0), message.getIdArg(1)));
 	} finally {
 	    gameModelLock.unlock();
 	}
@@ -166,10 +254,7 @@ public abstract class GameHandler
 
 	gameModelLock.lock();
 	try {
-	    Team team = gameModel.getHeroByID(message.getArgs()[0]).getOwner();
-	    ResourceMine mine = gameModel.getResourceMineByID(message.getArgs()[1]);
-	    mine.setOwner(team);
-	    gameModel.getMainMap().notifyMainMapListeners();
+	    execute(GameCommand.captureMine(message.getIdArg(0), message.getIdArg(1)));
 	} finally {
 	    gameModelLock.unlock();
 	}
@@ -178,29 +263,31 @@ public abstract class GameHandler
     private void handleMoveHeroMessage(final Message message) throws InvalidMainMapStateException, IOException {
 	gameModelLock.lock();
 	try {
-	    Hero hero = gameModel.getHeroByID(message.getArgs()[0]);
 	    movePath = readPath(message.getSender());
-	    gameModel.moveHero(hero, movePath);
+	    if (movePath == null) {
+		throw new InvalidMainMapStateException("Error when moving hero " + message.getIdArg(0) + ": no path");
+	    }
+	    execute(GameCommand.moveHero(message.getIdArg(0), movePath));
 	} finally {
 	    gameModelLock.unlock();
 	}
     }
 
-    private void handleHeroBattleMessage() {
+    private void handleHeroBattleMessage() throws InvalidMainMapStateException {
 	gameModelLock.lock();
 	try {
-	    gameModel.startBattle();
+	    execute(GameCommand.startBattle());
 
 	} finally {
 	    gameModelLock.unlock();
 	}
     }
 
-    private void handleTradeConcludedMessage() {
-	gameModel.tradeConcluded();
+    private void handleTradeConcludedMessage() throws InvalidMainMapStateException {
+	execute(GameCommand.backToMainMap());
     }
 
-    private void handleTurnEndMessage() {
-	gameModel.endTurn();
+    private void handleTurnEndMessage() throws InvalidMainMapStateException {
+	execute(GameCommand.endTurn());
     }
 }
@@ -6,6 +6,7 @@ import connection.TCPServer;
 import entity.Hero;
 import entity.HeroFactory;
 import entity.Town;
+import gamemodel.GameCommand;
 import gamemodel.GameModel;
 import gamemodel.InvalidMainMapStateException;
 import gamemodel.Position;
@@ -42,7 +43,7 @@ import java.util.logging.Logger;
  * <p>
  * Message validation is implemented rather uniformly:
  * If a client is considered to be on turn by the server GameModel, and they supply a
- * valid gameBoardHashCode for the current GameBoard, their actions are considered legitimate.
+ * valid gameBoardHash for the current GameBoard, their actions are considered legitimate.
  * <p>
  * ** This offers no real protection against a malicious client. A more thorough validity
  * check of client commands would be necessary to detect fraudulent commands.
@@ -63,6 +64,7 @@ public class ServerSession extends GameHandler implements Runnable
 
     public ServerSession(final GameModel gameModel) {
 	setGameModel(gameModel);
+	startCommandLog();
 	this.expectedClients = gameModel.getHumanPlayers();
     }
 
@@ -94,12 +96,17 @@ public class ServerSession extends GameHandler implements Runnable
 			processMessage(message);
 			driveGameLogic(message);
 		    } else {
-		        connectionID.get(message.getSender()).sendGameModel();
+			// The client answers with the last model it was sent, so it can be sent just the commands since.
+		        connectionID.get(message.getSender()).sendMessage(Message.sync());
 		    }
 		    serverSessionLogger.log(Level.INFO, "[Q] Server finished handling message.");
 		} catch (InvalidMainMapStateException e) {
-		    serverSessionLogger.log(Level.SEVERE, "Map is corrupted on server, unable to recover.", e);
-		    System.exit(ExitCode.MAP.ordinal());
+		    if (!restoreFromCommandLog()) {
+			serverSessionLogger.log(Level.SEVERE, "Map is corrupted on server, unable to recover.", e);
+			System.exit(ExitCode.MAP.ordinal());
+		    }
+		    serverSessionLogger.log(Level.WARNING, "Map was corrupted on server, rebuilt it from the command log.", e);
+		    synchronizeAllClients();
 		} catch (IOException e) {
 		    serverSessionLogger.log(Level.WARNING, "Lost connection with a client!", e);
 		} finally {
@@ -149,10 +156,10 @@ public class ServerSession extends GameHandler implements Runnable
     private void buyHeroServerLogic(final Message message, final Team team)
 	    throws InvalidMainMapStateException, IOException
     {
-    	Town town = getGameModel().getTownByID(message.getArgs()[0]);
+    	Town town = getGameModel().getTownByID(message.getIdArg(0));
     	Hero hero = HeroFactory.makeHero();
-	getGameModel().buyHero(team, hero, town);
-    	messageAllClients(Message.addHero(team, message.getArgs()[0]));
+	execute(GameCommand.buyHero(team, town.getInteractableID(), hero));
+    	messageAllClients(Message.addHero(team, town.getInteractableID()));
     	sendAllHero(hero);
     }
 
@@ -160,13 +167,13 @@ public class ServerSession extends GameHandler implements Runnable
 	teamDefeated(team);
     }
     public void teamDefeated(final Team defeatedTeam) throws InvalidMainMapStateException {
-	getGameModel().defeatTeam(defeatedTeam);
+	execute(GameCommand.defeatTeam(defeatedTeam));
 	messageAllClients(Message.teamDefeated(defeatedTeam));
     }
 
     private void heroBattleServerLogic(Message message, Team team) throws InvalidMainMapStateException, IOException {
-	String challengerID = message.getArgs()[0];
-	String defenderID = message.getArgs()[1];
+	int challengerID = message.getIdArg(0);
+	int defenderID = message.getIdArg(1);
 	Hero challenger = getGameModel().getHeroByID(challengerID);
 	Hero defender = getGameModel().getHeroByID(defenderID);
 	Team defendingTeam = defender.getOwner();
@@ -178,17 +185,17 @@ public class ServerSession extends GameHandler implements Runnable
 	int challengerResult = getGameModel().getBattlefield().getChallengerResult();
 	int defenderResult = getGameModel().getBattlefield().getDefenderResult();
 	if (challengerResult > defenderResult) {
-	    getGameModel().killHero(defender);
+	    execute(GameCommand.killHero(defenderID));
 	    messageAllClients(Message.heroDefeated(defenderID));
 	} else {
-	    getGameModel().killHero(challenger);
+	    execute(GameCommand.killHero(challengerID));
 	    messageAllClients(Message.heroDefeated(challengerID));
 	}
     }
 
     public void messageAllClients(Message message) {
 	try {
-	    message.updateHash(getGameModel().gameBoardHashCode());
+	    message.updateHash(getGameModel().gameBoardHash());
 	    synchronized (connections) {
 		for (TCPServer connection : connections) {
 
@@ -218,11 +225,40 @@ public class ServerSession extends GameHandler implements Runnable
 	}
     }
 
+    /** Sends the whole model to the client on the connection. */
+    public void synchronizeClient(final TCPServer connection) throws IOException {
+	gameModelLock.lock();
+	try {
+	    connection.sendGameModel(getGameModel(), getCommandSequence());
+	} finally {
+	    gameModelLock.unlock();
+	}
+    }
+
+    /**
+     * Brings the client on the connection up to date from the model with the given sequence
+     * number: with the commands applied since, as long as the log still has them, or else
+     * with the whole model.
+     */
+    public void synchronizeClient(final TCPServer connection, final long sequence) throws IOException {
+	gameModelLock.lock();
+	try {
+	    List<GameCommand> commands = commandsSince(sequence);
+	    if (commands == null) {
+		connection.sendGameModel(getGameModel(), getCommandSequence());
+	    } else {
+		connection.sendCommands(sequence, commands, getGameModel().gameBoardHash());
+	    }
+	} finally {
+	    gameModelLock.unlock();
+	}
+    }
+
     private void synchronizeAllClients() {
 	synchronized (connections) {
 	    for (TCPServer connection : connections) {
 		try {
-		    connection.sendGameModel();
+		    synchronizeClient(connection);
 		} catch (IOException e) {
 		    serverSessionLogger.log(Level.WARNING, "Lost connection with a client!", e);
 		    killDisconnectedTeam(connection.getConnectedTeam());
@@ -244,8 +280,8 @@ public class ServerSession extends GameHandler implements Runnable
     }
 
 
-    private boolean verifyGameBoard(final String clientGameBoardHash) {
-	return (Integer.parseInt(clientGameBoardHash) == getGameModel().gameBoardHashCode());
+    private boolean verifyGameBoard(final long clientGameBoardHash) {
+	return (clientGameBoardHash == getGameModel().gameBoardHash());
     }
 
     public void addPlayer(final TCPServer newTCPServer, final String playerID, final Team team) throws IOException {
@@ -254,9 +290,11 @@ public class ServerSession extends GameHandler implements Runnable
 	    serverSessionLogger.log(Level.INFO, "added playerid " + playerID);
 
 	    getGameModel().addPlayer(team, playerID);
+	    // Joining changes the model outside of any command, so the log starts over from here.
+	    startCommandLog();
 	    for (TCPServer oldTCPServer : connections) {
 		if (!oldTCPServer.equals(newTCPServer)) {
-		    oldTCPServer.sendGameModel();
+		    synchronizeClient(oldTCPServer);
 		}
 	    }
 	    connectionID.put(team, newTCPServer);
@@ -292,7 +330,7 @@ public class ServerSession extends GameHandler implements Runnable
         removeConnection(team);
 	try {
 	    if (getGameModel().playerAlive(team)) {
-		getGameModel().defeatTeam(team);
+		execute(GameCommand.defeatTeam(team));
 		messageAllClients(Message.teamDefeated(team));
 	    }
 	    messageAllClients(Message.playerDisconnected(team));
@@ -0,0 +1,14 @@
+package gamelogic;
+
+import gamemodel.GameSnapshot;
+
+/**
+ * Interface for listening to the snapshots a GameHandler publishes.
+ * <p>
+ * Called on the thread that changed the model, so anything touching Swing has to be passed on to the
+ * EventDispatchThread.
+ */
+public interface SnapshotListener
+{
+    public void snapshotPublished(GameSnapshot snapshot);
+}
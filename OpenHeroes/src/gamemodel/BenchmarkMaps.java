@@ -0,0 +1,113 @@
+package gamemodel;
+
+import gamemodel.GameModel.MainMap;
+
+import java.util.Random;
+
+/**
+ * Seeded random maps and queries for the path search benchmarks, so that a run can be
+ * repeated with the same seed and compared with another.
+ */
+final class BenchmarkMaps
+{
+    private BenchmarkMaps() {}
+
+    /** Like GameModelFactory.randomizeTerrain: a sea border around a uniform mix of sea, grass and mud. */
+    static MainMap randomized(final Random random, final int mapWidth, final int mapHeight) {
+	MainMap map = new MainMap(mapWidth, mapHeight);
+	TerrainType[] terrains = { TerrainType.SEA, TerrainType.GRASS, TerrainType.MUD };
+	for (int x = 0; x < mapWidth; x++) {
+	    for (int y = 0; y < mapHeight; y++) {
+		boolean border = x == 0 || y == 0 || x == mapWidth - 1 || y == mapHeight - 1;
+		map.setTerrain(x, y, border ? TerrainType.SEA : terrains[random.nextInt(terrains.length)]);
+	    }
+	}
+	return map;
+    }
+
+    /**
+     * Grass with round blobs of the given terrains, picked at random, until about the given
+     * share of the map is covered. Lakes and swamps rather than noise.
+     */
+    static MainMap blobs(final Random random, final int mapWidth, final int mapHeight, final double share,
+			 final TerrainType... terrains)
+    {
+	MainMap map = grass(mapWidth, mapHeight);
+	long covered = 0;
+	long wanted = (long) (share * mapWidth * mapHeight);
+	while (covered < wanted) {
+	    TerrainType terrain = terrains[random.nextInt(terrains.length)];
+	    int radius = 2 + random.nextInt(9);
+	    int centerX = random.nextInt(mapWidth);
+	    int centerY = random.nextInt(mapHeight);
+	    for (int x = Integer.max(centerX - radius, 0); x <= Integer.min(centerX + radius, mapWidth - 1); x++) {
+		for (int y = Integer.max(centerY - radius, 0); y <= Integer.min(centerY + radius, mapHeight - 1); y++) {
+		    int dx = x - centerX;
+		    int dy = y - centerY;
+		    if (dx * dx + dy * dy <= radius * radius && map.getTerrain(x, y) == TerrainType.GRASS) {
+			map.setTerrain(x, y, terrain);
+			covered++;
+		    }
+		}
+	    }
+	}
+	return map;
+    }
+
+    /** Grass with single tiles of the given terrain scattered over about the given share of the map. */
+    static MainMap scattered(final Random random, final int mapWidth, final int mapHeight, final double share,
+			     final TerrainType terrain)
+    {
+	MainMap map = grass(mapWidth, mapHeight);
+	for (int x = 0; x < mapWidth; x++) {
+	    for (int y = 0; y < mapHeight; y++) {
+		if (random.nextDouble() < share) {
+		    map.setTerrain(x, y, terrain);
+		}
+	    }
+	}
+	return map;
+    }
+
+    /**
+     * Pairs of random passable tiles, the mover's first and the destination second. Nothing
+     * checks that the destination can be reached, searches that fail are part of the load.
+     */
+    static Position[][] queries(final Random random, final MainMap map, final int count) {
+	Position[][] queries = new Position[count][];
+	for (int index = 0; index < count; index++) {
+	    queries[index] = new Position[] { passablePosition(random, map), passablePosition(random, map) };
+	}
+	return queries;
+    }
+
+    /** What walking the path costs, or -1 if it is empty. */
+    static long pathCost(final MainMap map, final Iterable<Position> path) {
+	long cost = 0;
+	boolean empty = true;
+	for (Position step : path) {
+	    cost += map.passCost(step);
+	    empty = false;
+	}
+	return empty ? -1 : cost;
+    }
+
+    private static MainMap grass(final int mapWidth, final int mapHeight) {
+	MainMap map = new MainMap(mapWidth, mapHeight);
+	for (int x = 0; x < mapWidth; x++) {
+	    for (int y = 0; y < mapHeight; y++) {
+		map.setTerrain(x, y, TerrainType.GRASS);
+	    }
+	}
+	return map;
+    }
+
+    private static Position passablePosition(final Random random, final MainMap map) {
+	while (true) {
+	    Position position = Position.of(random.nextInt(map.getMapWidth()), random.nextInt(map.getMapHeight()));
+	    if (map.isPassable(position)) {
+		return position;
+	    }
+	}
+    }
+}
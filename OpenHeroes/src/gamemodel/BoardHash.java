@@ -0,0 +1,54 @@
+package gamemodel;
+
+/**
+ * The keys of the Zobrist hash the server uses to check that a client's game board matches
+ * its own. Every piece of state that is hashed, such as a hero standing on a tile or a team
+ * holding some amount of a resource, has a key, and the hash of a board is the XOR of the
+ * keys of everything on it. A change only has to XOR out the keys of the old state and XOR
+ * in those of the new, so the hash is kept up to date as the game goes on instead of being
+ * computed from the whole board for every message.
+ * <p>
+ * The keys are computed from the state they stand for with a fixed mixing function rather
+ * than drawn from a random table, so that every JVM in a game agrees on them without any
+ * table having to be sent around.
+ */
+final class BoardHash
+{
+    private static final int TERRAIN = 1;
+    private static final int UNIT = 2;
+    private static final int OWNER = 3;
+    private static final int RESOURCE = 4;
+    // The increment of the SplitMix64 generator, which the mixing function is taken from.
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    private BoardHash() {}
+
+    /** The key of the terrain on a tile. The first TerrainType has none, so an untouched map hashes to 0. */
+    static long terrain(final int x, final int y, final int ordinal) {
+	return ordinal == 0 ? 0 : key(TERRAIN, x, y, ordinal);
+    }
+
+    static long unit(final int interactableID, final Position pos) {
+	return key(UNIT, interactableID, pos.getX(), pos.getY());
+    }
+
+    static long owner(final int interactableID, final Team team) {
+	return key(OWNER, interactableID, team.ordinal(), 0);
+    }
+
+    static long resource(final Team team, final Resource resource, final int amount) {
+	return key(RESOURCE, team.ordinal(), resource.ordinal(), amount);
+    }
+
+    private static long key(final int kind, final int a, final int b, final int c) {
+	long high = mix(GAMMA * kind + ((long) a << 32 | (b & 0xFFFFFFFFL)));
+	return mix(high + GAMMA + c);
+    }
+
+    private static long mix(final long value) {
+	long z = value;
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+    }
+}
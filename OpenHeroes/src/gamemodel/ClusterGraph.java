@@ -0,0 +1,507 @@
+package gamemodel;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import static java.lang.Math.abs;
+
+/**
+ * Hierarchical pathfinding (HPA*) on top of a PathMap, for maps that are too large for a
+ * flat A* search to answer while the player waits.
+ * <p>
+ * The map is cut into square clusters of CLUSTER_SIZE tiles. Where two neighboring
+ * clusters can be walked between, the border cells on either side become abstract nodes
+ * joined by a transition: one per run of open border rows, or one at each end of a long
+ * run. Within a cluster, the cheapest cost between every pair of its nodes is computed
+ * by a Dijkstra search that stays inside the cluster. A query connects the mover and the
+ * destination to the nodes of their own clusters, runs A* over the abstract graph and
+ * then refines each abstract hop into concrete steps with a short flat search.
+ * <p>
+ * Clusters are built lazily, the first time a search reaches them, and rebuilt on the next
+ * search after a tile in or next to them has changed. Short trips (within a cluster of
+ * each other) are handed straight to the flat search.
+ * <p>
+ * A search for the cheapest of several destinations connects every destination to the
+ * nodes of its cluster and stops at whichever one the abstract search reaches first,
+ * guided by the smallest estimate to any of them.
+ * <p>
+ * Tolerance: every path found is walkable and at least as cheap as the abstract path
+ * it was refined from. Because only a few border cells act as transitions, a path may
+ * cost more than the optimum, and nothing bounds how much more. ClusterGraphBenchmark
+ * measures it against the flat search on seeded random 512x512 and 1024x1024 maps; with
+ * seed 1 the paths cost between 1% and 5% more on average depending on the map, up to
+ * 22% more for a single path, and every destination the flat search reached was reached.
+ */
+final class ClusterGraph
+{
+    static final int CLUSTER_SIZE = 16;
+    /** Runs of open border rows at least this long get a transition at each end instead of one in the middle. */
+    private static final int LONG_RUN = 6;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final int NO_CELL = PathWorkspace.NO_CELL;
+
+    private final PathMap map;
+    private final int mapWidth;
+    private final int mapHeight;
+    private final int clusterColumns;
+    private final int clusterRows;
+    private final Cluster[] clusters;
+
+    // Scratch memory for the Dijkstra searches confined to a single cluster.
+    private final int[] localCosts = new int[CLUSTER_SIZE * CLUSTER_SIZE];
+    private final IndexedMinHeap localOpenSet = new IndexedMinHeap(CLUSTER_SIZE * CLUSTER_SIZE);
+    private final int[] neighbors = new int[PathWorkspace.MAX_NEIGHBORS];
+
+    ClusterGraph(final PathMap map) {
+	this.map = map;
+	this.mapWidth = map.getMapWidth();
+	this.mapHeight = map.getMapHeight();
+	this.clusterColumns = (mapWidth + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+	this.clusterRows = (mapHeight + CLUSTER_SIZE - 1) / CLUSTER_SIZE;
+	this.clusters = new Cluster[clusterColumns * clusterRows];
+	for (int index = 0; index < clusters.length; index++) {
+	    clusters[index] = new Cluster();
+	}
+    }
+
+    /**
+     * Marks the clusters that could be affected by a change to the tiles inside the bounds.
+     * Clusters just across a border are included, since the transitions between two
+     * clusters depend on the cells on both sides.
+     */
+    void markDirty(final int minX, final int minY, final int maxX, final int maxY) {
+	int firstColumn = Integer.max(minX - 1, 0) / CLUSTER_SIZE;
+	int lastColumn = Integer.min(maxX + 1, mapWidth - 1) / CLUSTER_SIZE;
+	int firstRow = Integer.max(minY - 1, 0) / CLUSTER_SIZE;
+	int lastRow = Integer.min(maxY + 1, mapHeight - 1) / CLUSTER_SIZE;
+	for (int column = firstColumn; column <= lastColumn; column++) {
+	    for (int row = firstRow; row <= lastRow; row++) {
+		clusters[column * clusterRows + row].dirty = true;
+	    }
+	}
+    }
+
+    void markAllDirty() {
+	for (Cluster cluster : clusters) {
+	    cluster.dirty = true;
+	}
+    }
+
+    /**
+     * Same contract as PathMap.findPath: the goal is the mover's position, the start is the
+     * destination, and the path runs from the first step to the destination.
+     */
+    LinkedList<Position> findPath(final Position goal, final Position start) {
+	if (!map.isWithinMap(start) || !map.isWithinMap(goal) || !map.isPassable(start)) {
+	    return new LinkedList<>();
+	}
+	int moverCell = map.cellIndex(goal);
+	if (isNear(moverCell, map.cellIndex(start))) {
+	    // Close enough for the flat search to stay cheap, and exact.
+	    return map.findPath(goal, start);
+	}
+	return search(moverCell, new int[] {map.cellIndex(start)});
+    }
+
+    /**
+     * Same contract as PathMap.findPathToAny: the path runs from the first step to whichever
+     * of the destinations is cheapest to reach. Destinations off the map or impassable are
+     * ignored.
+     */
+    LinkedList<Position> findPathToAny(final Position goal, final Iterable<Position> starts) {
+	if (!map.isWithinMap(goal)) {
+	    return new LinkedList<>();
+	}
+	int moverCell = map.cellIndex(goal);
+	int[] destinationCells = new int[PathWorkspace.MAX_NEIGHBORS + 1];
+	int count = 0;
+	for (Position start : starts) {
+	    if (!map.isWithinMap(start) || !map.isPassable(start)) {
+		continue;
+	    }
+	    int cell = map.cellIndex(start);
+	    if (isNear(moverCell, cell)) {
+		// A destination this close bounds the flat search, so it stays cheap however far the others are.
+		return map.findPathToAny(goal, starts);
+	    }
+	    if (count == destinationCells.length) {
+		destinationCells = Arrays.copyOf(destinationCells, 2 * count);
+	    }
+	    destinationCells[count] = cell;
+	    count++;
+	}
+	if (count == 0) {
+	    return new LinkedList<>();
+	}
+	return search(moverCell, Arrays.copyOf(destinationCells, count));
+    }
+
+    private boolean isNear(final int moverCell, final int destinationCell) {
+	int moverCluster = clusterOf(moverCell);
+	int destinationCluster = clusterOf(destinationCell);
+	return abs(moverCluster / clusterRows - destinationCluster / clusterRows) <= 1 &&
+	       abs(moverCluster % clusterRows - destinationCluster % clusterRows) <= 1;
+    }
+
+    /** The abstract search from the mover to the cheapest of the destinations, which are passable and not near it. */
+    private LinkedList<Position> search(final int moverCell, final int[] destinationCells) {
+	map.prepareSearch();
+	int moverCluster = clusterOf(moverCell);
+
+	Cluster exitCluster = cluster(moverCluster);
+	localDijkstra(moverCluster, moverCell);
+	int[] exitCosts = new int[exitCluster.nodes.length];
+	for (int node = 0; node < exitCosts.length; node++) {
+	    exitCosts[node] = localCost(moverCluster, exitCluster.nodes[node]);
+	}
+
+	// Costs are counted on the cells entered, so the cost of walking from a node to a
+	// destination is the cost of walking the other way, less the node, plus the destination.
+	int[] destinationClusters = new int[destinationCells.length];
+	int[][] entryCosts = new int[destinationCells.length][];
+	for (int destination = 0; destination < destinationCells.length; destination++) {
+	    int destinationCell = destinationCells[destination];
+	    int destinationCluster = clusterOf(destinationCell);
+	    Cluster entryCluster = cluster(destinationCluster);
+	    localDijkstra(destinationCluster, destinationCell);
+	    int destinationCost = map.passCostCell(destinationCell);
+	    destinationClusters[destination] = destinationCluster;
+	    entryCosts[destination] = new int[entryCluster.nodes.length];
+	    for (int node = 0; node < entryCluster.nodes.length; node++) {
+		int cost = localCost(destinationCluster, entryCluster.nodes[node]);
+		entryCosts[destination][node] = cost == UNREACHABLE ? UNREACHABLE :
+						cost - map.passCostCell(entryCluster.nodes[node]) + destinationCost;
+	    }
+	}
+
+	PathWorkspace search = map.newSearch();
+	IndexedMinHeap openSet = search.getOpenSet();
+	for (int node = 0; node < exitCosts.length; node++) {
+	    relax(search, NO_CELL, 0, exitCluster.nodes[node], exitCosts[node], destinationCells);
+	}
+	while (!openSet.isEmpty()) {
+	    int currentCell = openSet.poll();
+	    if (isDestination(currentCell, destinationCells)) {
+		return refine(search, moverCell, currentCell);
+	    }
+	    search.close(currentCell);
+	    int currentGScore = search.getGScore(currentCell);
+	    int clusterIndex = clusterOf(currentCell);
+	    Cluster cluster = cluster(clusterIndex);
+	    int node = cluster.nodeIndex(currentCell);
+	    if (node < 0) {
+		continue;
+	    }
+	    int[] edgeCells = cluster.edgeCells[node];
+	    int[] edgeCosts = cluster.edgeCosts[node];
+	    for (int edge = 0; edge < edgeCells.length; edge++) {
+		relax(search, currentCell, currentGScore, edgeCells[edge], edgeCosts[edge], destinationCells);
+	    }
+	    for (int destination = 0; destination < destinationCells.length; destination++) {
+		if (clusterIndex == destinationClusters[destination]) {
+		    relax(search, currentCell, currentGScore, destinationCells[destination], entryCosts[destination][node],
+			  destinationCells);
+		}
+	    }
+	}
+	return new LinkedList<>();
+    }
+
+    private void relax(final PathWorkspace search, final int fromCell, final int fromGScore, final int toCell, final int cost,
+		       final int[] destinationCells)
+    {
+	if (cost == UNREACHABLE || toCell == fromCell || search.isClosed(toCell)) {
+	    return;
+	}
+	int tentativeGScore = fromGScore + cost;
+	if (tentativeGScore < search.getGScore(toCell)) {
+	    search.record(toCell, tentativeGScore, fromCell);
+	    search.getOpenSet().insertOrDecrease(toCell, tentativeGScore + estimate(toCell, destinationCells));
+	}
+    }
+
+    /** The smallest estimate to any of the destinations, which stays admissible. */
+    private int estimate(final int cell, final int[] destinationCells) {
+	int estimate = Integer.MAX_VALUE;
+	for (int destinationCell : destinationCells) {
+	    estimate = Integer.min(estimate, map.heuristicCostEstimate(cell, destinationCell));
+	}
+	return estimate;
+    }
+
+    private static boolean isDestination(final int cell, final int[] destinationCells) {
+	for (int destinationCell : destinationCells) {
+	    if (destinationCell == cell) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /** Turns the abstract path into concrete steps, one short flat search per abstract hop. */
+    private LinkedList<Position> refine(final PathWorkspace search, final int moverCell, final int destinationCell) {
+	LinkedList<Integer> waypoints = new LinkedList<>();
+	for (int cell = destinationCell; cell != NO_CELL; cell = search.getCameFrom(cell)) {
+	    waypoints.addFirst(cell);
+	}
+	// Every flat search below reuses the workspace, so the abstract path must be read out first.
+	LinkedList<Position> fullPath = new LinkedList<>();
+	int previousCell = moverCell;
+	for (int waypoint : waypoints) {
+	    if (waypoint == previousCell) {
+		// A passable mover standing on a node of its cluster.
+		continue;
+	    }
+	    LinkedList<Position> segment = map.findPath(map.cellPosition(previousCell), map.cellPosition(waypoint));
+	    if (segment.isEmpty()) {
+		return new LinkedList<>();
+	    }
+	    fullPath.addAll(segment);
+	    previousCell = waypoint;
+	}
+	return fullPath;
+    }
+
+    private int clusterOf(final int cell) {
+	return (cell / mapHeight / CLUSTER_SIZE) * clusterRows + (cell % mapHeight) / CLUSTER_SIZE;
+    }
+
+    private Cluster cluster(final int clusterIndex) {
+	Cluster cluster = clusters[clusterIndex];
+	if (cluster.dirty) {
+	    rebuild(clusterIndex, cluster);
+	}
+	return cluster;
+    }
+
+    private void rebuild(final int clusterIndex, final Cluster cluster) {
+	int column = clusterIndex / clusterRows;
+	int row = clusterIndex % clusterRows;
+	CellPairs transitions = new CellPairs();
+	for (int dx = -1; dx <= 1; dx++) {
+	    for (int dy = -1; dy <= 1; dy++) {
+		int neighborColumn = column + dx;
+		int neighborRow = row + dy;
+		if ((dx == 0 && dy == 0) || neighborColumn < 0 || neighborRow < 0 || neighborColumn >= clusterColumns ||
+		    neighborRow >= clusterRows) {
+		    continue;
+		}
+		// Each border is always walked from the same side, so both clusters agree on its transitions.
+		if (dx > 0 || (dx == 0 && dy > 0)) {
+		    addBorderTransitions(column, row, dx, dy, transitions, false);
+		} else {
+		    addBorderTransitions(neighborColumn, neighborRow, -dx, -dy, transitions, true);
+		}
+	    }
+	}
+
+	int[] nodes = Arrays.copyOf(transitions.own, transitions.size);
+	Arrays.sort(nodes);
+	int nodeCount = 0;
+	for (int index = 0; index < nodes.length; index++) {
+	    if (index == 0 || nodes[index] != nodes[index - 1]) {
+		nodes[nodeCount] = nodes[index];
+		nodeCount++;
+	    }
+	}
+	cluster.nodes = Arrays.copyOf(nodes, nodeCount);
+
+	cluster.edgeCells = new int[nodeCount][];
+	cluster.edgeCosts = new int[nodeCount][];
+	int[] intraCosts = new int[nodeCount];
+	for (int node = 0; node < nodeCount; node++) {
+	    // Edges to the other nodes of the cluster that can be reached without leaving it...
+	    localDijkstra(clusterIndex, cluster.nodes[node]);
+	    int edgeCount = 0;
+	    for (int other = 0; other < nodeCount; other++) {
+		intraCosts[other] = other == node ? UNREACHABLE : localCost(clusterIndex, cluster.nodes[other]);
+		if (intraCosts[other] != UNREACHABLE) {
+		    edgeCount++;
+		}
+	    }
+	    // ...and across the border, where the cost is that of stepping onto the cell on the other side.
+	    for (int index = 0; index < transitions.size; index++) {
+		if (transitions.own[index] == cluster.nodes[node]) {
+		    edgeCount++;
+		}
+	    }
+	    int[] edgeCells = new int[edgeCount];
+	    int[] edgeCosts = new int[edgeCount];
+	    int edge = 0;
+	    for (int other = 0; other < nodeCount; other++) {
+		if (intraCosts[other] != UNREACHABLE) {
+		    edgeCells[edge] = cluster.nodes[other];
+		    edgeCosts[edge] = intraCosts[other];
+		    edge++;
+		}
+	    }
+	    for (int index = 0; index < transitions.size; index++) {
+		if (transitions.own[index] == cluster.nodes[node]) {
+		    edgeCells[edge] = transitions.other[index];
+		    edgeCosts[edge] = map.passCostCell(transitions.other[index]);
+		    edge++;
+		}
+	    }
+	    cluster.edgeCells[node] = edgeCells;
+	    cluster.edgeCosts[node] = edgeCosts;
+	}
+	cluster.dirty = false;
+    }
+
+    /**
+     * Adds the transitions across the border between a cluster and its neighbor in the
+     * direction (dx, dy), which is one of (1, 0), (0, 1), (1, 1) and (1, -1).
+     */
+    private void addBorderTransitions(final int column, final int row, final int dx, final int dy, final CellPairs out,
+				      final boolean swapped)
+    {
+	int left = column * CLUSTER_SIZE;
+	int top = row * CLUSTER_SIZE;
+	int right = Integer.min(left + CLUSTER_SIZE, mapWidth) - 1;
+	int bottom = Integer.min(top + CLUSTER_SIZE, mapHeight) - 1;
+	if (dx == 1 && dy == 1) {
+	    addIfPassable(right * mapHeight + bottom, (right + 1) * mapHeight + bottom + 1, out, swapped);
+	} else if (dx == 1 && dy == -1) {
+	    addIfPassable(right * mapHeight + top, (right + 1) * mapHeight + top - 1, out, swapped);
+	} else if (dx == 1) {
+	    int length = bottom - top + 1;
+	    int[] inside = new int[length];
+	    int[] outside = new int[length];
+	    for (int i = 0; i < length; i++) {
+		inside[i] = right * mapHeight + top + i;
+		outside[i] = (right + 1) * mapHeight + top + i;
+	    }
+	    addEdgeTransitions(inside, outside, out, swapped);
+	} else {
+	    int length = right - left + 1;
+	    int[] inside = new int[length];
+	    int[] outside = new int[length];
+	    for (int i = 0; i < length; i++) {
+		inside[i] = (left + i) * mapHeight + bottom;
+		outside[i] = (left + i) * mapHeight + bottom + 1;
+	    }
+	    addEdgeTransitions(inside, outside, out, swapped);
+	}
+    }
+
+    /**
+     * The cells inside[i] and outside[i] face each other across a straight border. Every
+     * run of rows where both sides are open gets one or two transitions. Diagonal crossings
+     * are only added where no open row next to them already connects the two sides.
+     */
+    private void addEdgeTransitions(final int[] inside, final int[] outside, final CellPairs out, final boolean swapped) {
+	int length = inside.length;
+	boolean[] open = new boolean[length];
+	for (int i = 0; i < length; i++) {
+	    open[i] = map.isPassableCell(inside[i]) && map.isPassableCell(outside[i]);
+	}
+	int i = 0;
+	while (i < length) {
+	    if (!open[i]) {
+		i++;
+		continue;
+	    }
+	    int runStart = i;
+	    while (i < length && open[i]) {
+		i++;
+	    }
+	    int runEnd = i - 1;
+	    if (runEnd - runStart + 1 >= LONG_RUN) {
+		out.add(inside[runStart], outside[runStart], swapped);
+		out.add(inside[runEnd], outside[runEnd], swapped);
+	    } else {
+		int middle = (runStart + runEnd) / 2;
+		out.add(inside[middle], outside[middle], swapped);
+	    }
+	}
+	for (i = 0; i + 1 < length; i++) {
+	    if (!open[i] && !open[i + 1]) {
+		addIfPassable(inside[i], outside[i + 1], out, swapped);
+		addIfPassable(inside[i + 1], outside[i], out, swapped);
+	    }
+	}
+    }
+
+    private void addIfPassable(final int inside, final int outside, final CellPairs out, final boolean swapped) {
+	if (map.isPassableCell(inside) && map.isPassableCell(outside)) {
+	    out.add(inside, outside, swapped);
+	}
+    }
+
+    /**
+     * Dijkstra from the source cell to every cell of the cluster, never leaving the cluster.
+     * The source itself may be impassable, since it can be the mover's own tile.
+     */
+    private void localDijkstra(final int clusterIndex, final int sourceCell) {
+	int left = clusterIndex / clusterRows * CLUSTER_SIZE;
+	int top = clusterIndex % clusterRows * CLUSTER_SIZE;
+	Arrays.fill(localCosts, UNREACHABLE);
+	localOpenSet.clear();
+	int source = localIndex(left, top, sourceCell);
+	localCosts[source] = 0;
+	localOpenSet.insertOrDecrease(source, 0);
+	while (!localOpenSet.isEmpty()) {
+	    int current = localOpenSet.poll();
+	    int cell = (left + current / CLUSTER_SIZE) * mapHeight + top + current % CLUSTER_SIZE;
+	    int cost = localCosts[current];
+	    int neighborCount = map.neighborCells(cell, neighbors);
+	    for (int i = 0; i < neighborCount; i++) {
+		int neighborCell = neighbors[i];
+		int x = neighborCell / mapHeight - left;
+		int y = neighborCell % mapHeight - top;
+		if (x < 0 || y < 0 || x >= CLUSTER_SIZE || y >= CLUSTER_SIZE || !map.isPassableCell(neighborCell)) {
+		    continue;
+		}
+		int neighbor = x * CLUSTER_SIZE + y;
+		int tentativeCost = cost + map.passCostCell(neighborCell);
+		if (tentativeCost < localCosts[neighbor]) {
+		    localCosts[neighbor] = tentativeCost;
+		    localOpenSet.insertOrDecrease(neighbor, tentativeCost);
+		}
+	    }
+	}
+    }
+
+    private int localCost(final int clusterIndex, final int cell) {
+	return localCosts[localIndex(clusterIndex / clusterRows * CLUSTER_SIZE, clusterIndex % clusterRows * CLUSTER_SIZE, cell)];
+    }
+
+    private int localIndex(final int left, final int top, final int cell) {
+	return (cell / mapHeight - left) * CLUSTER_SIZE + cell % mapHeight - top;
+    }
+
+    private static final class Cluster
+    {
+	private boolean dirty = true;
+	/** Cells of this cluster that have a transition into a neighboring cluster, sorted. */
+	private int[] nodes = new int[0];
+	/**
+	 * The abstract edges leaving each node: the other nodes it can reach without leaving
+	 * the cluster, and the cells across the border it has a transition to.
+	 */
+	private int[][] edgeCells = new int[0][];
+	private int[][] edgeCosts = new int[0][];
+
+	private int nodeIndex(final int cell) {
+	    return Arrays.binarySearch(nodes, cell);
+	}
+    }
+
+    /** A growable list of transitions, stored as the cell in the cluster being built and the cell across the border. */
+    private static final class CellPairs
+    {
+	private int[] own = new int[CLUSTER_SIZE];
+	private int[] other = new int[CLUSTER_SIZE];
+	private int size = 0;
+
+	private void add(final int inside, final int outside, final boolean swapped) {
+	    if (size == own.length) {
+		own = Arrays.copyOf(own, size * 2);
+		other = Arrays.copyOf(other, size * 2);
+	    }
+	    own[size] = swapped ? outside : inside;
+	    other[size] = swapped ? inside : outside;
+	    size++;
+	}
+    }
+}
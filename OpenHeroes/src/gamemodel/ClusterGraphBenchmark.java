@@ -0,0 +1,89 @@
+package gamemodel;
+
+import gamemodel.GameModel.MainMap;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the paths of the ClusterGraph with those of the flat PathMap.findPath on
+ * seeded random maps: how much more the hierarchical paths cost, whether both searches
+ * reach the same destinations, and how long each takes for the same queries. The first
+ * hierarchical round builds the clusters, so it is timed apart from the rest.
+ * <p>
+ * Arguments, all optional: the random seed and the number of queries per map.
+ */
+final class ClusterGraphBenchmark
+{
+    private ClusterGraphBenchmark() {}
+
+    public static void main(String[] args) {
+	long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+	int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+	Random random = new Random(seed);
+	System.out.printf(Locale.ROOT, "seed %d, %d queries per map%n", seed, queryCount);
+	System.out.printf(Locale.ROOT, "%-24s %8s %8s %8s %9s %9s %10s %9s%n", "map", "reached", "missed", "extra",
+			  "mean", "max", "flat ms", "hpa ms");
+	for (int size : new int[] { 512, 1024 }) {
+	    String suffix = " " + size + "x" + size;
+	    run("generated" + suffix, BenchmarkMaps.randomized(random, size, size), random, queryCount);
+	    run("sea lakes" + suffix, BenchmarkMaps.blobs(random, size, size, 0.2, TerrainType.SEA), random, queryCount);
+	    run("sea and mud" + suffix, BenchmarkMaps.blobs(random, size, size, 0.3, TerrainType.SEA, TerrainType.MUD),
+		random, queryCount);
+	}
+    }
+
+    /*
+     * Reached counts the queries the flat search found a path for, missed those of them the
+     * hierarchical search found none for, and extra those it found a path for that the flat
+     * search didn't. Mean and max are how much more the hierarchical paths cost, in percent.
+     */
+    private static void run(final String name, final MainMap map, final Random random, final int queryCount) {
+	Position[][] queries = BenchmarkMaps.queries(random, map, queryCount);
+	long[] flatCosts = new long[queries.length];
+	long[] clusterCosts = new long[queries.length];
+
+	long start = System.nanoTime();
+	for (int index = 0; index < queries.length; index++) {
+	    flatCosts[index] = BenchmarkMaps.pathCost(map, map.findPath(queries[index][0], queries[index][1]));
+	}
+	long flatNanos = System.nanoTime() - start;
+
+	ClusterGraph clusterGraph = new ClusterGraph(map);
+	start = System.nanoTime();
+	for (int index = 0; index < queries.length; index++) {
+	    clusterCosts[index] = BenchmarkMaps.pathCost(map, clusterGraph.findPath(queries[index][0], queries[index][1]));
+	}
+	long buildingNanos = System.nanoTime() - start;
+	start = System.nanoTime();
+	for (int index = 0; index < queries.length; index++) {
+	    clusterGraph.findPath(queries[index][0], queries[index][1]);
+	}
+	long clusterNanos = System.nanoTime() - start;
+
+	int reached = 0;
+	int missed = 0;
+	int extra = 0;
+	double totalExcess = 0;
+	double maxExcess = 0;
+	for (int index = 0; index < queries.length; index++) {
+	    if (flatCosts[index] < 0) {
+		extra += clusterCosts[index] < 0 ? 0 : 1;
+		continue;
+	    }
+	    reached++;
+	    if (clusterCosts[index] < 0) {
+		missed++;
+		continue;
+	    }
+	    double excess = 100.0 * (clusterCosts[index] - flatCosts[index]) / flatCosts[index];
+	    totalExcess += excess;
+	    maxExcess = Math.max(maxExcess, excess);
+	}
+	double meanExcess = reached > missed ? totalExcess / (reached - missed) : 0;
+	System.out.printf(Locale.ROOT, "%-24s %8d %8d %8d %8.1f%% %8.1f%% %10.1f %9.1f (%.1f with building)%n", name,
+			  reached, missed, extra, meanExcess, maxExcess, flatNanos / 1.0e6, clusterNanos / 1.0e6,
+			  buildingNanos / 1.0e6);
+    }
+}
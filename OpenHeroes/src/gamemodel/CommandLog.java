@@ -0,0 +1,133 @@
+package gamemodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The commands applied to a GameModel, numbered in the order they were applied, after a
+ * checkpoint of the model they started from. Deserializing the checkpoint and applying the
+ * commands to it in order rebuilds the model as it is now.
+ * <p>
+ * The server keeps one for its model. A client keeps one starting from the last model the
+ * server sent it, numbered the way the server numbered it, so that it can catch up with the
+ * commands the server has applied since instead of being sent a whole model: it asks for the
+ * commands from its next sequence number on, adds them with extend and replays the log.
+ * <p>
+ * Every COMPACTION_INTERVAL commands the log takes a new checkpoint of the model and drops
+ * the commands before it, so a long game neither grows the log without bound nor makes
+ * rebuilding the model replay the whole game. The checkpoint is the model serialized as
+ * it is sent to clients, which doesn't cost more than a few client syncs.
+ * <p>
+ * The log must only be used by the thread that changes the model.
+ */
+public final class CommandLog
+{
+    private static final int COMPACTION_INTERVAL = 1024;
+
+    private byte[] checkpoint;
+    // The sequence number of the first command after the checkpoint.
+    private long checkpointSequence;
+    private final List<GameCommand> commands = new ArrayList<>();
+
+    /**
+     * A log starting from the model as it is now.
+     *
+     * @param firstSequence the sequence number the first command will get. A log that
+     * replaces another of the same game carries on from where that one stopped, so that the
+     * numbers clients have seen stay meaningful.
+     */
+    public CommandLog(final GameModel gameModel, final long firstSequence) throws IOException {
+	this.checkpoint = serialize(gameModel);
+	this.checkpointSequence = firstSequence;
+    }
+
+    /**
+     * Adds a command that has just been applied to the model. When enough commands have
+     * piled up the model is checkpointed and they are dropped.
+     *
+     * @return the sequence number of the command.
+     */
+    public long append(final GameCommand command, final GameModel gameModel) throws IOException {
+	long sequence = nextSequence();
+	commands.add(command);
+	if (commands.size() >= COMPACTION_INTERVAL) {
+	    compact(gameModel);
+	}
+	return sequence;
+    }
+
+    /**
+     * Adds commands another log numbered from the given sequence number on, skipping those
+     * this log already has. Nothing is added if they would leave a gap.
+     *
+     * @return whether this log now reaches as far as the other one.
+     */
+    public boolean extend(final long firstSequence, final List<GameCommand> newCommands) {
+	long known = nextSequence() - firstSequence;
+	if (known < 0) {
+	    return false;
+	}
+	if (known < newCommands.size()) {
+	    commands.addAll(newCommands.subList((int) known, newCommands.size()));
+	}
+	return true;
+    }
+
+    /** Checkpoints the model, which must be the one the commands were applied to, and drops the commands. */
+    public void compact(final GameModel gameModel) throws IOException {
+	checkpoint = serialize(gameModel);
+	checkpointSequence = nextSequence();
+	commands.clear();
+    }
+
+    /** The sequence number the next command will get. */
+    public long nextSequence() {
+	return checkpointSequence + commands.size();
+    }
+
+    /**
+     * A copy of the commands from the given sequence number on, or null if some of them have
+     * been compacted away, in which case the whole model has to be sent instead.
+     */
+    public List<GameCommand> since(final long sequence) {
+	if (sequence < checkpointSequence || sequence > nextSequence()) {
+	    return null;
+	}
+	return new ArrayList<>(commands.subList((int) (sequence - checkpointSequence), commands.size()));
+    }
+
+    public int size() {
+	return commands.size();
+    }
+
+    /**
+     * A new model rebuilt from the checkpoint and the commands after it. The model the log
+     * was kept for is left alone, so it can be replaced by the rebuilt one if it has been
+     * left in a broken state.
+     */
+    public GameModel replay() throws InvalidMainMapStateException {
+	GameModel gameModel;
+	try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(checkpoint))) {
+	    gameModel = (GameModel) in.readObject();
+	} catch (IOException | ClassNotFoundException e) {
+	    throw new InvalidMainMapStateException("Unable to read the checkpoint of the command log: " + e);
+	}
+	for (GameCommand command : commands) {
+	    gameModel.execute(command);
+	}
+	return gameModel;
+    }
+
+    private static byte[] serialize(final GameModel gameModel) throws IOException {
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+	    out.writeObject(gameModel);
+	}
+	return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,58 @@
+package gamemodel;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The entities standing on one layer of a map, each under a small integer id. The layer
+ * itself only stores the ids, which takes half the memory of a reference per tile and
+ * lets a whole layer be a single flat array.
+ * <p>
+ * Ids of removed entities are handed out again, so they stay small however many heroes
+ * have come and gone.
+ */
+final class EntityTable<T> implements Serializable
+{
+    /** Stored in a layer where no entity stands. */
+    static final int NO_ENTITY = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] entities = new Object[INITIAL_CAPACITY];
+    private int size = 0;
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+
+    int add(final T entity) {
+	int id;
+	if (freeCount > 0) {
+	    freeCount--;
+	    id = freeIds[freeCount];
+	} else {
+	    if (size == entities.length) {
+		entities = Arrays.copyOf(entities, 2 * size);
+	    }
+	    id = size;
+	    size++;
+	}
+	entities[id] = entity;
+	return id;
+    }
+
+    @SuppressWarnings("unchecked") T get(final int id) {
+	return id == NO_ENTITY ? null : (T) entities[id];
+    }
+
+    /** Same as get, but for ids from outside the game, which may be anything. Null if nothing has the id. */
+    T find(final int id) {
+	return id >= 0 && id < size ? get(id) : null;
+    }
+
+    void remove(final int id) {
+	entities[id] = null;
+	if (freeCount == freeIds.length) {
+	    freeIds = Arrays.copyOf(freeIds, 2 * freeCount);
+	}
+	freeIds[freeCount] = id;
+	freeCount++;
+    }
+}
@@ -0,0 +1,211 @@
+package gamemodel;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * What one team knows of the main map, as two layers of bits: the tiles it has ever
+ * explored, and the tiles its units can see right now. Unexplored tiles are hidden from
+ * the team and count as impassable for its searches.
+ * <p>
+ * The layers are chunked like the other map layers (see MapChunks), and a chunk column of
+ * SIZE tiles is exactly one long, with the bit for a tile at y found by shifting by y
+ * (Java only uses the low six bits of a long shift). Revealing or hiding a box of tiles is
+ * therefore a single masked word operation per column and chunk, and chunks the team has
+ * never explored take no memory. The number of explored tiles is kept up to date by
+ * counting the bits each reveal flips.
+ * <p>
+ * Copies share their chunks with the fog they were copied from. Either side copies a
+ * shared chunk before it first writes to it, so a copy costs one pointer per chunk and a
+ * reader may go on reading a copy while the original changes on another thread.
+ */
+public final class FogOfWar implements Serializable
+{
+    private final int mapWidth;
+    private final int mapHeight;
+    private final int chunkRows;
+    private final long[][] explored;
+    private final long[][] visible;
+    private int exploredTiles = 0;
+    // The chunks that a copy may still be reading, null while there are none. Not sent along,
+    // since the chunks of a deserialized fog are its own.
+    private transient boolean[] shared = null;
+
+    /**
+     * A fog of war for a map of the given size. Without fog the whole map starts out
+     * explored and visible.
+     */
+    public FogOfWar(final int mapWidth, final int mapHeight, final boolean fog) {
+	this.mapWidth = mapWidth;
+	this.mapHeight = mapHeight;
+	this.chunkRows = MapChunks.chunksAcross(mapHeight);
+	int chunkCount = MapChunks.chunksAcross(mapWidth) * chunkRows;
+	this.explored = new long[chunkCount][];
+	this.visible = new long[chunkCount][];
+	if (!fog) {
+	    reveal(0, 0, mapWidth - 1, mapHeight - 1);
+	}
+    }
+
+    private FogOfWar(final FogOfWar other) {
+	this.mapWidth = other.mapWidth;
+	this.mapHeight = other.mapHeight;
+	this.chunkRows = other.chunkRows;
+	this.explored = other.explored.clone();
+	this.visible = other.visible.clone();
+	this.exploredTiles = other.exploredTiles;
+	this.shared = allShared(explored.length);
+	other.shared = allShared(explored.length);
+    }
+
+    /**
+     * A copy that later reveals and hides leave alone. Must be made on the thread that
+     * reveals and hides, since the chunks are only copied once they are written to.
+     */
+    public FogOfWar copy() {
+	return new FogOfWar(this);
+    }
+
+    private static boolean[] allShared(final int chunkCount) {
+	boolean[] shared = new boolean[chunkCount];
+	Arrays.fill(shared, true);
+	return shared;
+    }
+
+    /**
+     * Explores the tiles inside the bounds, clipped to the map, and makes them visible.
+     *
+     * @return whether any of them hadn't been explored before.
+     */
+    public boolean reveal(final int minX, final int minY, final int maxX, final int maxY) {
+	int firstY = Integer.max(minY, 0);
+	int lastY = Integer.min(maxY, mapHeight - 1);
+	int newlyExplored = 0;
+	for (int x = Integer.max(minX, 0); x <= Integer.min(maxX, mapWidth - 1); x++) {
+	    for (int y = firstY; y <= lastY; y = (y | MapChunks.MASK) + 1) {
+		int chunk = chunkIndex(x, y);
+		long mask = columnMask(y, Integer.min(y | MapChunks.MASK, lastY));
+		long[] exploredWords = writableChunk(explored, chunk);
+		newlyExplored += Long.bitCount(mask & ~exploredWords[x & MapChunks.MASK]);
+		exploredWords[x & MapChunks.MASK] |= mask;
+		writableChunk(visible, chunk)[x & MapChunks.MASK] |= mask;
+	    }
+	}
+	exploredTiles += newlyExplored;
+	return newlyExplored > 0;
+    }
+
+    /** Makes the tiles inside the bounds, clipped to the map, no longer visible. They stay explored. */
+    public void hide(final int minX, final int minY, final int maxX, final int maxY) {
+	int firstY = Integer.max(minY, 0);
+	int lastY = Integer.min(maxY, mapHeight - 1);
+	for (int x = Integer.max(minX, 0); x <= Integer.min(maxX, mapWidth - 1); x++) {
+	    for (int y = firstY; y <= lastY; y = (y | MapChunks.MASK) + 1) {
+		int chunk = chunkIndex(x, y);
+		if (visible[chunk] != null) {
+		    writableChunk(visible, chunk)[x & MapChunks.MASK] &= ~columnMask(y, Integer.min(y | MapChunks.MASK, lastY));
+		}
+	    }
+	}
+    }
+
+    /**
+     * Explores the given cells and makes them visible.
+     *
+     * @return whether any of them hadn't been explored before.
+     */
+    boolean reveal(final int[] cells, final int count) {
+	int newlyExplored = 0;
+	for (int index = 0; index < count; index++) {
+	    int x = cells[index] / mapHeight;
+	    int y = cells[index] % mapHeight;
+	    int chunk = chunkIndex(x, y);
+	    long bit = 1L << y;
+	    long[] exploredWords = writableChunk(explored, chunk);
+	    if ((exploredWords[x & MapChunks.MASK] & bit) == 0) {
+		exploredWords[x & MapChunks.MASK] |= bit;
+		newlyExplored++;
+	    }
+	    writableChunk(visible, chunk)[x & MapChunks.MASK] |= bit;
+	}
+	exploredTiles += newlyExplored;
+	return newlyExplored > 0;
+    }
+
+    /** Makes the given cells no longer visible. They stay explored. */
+    void hide(final int[] cells, final int count) {
+	for (int index = 0; index < count; index++) {
+	    int x = cells[index] / mapHeight;
+	    int y = cells[index] % mapHeight;
+	    int chunk = chunkIndex(x, y);
+	    if (visible[chunk] != null) {
+		writableChunk(visible, chunk)[x & MapChunks.MASK] &= ~(1L << y);
+	    }
+	}
+    }
+
+    public boolean isExplored(final int x, final int y) {
+	return (exploredChunk(chunkIndex(x, y))[x & MapChunks.MASK] & (1L << y)) != 0;
+    }
+
+    boolean isExploredCell(final int cell) {
+	return isExplored(cell / mapHeight, cell % mapHeight);
+    }
+
+    public boolean isVisible(final int x, final int y) {
+	long[] visibleWords = visible[chunkIndex(x, y)];
+	return visibleWords != null && (visibleWords[x & MapChunks.MASK] & (1L << y)) != 0;
+    }
+
+    /** The explored bits of a chunk, one word per column. Must not be written to. */
+    long[] exploredChunk(final int chunk) {
+	long[] exploredWords = explored[chunk];
+	return exploredWords != null ? exploredWords : MapChunks.NO_BITS;
+    }
+
+    public int getExploredTileCount() {
+	return exploredTiles;
+    }
+
+    public int getVisibleTileCount() {
+	int count = 0;
+	for (long[] visibleWords : visible) {
+	    if (visibleWords != null) {
+		for (long word : visibleWords) {
+		    count += Long.bitCount(word);
+		}
+	    }
+	}
+	return count;
+    }
+
+    public int getTileCount() {
+	return mapWidth * mapHeight;
+    }
+
+    private int chunkIndex(final int x, final int y) {
+	return (x >> MapChunks.SHIFT) * chunkRows + (y >> MapChunks.SHIFT);
+    }
+
+    private long[] writableChunk(final long[][] chunks, final int chunk) {
+	if (shared != null && shared[chunk]) {
+	    // Both layers of the chunk are taken over at once, so the flag covers them both.
+	    if (explored[chunk] != null) {
+		explored[chunk] = explored[chunk].clone();
+	    }
+	    if (visible[chunk] != null) {
+		visible[chunk] = visible[chunk].clone();
+	    }
+	    shared[chunk] = false;
+	}
+	if (chunks[chunk] == null) {
+	    chunks[chunk] = new long[MapChunks.SIZE];
+	}
+	return chunks[chunk];
+    }
+
+    /** The bits of the tiles from firstY to lastY, which must lie in the same chunk column. */
+    private static long columnMask(final int firstY, final int lastY) {
+	return (-1L << firstY) & (-1L >>> (MapChunks.MASK - (lastY & MapChunks.MASK)));
+    }
+}
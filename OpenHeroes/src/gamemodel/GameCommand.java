@@ -0,0 +1,234 @@
+package gamemodel;
+
+import entity.Hero;
+import entity.HeroFactory;
+import entity.ResourceMine;
+import entity.Town;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A change to the game as it is played, such as a hero moving or a town being captured, in
+ * a form that can be kept and applied again. Everything that happens in a game after the
+ * players have joined goes through a command, so applying the commands of a game to the
+ * model they started from in the same order gives the same model. That is what a CommandLog
+ * relies on to rebuild a model.
+ * <p>
+ * Commands name the heroes, towns and mines they concern by InteractableID rather than
+ * holding on to them, since the entities change as the game goes on and a command is meant
+ * to be applied to a copy of the model as well. For the same reason they don't change once
+ * made.
+ */
+public abstract class GameCommand implements Serializable
+{
+    private GameCommand() {}
+
+    abstract void apply(GameModel gameModel) throws InvalidMainMapStateException;
+
+    /** The hero walks the path, which starts at the tile after the one it stands on. */
+    public static GameCommand moveHero(final int heroID, final Deque<Position> path) {
+	return new MoveHero(heroID, path);
+    }
+
+    /** The team buys the hero at the town. The hero is made anew from its name when applied. */
+    public static GameCommand buyHero(final Team team, final int townID, final Hero hero) {
+	return new BuyHero(team, townID, hero.getHeroName());
+    }
+
+    public static GameCommand killHero(final int heroID) {
+	return new KillHero(heroID);
+    }
+
+    public static GameCommand defeatTeam(final Team team) {
+	return new DefeatTeam(team);
+    }
+
+    public static GameCommand endTurn() {
+	return new EndTurn();
+    }
+
+    /** The town goes over to the owner of the hero, which may defeat the previous owner. */
+    public static GameCommand captureTown(final int heroID, final int townID) {
+	return new CaptureTown(heroID, townID);
+    }
+
+    /** The mine goes over to the owner of the hero. */
+    public static GameCommand captureMine(final int heroID, final int mineID) {
+	return new CaptureMine(heroID, mineID);
+    }
+
+    public static GameCommand startBattle() {
+	return new ChangeState(GameState.BATTLEFIELD);
+    }
+
+    public static GameCommand startTrade() {
+	return new ChangeState(GameState.TRADE);
+    }
+
+    /** Ends a battle or a trade. */
+    public static GameCommand backToMainMap() {
+	return new ChangeState(GameState.MAIN_MAP);
+    }
+
+    private static final class MoveHero extends GameCommand
+    {
+	private final int heroID;
+	private final List<Position> path;
+
+	private MoveHero(final int heroID, final Deque<Position> path) {
+	    this.heroID = heroID;
+	    this.path = new ArrayList<>(path);
+	}
+
+	@Override void apply(final GameModel gameModel) throws InvalidMainMapStateException {
+	    gameModel.moveHero(gameModel.getHeroByID(heroID), new LinkedList<>(path));
+	}
+
+	@Override public String toString() {
+	    return "MoveHero{" + heroID + ", " + path.size() + " steps}";
+	}
+    }
+
+    private static final class BuyHero extends GameCommand
+    {
+	private final Team team;
+	private final int townID;
+	private final String heroName;
+
+	private BuyHero(final Team team, final int townID, final String heroName) {
+	    this.team = team;
+	    this.townID = townID;
+	    this.heroName = heroName;
+	}
+
+	@Override void apply(final GameModel gameModel) throws InvalidMainMapStateException {
+	    gameModel.buyHero(team, HeroFactory.makeHero(heroName), gameModel.getTownByID(townID));
+	}
+
+	@Override public String toString() {
+	    return "BuyHero{" + team + ", " + townID + ", " + heroName + "}";
+	}
+    }
+
+    private static final class KillHero extends GameCommand
+    {
+	private final int heroID;
+
+	private KillHero(final int heroID) {
+	    this.heroID = heroID;
+	}
+
+	@Override void apply(final GameModel gameModel) throws InvalidMainMapStateException {
+	    gameModel.killHero(gameModel.getHeroByID(heroID));
+	}
+
+	@Override public String toString() {
+	    return "KillHero{" + heroID + "}";
+	}
+    }
+
+    private static final class DefeatTeam extends GameCommand
+    {
+	private final Team team;
+
+	private DefeatTeam(final Team team) {
+	    this.team = team;
+	}
+
+	@Override void apply(final GameModel gameModel) throws InvalidMainMapStateException {
+	    gameModel.defeatTeam(team);
+	}
+
+	@Override public String toString() {
+	    return "DefeatTeam{" + team + "}";
+	}
+    }
+
+    private static final class EndTurn extends GameCommand
+    {
+	@Override void apply(final GameModel gameModel) {
+	    gameModel.endTurn();
+	}
+
+	@Override public String toString() {
+	    return "EndTurn";
+	}
+    }
+
+    private static final class CaptureTown extends GameCommand
+    {
+	private final int heroID;
+	private final int townID;
+
+	private CaptureTown(final int heroID, final int townID) {
+	    this.heroID = heroID;
+	    this.townID = townID;
+	}
+
+	@Override void apply(final GameModel gameModel) throws InvalidMainMapStateException {
+	    Team team = gameModel.getHeroByID(heroID).getOwner();
+	    Town town = gameModel.getTownByID(townID);
+	    gameModel.setOwner(town, team);
+	    gameModel.getMainMap().notifyMainMapListeners();
+	    gameModel.checkDefeat();
+	}
+
+	@Override public String toString() {
+	    return "CaptureTown{" + heroID + ", " + townID + "}";
+	}
+    }
+
+    private static final class CaptureMine extends GameCommand
+    {
+	private final int heroID;
+	private final int mineID;
+
+	private CaptureMine(final int heroID, final int mineID) {
+	    this.heroID = heroID;
+	    this.mineID = mineID;
+	}
+
+	@Override void apply(final GameModel gameModel) throws InvalidMainMapStateException {
+	    Team team = gameModel.getHeroByID(heroID).getOwner();
+	    ResourceMine mine = gameModel.getResourceMineByID(mineID);
+	    gameModel.setOwner(mine, team);
+	    gameModel.getMainMap().notifyMainMapListeners();
+	}
+
+	@Override public String toString() {
+	    return "CaptureMine{" + heroID + ", " + mineID + "}";
+	}
+    }
+
+    /** The screen the game moves on to when a battle or trade starts or ends. */
+    private static final class ChangeState extends GameCommand
+    {
+	private final GameState gameState;
+
+	private ChangeState(final GameState gameState) {
+	    this.gameState = gameState;
+	}
+
+	@Override void apply(final GameModel gameModel) {
+	    switch (gameState) {
+		case BATTLEFIELD:
+		    gameModel.startBattle();
+		    break;
+		case TRADE:
+		    gameModel.trade();
+		    break;
+		default:
+		    // Battles and trades end the same way.
+		    gameModel.battleConcluded();
+	    }
+	}
+
+	@Override public String toString() {
+	    return "ChangeState{" + gameState + "}";
+	}
+    }
+}
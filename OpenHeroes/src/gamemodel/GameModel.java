@@ -13,8 +13,13 @@ import gamemodel.listeners.MainMapEvent;
 import gamemodel.listeners.MainMapEvent.MapEventType;
 import gamemodel.listeners.MainMapListener;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.EnumMap;
@@ -22,6 +27,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -49,15 +56,33 @@ public class GameModel implements Serializable
     private final List<Town> towns = new ArrayList<>();
     private final List<Hero> heroes = new ArrayList<>();
     private final List<ResourceMine> mines = new ArrayList<>();
+    // The same heroes, towns and mines sorted by owner, kept up to date by giveHero, killHero and setOwner.
+    private final OwnerIndex<Hero> heroOwners = new OwnerIndex<>();
+    private final OwnerIndex<Town> townOwners = new OwnerIndex<>();
+    private final OwnerIndex<ResourceMine> mineOwners = new OwnerIndex<>();
+    // Every hero, town and mine in the game under its InteractableID. The ids are only unique
+    // within the game, and those of killed heroes are handed out again.
+    private final EntityTable<Interactable> entities = new EntityTable<>();
+    // The keys (see BoardHash) of where the heroes stand, who owns what and the resources of
+    // every team, updated along with them. The terrain is hashed by the MainMap.
+    private long boardHash = 0;
     private final List<Team> turnOrder = new ArrayList<>();
     private final Map<Team, String> playerNames = new EnumMap<>(Team.class);
     private final Map<Team, int[]> resourceLists = new EnumMap<>(Team.class);
-    private final Map<Team, boolean[][]> fogsOfWar = new EnumMap<>(Team.class);
+    // What the towns and mines of every team yield at the end of a round, kept up to date by setOwner.
+    private final Map<Team, int[]> incomes = new EnumMap<>(Team.class);
+    private final Map<Team, FogOfWar> fogsOfWar = new EnumMap<>(Team.class);
     private final Team[] teams;
     private GameState gameState = GameState.MAIN_MAP;
     private Team currentTeam = null;
     private MainMap mainMap;
     private Battlefield battlefield = null;
+    // Rebuilt on demand after the model has been sent over the network.
+    private transient Vision vision = null;
+    // Where the heroes, towns and mines stand, built on the first query and kept up to date after that.
+    private transient SpatialIndex<Hero> heroIndex = null;
+    private transient SpatialIndex<Town> townIndex = null;
+    private transient SpatialIndex<ResourceMine> mineIndex = null;
 
     private boolean gameStarted = false;
     private int turnTaker = 0;
@@ -76,27 +101,17 @@ public class GameModel implements Serializable
 
 	    resourceLists.put(Team.values()[id], new int[Resource.values().length]);
 	    resourceLists.get(Team.values()[id])[Resource.GOLD.ordinal()] = TEAM_STARTING_GOLD;
+	    incomes.put(Team.values()[id], new int[Resource.values().length]);
 
 	    turnOrder.add(teams[id]);
+	    boardHash ^= resourceHash(teams[id]);
 	}
 
 	for (int teamID = 0; teamID < humanPlayers; teamID++) {
-	    fogsOfWar.put(Team.values()[teamID], newFogOfWar(fog));
+	    fogsOfWar.put(Team.values()[teamID], new FogOfWar(mainMap.getMapWidth(), mainMap.getMapHeight(), fog));
 	}
     }
 
-    private boolean[][] newFogOfWar(final boolean fog) {
-        int mapWidth = mainMap.getMapWidth();
-        int mapHeight = mainMap.getMapHeight();
-	boolean[][] fow = new boolean[mapWidth][mapHeight];
-	for (int x = 0; x < mapWidth; x++) {
-	    for (int y = 0; y < mapHeight; y++) {
-		fow[x][y] = fog;
-	    }
-	}
-	return fow;
-    }
-
     public void moveHero(Mover mover, Deque<Position> movePath) throws InvalidMainMapStateException {
 	if (movePath == null || mover == null) {
 	    LOGGER.log(Level.WARNING, "Severe desync issue when moving hero!");
@@ -105,30 +120,119 @@ public class GameModel implements Serializable
 	int remainingMove = mover.getRemainingMoveLength();
 
 	for (Position pos : movePath) {
+	    Position previous = mover.getPosition();
+	    Position previousPoint = mover.getInteractionPoint();
 	    mainMap.moveMapUnit(mover, pos);
-	    explorePosition(mover);
+	    boardHash ^= BoardHash.unit(mover.getInteractableID(), previous) ^ BoardHash.unit(mover.getInteractableID(), pos);
+	    if (heroIndex != null) {
+		heroIndex.moved(mover, previousPoint);
+	    }
+	    moveSight(mover, previous);
 	    remainingMove -= mainMap.passCost(pos);
 	    mover.setRemainingMoveLength(remainingMove);
 	    mainMap.notifyMainMapListeners(new MainMapEvent(mover, MapEventType.HERO_MOVED));
 	}
     }
 
+    /** Reveals everything the mover sees from where it stands to its team. */
     public void explorePosition(final Mover mover) {
-	boolean[][] fogOfWar = fogsOfWar.get(mover.getOwner());
-	int sightRange = 3;
-	int posx = mover.getPosition().getX();
-	int posy = mover.getPosition().getY();
-	int exploreLeftBound = Integer.max(posx - sightRange, 0);
-	int exploreRightBound = Integer.min(posx + sightRange, fogOfWar.length - 1);
-	int exploreTopBound = Integer.max(posy - sightRange, 0);
-	int exploreBottomBound = Integer.min(posy + sightRange, fogOfWar[0].length - 1);
-	for (int x = exploreLeftBound; x <= exploreRightBound; x++) {
-	    for (int y = exploreTopBound; y <= exploreBottomBound; y++) {
-		fogOfWar[x][y] = false;
+	FogOfWar fogOfWar = fogsOfWar.get(mover.getOwner());
+	if (fogOfWar == null) {
+	    return;
+	}
+	int[] field = vision().look(mover);
+	revealField(fogOfWar, field, field.length, mover.getPosition(), mover.getSightRadius());
+    }
+
+    /**
+     * Updates the fog of war of the mover's team after a step away from the previous
+     * position. Only the difference between the two fields of view is written: the tiles
+     * that came into view are revealed, and those that dropped out of view are hidden
+     * unless another hero of the team still sees them.
+     */
+    private void moveSight(final Mover mover, final Position previous) {
+	FogOfWar fogOfWar = fogsOfWar.get(mover.getOwner());
+	if (fogOfWar == null) {
+	    return;
+	}
+	int[] before = vision().lastField(mover, previous);
+	int[] after = vision().look(mover);
+	int[] entered = new int[after.length];
+	int[] dropped = new int[before.length];
+	int enteredCount = 0;
+	int droppedCount = 0;
+	int beforeIndex = 0;
+	int afterIndex = 0;
+	while (beforeIndex < before.length || afterIndex < after.length) {
+	    if (afterIndex == after.length || (beforeIndex < before.length && before[beforeIndex] < after[afterIndex])) {
+		dropped[droppedCount] = before[beforeIndex];
+		droppedCount++;
+		beforeIndex++;
+	    } else if (beforeIndex == before.length || after[afterIndex] < before[beforeIndex]) {
+		entered[enteredCount] = after[afterIndex];
+		enteredCount++;
+		afterIndex++;
+	    } else {
+		beforeIndex++;
+		afterIndex++;
+	    }
+	}
+	if (droppedCount > 0) {
+	    fogOfWar.hide(dropped, droppedCount);
+	    restoreSight(mover, previous);
+	}
+	revealField(fogOfWar, entered, enteredCount, mover.getPosition(), mover.getSightRadius());
+    }
+
+    /** The team of a hero that died no longer sees what the hero saw, apart from what its other heroes see. */
+    private void loseSight(final Mover mover) {
+	FogOfWar fogOfWar = fogsOfWar.get(mover.getOwner());
+	int[] field = vision().lastField(mover, mover.getPosition());
+	vision().forget(mover);
+	if (fogOfWar != null) {
+	    fogOfWar.hide(field, field.length);
+	    restoreSight(mover, mover.getPosition());
+	}
+    }
+
+    /**
+     * Makes the tiles seen by the mover's teammates visible again, after the mover stopped
+     * seeing some tiles around the position. Only heroes close enough to see those tiles
+     * are looked at.
+     */
+    private void restoreSight(final Mover mover, final Position position) {
+	FogOfWar fogOfWar = fogsOfWar.get(mover.getOwner());
+	for (Hero hero : heroOwners.ownedBy(mover.getOwner())) {
+	    if (hero == mover) {
+		continue;
+	    }
+	    Position heroPosition = hero.getPosition();
+	    int reach = mover.getSightRadius() + hero.getSightRadius();
+	    if (abs(heroPosition.getX() - position.getX()) <= reach && abs(heroPosition.getY() - position.getY()) <= reach) {
+		int[] field = vision().lastField(hero, heroPosition);
+		revealField(fogOfWar, field, field.length, heroPosition, hero.getSightRadius());
 	    }
 	}
     }
 
+    private void revealField(final FogOfWar fogOfWar, final int[] cells, final int count, final Position center,
+			     final int radius)
+    {
+	if (fogOfWar.reveal(cells, count)) {
+	    // Fogged tiles count as impassable, so revealing them can open up shorter paths.
+	    mainMap.tilesChanged(Integer.max(center.getX() - radius, 0), Integer.max(center.getY() - radius, 0),
+				 Integer.min(center.getX() + radius, mainMap.getMapWidth() - 1),
+				 Integer.min(center.getY() + radius, mainMap.getMapHeight() - 1));
+	}
+    }
+
+    private Vision vision() {
+	if (vision == null) {
+	    vision = new Vision(mainMap);
+	}
+	return vision;
+    }
+
     public GameState getGameState() {
 	return gameState;
     }
@@ -149,24 +253,19 @@ public class GameModel implements Serializable
 
 	for (Team team : teams) {
 	    Town randomTown = getRandomNeutralTown();
-	    randomTown.setOwner(team);
+	    setOwner(randomTown, team);
 	    Hero hero = HeroFactory.makeHero();
 	    giveHero(team, hero, randomTown);
 	    hero = HeroFactory.makeHero();
 	    giveHero(team, hero, randomTown);
 	}
-	for (Hero hero : heroes
-	     ) {
-	    explorePosition(hero);
-	}
     }
 
     public void addUnit(final Mover mover) {
-    	Position pos = mover.getPosition();
-    	mainMap.unitMap[pos.getX()][pos.getY()] = mover;
+    	mainMap.addMapUnit(mover);
     }
         public boolean unitOccupies(final Position pos) {
-    	return mainMap.unitMap[pos.getX()][pos.getY()] != null;
+    	return mainMap.unitOccupies(pos);
     }
 
     public void giveHero(final Team team, final Hero hero, final Town town) {
@@ -176,8 +275,15 @@ public class GameModel implements Serializable
 	    hero.setPosition(town.getInteractionPoint());
 	}
 	hero.setOwner(team);
+	register(hero);
 	addUnit(hero);
+	boardHash ^= heroHash(hero);
 	heroes.add(hero);
+	heroOwners.add(hero);
+	if (heroIndex != null) {
+	    heroIndex.add(hero);
+	}
+	explorePosition(hero);
 	mainMap.notifyMainMapListeners();
     }
 
@@ -190,70 +296,100 @@ public class GameModel implements Serializable
     public void applyCost(final Team team, final Resource resource, final int amount) throws InvalidMainMapStateException
     {
 	int[] resourceList = resourceLists.get(team);
-	resourceList[resource.ordinal()] -= amount;
-	if (resourceList[resource.ordinal()] < 0) {
-	    resourceList[resource.ordinal()] += amount;
+	if (resourceList[resource.ordinal()] < amount) {
 	    throw new InvalidMainMapStateException("Attempted to spend more resources than the player has!");
 	}
+	boardHash ^= BoardHash.resource(team, resource, resourceList[resource.ordinal()]);
+	resourceList[resource.ordinal()] -= amount;
+	boardHash ^= BoardHash.resource(team, resource, resourceList[resource.ordinal()]);
     }
 
     public void addFeature(final Town town, final int x, final int y) {
-	drawFeatureOnMap(town, x, y);
-	town.setPosition(new Position(x, y));
+	register(town);
+	boardHash ^= BoardHash.owner(town.getInteractableID(), town.getOwner());
+	town.setPosition(Position.of(x, y));
+	mainMap.addMapFeature(town, x, y);
     	towns.add(town);
+	townOwners.add(town);
+	changeIncome(town.getOwner(), town, 1);
+	if (townIndex != null) {
+	    townIndex.add(town);
+	}
     }
 
     public void addFeature(final ResourceMine mine, final int x, final int y) {
-	drawFeatureOnMap(mine, x, y);
-	mine.setPosition(new Position(x, y));
+	register(mine);
+	boardHash ^= BoardHash.owner(mine.getInteractableID(), mine.getOwner());
+	mine.setPosition(Position.of(x, y));
+	mainMap.addMapFeature(mine, x, y);
 	mines.add(mine);
+	mineOwners.add(mine);
+	changeIncome(mine.getOwner(), mine, 1);
+	if (mineIndex != null) {
+	    mineIndex.add(mine);
+	}
     }
 
-    private void drawFeatureOnMap(final Interactable interactable, final int x, final int y) {
-	for (int featureX = 0; featureX < interactable.getWidth(); featureX++) {
-	    for (int featureY = 0; featureY < interactable.getHeight(); featureY++) {
-		mainMap.getFeatureMap()[x + featureX][y + featureY] = interactable;
-	    }
+    /**
+     * Hands a feature over to a team. Ownership changes should go through here rather
+     * than Interactable.setOwner so that paths cached around the feature are dropped.
+     */
+    public void setOwner(final Interactable interactable, final Team team) {
+	if (interactable.getInteractableID() != Interactable.NO_ID) {
+	    boardHash ^= BoardHash.owner(interactable.getInteractableID(), interactable.getOwner()) ^
+			 BoardHash.owner(interactable.getInteractableID(), team);
+	}
+	Team previous = interactable.getOwner();
+	interactable.setOwner(team);
+	if (interactable instanceof Town) {
+	    townOwners.ownerChanged((Town) interactable, previous);
+	} else if (interactable instanceof ResourceMine) {
+	    mineOwners.ownerChanged((ResourceMine) interactable, previous);
+	}
+	changeIncome(previous, interactable, -1);
+	changeIncome(team, interactable, 1);
+	Position pos = interactable.getPosition();
+	if (pos != null) {
+	    mainMap.tilesChanged(pos.getX(), pos.getY(), pos.getX() + interactable.getWidth() - 1,
+				    pos.getY() + interactable.getHeight() - 1);
 	}
     }
 
     public void purgeTeam(final Team team) {
 
-	neutralize(team, towns);
-	neutralize(team, mines);
+	neutralize(townOwners.ownedBy(team));
+	neutralize(mineOwners.ownedBy(team));
 
 	// Special case because we need to actually remove
 	// the hero entities on death.
 
-	// Would cause concurrency modifications exceptions
-	// if .remove() was called immediately.
-	List<Hero> defeatedHeroes = new ArrayList<>();
-	for (final Hero hero : heroes) {
-	    if (hero.getOwner().equals(team)) {
-		mainMap.clearUnitMap(hero.getPosition());
-		defeatedHeroes.add(hero);
+	// Copied, since removing a hero from its owner's list
+	// would otherwise modify the list we are iterating.
+	List<Hero> defeatedHeroes = new ArrayList<>(heroOwners.ownedBy(team));
+	for (final Hero hero : defeatedHeroes) {
+	    mainMap.clearUnitMap(hero.getPosition());
+	    boardHash ^= heroHash(hero);
+	    vision().forget(hero);
+	    if (heroIndex != null) {
+		heroIndex.remove(hero);
 	    }
+	    heroOwners.remove(hero);
 	}
 	heroes.removeAll(defeatedHeroes);
+	for (Hero hero : defeatedHeroes) {
+	    unregister(hero);
+	}
     }
 
-    private void neutralize(final Team team, List<? extends Interactable> properties) {
-	for (Interactable interactable: properties
-	     ) {
-	    if (interactable.getOwner().equals(team)) {
-	        interactable.setOwner(Team.NEUTRAL);
-	    }
+    private void neutralize(final List<? extends Interactable> properties) {
+	// setOwner takes each property out of the list.
+	for (Interactable interactable : new ArrayList<>(properties)) {
+	    setOwner(interactable, Team.NEUTRAL);
 	}
     }
 
     public boolean playerHasHeroes() {
-	for (Hero hero: heroes
-	     ) {
-	    if (hero.getOwner().equals(turnOrder.get(turnTaker))) {
-	        return true;
-	    }
-	}
-	return false;
+	return !heroOwners.ownedBy(turnOrder.get(turnTaker)).isEmpty();
     }
 
     public Team getTurnTaker() {
@@ -297,8 +433,26 @@ public class GameModel implements Serializable
 	return Objects.equals(mainMap, gameModel.mainMap);
     }
 
-    public int gameBoardHashCode() {
-	int hash = mainMap.mainMapHashCode();
+    /**
+     * The hash the server compares with a client's to check that their boards match. It
+     * covers the terrain, where the heroes stand, who owns what and the resources of every
+     * team, and is kept up to date as they change, so reading it costs nothing.
+     */
+    public long gameBoardHash() {
+	return boardHash ^ mainMap.terrainHash();
+    }
+
+    private static long heroHash(final Hero hero) {
+	return BoardHash.unit(hero.getInteractableID(), hero.getPosition()) ^
+	       BoardHash.owner(hero.getInteractableID(), hero.getOwner());
+    }
+
+    private long resourceHash(final Team team) {
+	int[] resourceList = resourceLists.get(team);
+	long hash = 0;
+	for (Resource resource : Resource.values()) {
+	    hash ^= BoardHash.resource(team, resource, resourceList[resource.ordinal()]);
+	}
 	return hash;
     }
 
@@ -409,99 +563,164 @@ public class GameModel implements Serializable
     }
 
     public void killHero(Hero hero) {
-	mainMap.unitMap[hero.getPosition().getX()][hero.getPosition().getY()] = null;
+	mainMap.clearUnitMap(hero.getPosition());
+	boardHash ^= heroHash(hero);
 	heroes.remove(hero);
+	heroOwners.remove(hero);
+	if (heroIndex != null) {
+	    heroIndex.remove(hero);
+	}
+	loseSight(hero);
+	unregister(hero);
 	mainMap.notifyMainMapListeners(new MainMapEvent(hero, MapEventType.HERO_KILLED));
     }
 
-    public Hero getHeroByID(String interactableID) throws InvalidMainMapStateException {
-	for (Hero hero : heroes) {
-	    if (hero.getInteractableID().equals(interactableID)) {
-		return hero;
-	    }
+    /*
+     * The server and its clients apply the same changes in the same order, so they hand out
+     * the same ids without having to tell each other.
+     */
+    private void register(final Interactable interactable) {
+	interactable.setInteractableID(entities.add(interactable));
+    }
+
+    private void unregister(final Interactable interactable) {
+	entities.remove(interactable.getInteractableID());
+	interactable.setInteractableID(Interactable.NO_ID);
+    }
+
+    public Hero getHeroByID(final int interactableID) throws InvalidMainMapStateException {
+	Interactable interactable = entities.find(interactableID);
+	if (interactable instanceof Hero) {
+	    return (Hero) interactable;
 	}
 	throw new InvalidMainMapStateException("Searched for non existant hero!");
     }
 
-    public Town getTownByID(String interactableID) throws InvalidMainMapStateException {
-	for (Town town : towns) {
-	    if (town.getInteractableID().equals(interactableID)) {
-		return town;
-	    }
+    public Town getTownByID(final int interactableID) throws InvalidMainMapStateException {
+	Interactable interactable = entities.find(interactableID);
+	if (interactable instanceof Town) {
+	    return (Town) interactable;
 	}
 	throw new InvalidMainMapStateException("Searched for non existant town!");
     }
 
-    public ResourceMine getResourceMineByID(String interactableID) throws InvalidMainMapStateException {
-	for (ResourceMine mine : mines) {
-	    if (mine.getInteractableID().equals(interactableID)) {
-		return mine;
-	    }
+    public ResourceMine getResourceMineByID(final int interactableID) throws InvalidMainMapStateException {
+	Interactable interactable = entities.find(interactableID);
+	if (interactable instanceof ResourceMine) {
+	    return (ResourceMine) interactable;
 	}
-	throw new InvalidMainMapStateException("Searched for non existant hero!");
+	throw new InvalidMainMapStateException("Searched for non existant mine!");
     }
 
     public void refreshHeroMoves(Team turnTaker) {
-    	for (Hero hero : heroes) {
-	    if (hero.getOwner().equals(turnTaker)) {
-		hero.refreshMove();
-	    }
+    	for (Hero hero : heroOwners.ownedBy(turnTaker)) {
+	    hero.refreshMove();
     	}
     	mainMap.notifyMainMapListeners();
     }
 
     public boolean playerLostAllTowns(final Team team) {
-	for (Town town : towns
-	     ) {
-	    if (town.getOwner().equals(team)) {
-	        return false;
-	    }
-	}
-	return true;
+	return townOwners.ownedBy(team).isEmpty();
     }
 
     public Town getRandomNeutralTown() {
-	List<Town> neutralTowns = new ArrayList<>();
-        for (Town town : towns
-	     ) {
-	    if (town.getOwner().equals(Team.NEUTRAL)) {
-	        neutralTowns.add(town);
-	    }
-	}
+	List<Town> neutralTowns = townOwners.ownedBy(Team.NEUTRAL);
         return neutralTowns.get(ThreadLocalRandom.current().nextInt(neutralTowns.size()));
     }
 
     public List<Hero> getOwnedHeroes() {
-	List<Hero> ownedHeroes = new ArrayList<>();
-	for (Hero hero : heroes
-	     ) {
-	    if (hero.getOwner().equals(turnOrder.get(turnTaker))) {
-		ownedHeroes.add(hero);
-	    }
-	}
-	return ownedHeroes;
+	return new ArrayList<>(heroOwners.ownedBy(turnOrder.get(turnTaker)));
     }
 
     public void generateResources() {
-
-	for (Town town : towns
-	     ) {
-	    if (town.getOwner() != Team.NEUTRAL) {
-		town.addResources(resourceLists.get(town.getOwner()));
+	for (Team team : teams) {
+	    int[] resourceList = resourceLists.get(team);
+	    int[] income = incomes.get(team);
+	    boardHash ^= resourceHash(team);
+	    for (int resource = 0; resource < resourceList.length; resource++) {
+		resourceList[resource] += income[resource];
 	    }
+	    boardHash ^= resourceHash(team);
 	}
+    }
 
-	for (ResourceMine mine : mines
-	     ) {
-	    if (mine.getOwner() != Team.NEUTRAL) {
-		mine.addResources(resourceLists.get(mine.getOwner()));
-	    }
+    /**
+     * Adds what the property yields to the team's income, or takes it away for a sign of -1.
+     * Neutral properties yield nothing to anyone.
+     */
+    private void changeIncome(final Team team, final Interactable property, final int sign) {
+	int[] income = incomes.get(team);
+	if (income == null) {
+	    return;
+	}
+	int[] yield = new int[income.length];
+	if (property instanceof Town) {
+	    ((Town) property).addResources(yield);
+	} else if (property instanceof ResourceMine) {
+	    ((ResourceMine) property).addResources(yield);
 	}
+	for (int resource = 0; resource < income.length; resource++) {
+	    income[resource] += sign * yield[resource];
+	}
+    }
+
+    /** What the team's towns and mines will yield at the end of the round. Must not be written to. */
+    public int[] getIncome(final Team team) {
+	return incomes.get(team);
     }
 
 
     public LinkedList<Position> findPath(final Position moverPosition, final Position goal) {
-        return mainMap.findPath(moverPosition, goal);
+        return mainMap.findPath(moverPosition, goal, currentTeam);
+    }
+
+    /** The cheapest path from the mover to any of the given destinations, found in a single search. */
+    public LinkedList<Position> findPathToAny(final Position moverPosition, final Iterable<Position> destinations) {
+        return mainMap.findPathToAny(moverPosition, destinations, currentTeam);
+    }
+
+    /**
+     * Applies a change to the game in progress. Changes made through commands can be kept
+     * in a CommandLog and replayed on a copy of the model.
+     */
+    public void execute(final GameCommand command) throws InvalidMainMapStateException {
+	command.apply(this);
+    }
+
+    /**
+     * Freezes the main map and every team's fog of war, so that paths can be searched
+     * on other threads (see PathService) while the game goes on.
+     */
+    public MapSnapshot snapshot() {
+	return new MapSnapshot(mainMap, fogsOfWar);
+    }
+
+    /**
+     * An immutable copy of the state that is read while the game goes on, sharing whatever
+     * hasn't changed since the previous one. The previous snapshot may be null, and must
+     * have been made from this model otherwise.
+     */
+    public GameSnapshot freeze(final GameSnapshot previous) {
+	return new GameSnapshot(this, previous);
+    }
+
+    /**
+     * Speeds up searches on maps with large obstacles by using the towns and mines as
+     * landmarks for the pathfinding heuristic. Only worth calling where paths are searched.
+     * <p>
+     * The tables are taken over from the previous model, which may be null, if its map has
+     * the same terrain and features, so a model received again during a game doesn't start
+     * the computation over.
+     */
+    public void useLandmarkHeuristic(final GameModel previous) {
+	List<Position> sites = new ArrayList<>();
+	for (Town town : towns) {
+	    sites.add(town.getInteractionPoint());
+	}
+	for (ResourceMine mine : mines) {
+	    sites.add(mine.getInteractionPoint());
+	}
+	mainMap.useLandmarks(sites, previous == null ? null : previous.mainMap);
     }
 
     public boolean playerAlive(final Team team) {
@@ -516,6 +735,28 @@ public class GameModel implements Serializable
 	return heroes;
     }
 
+    /** The heroes on the map by where they stand, for queries about an area rather than every hero. */
+    public SpatialIndex<Hero> getHeroIndex() {
+	if (heroIndex == null) {
+	    heroIndex = SpatialIndex.of(heroes, mainMap.getMapWidth(), mainMap.getMapHeight());
+	}
+	return heroIndex;
+    }
+
+    public SpatialIndex<Town> getTownIndex() {
+	if (townIndex == null) {
+	    townIndex = SpatialIndex.of(towns, mainMap.getMapWidth(), mainMap.getMapHeight());
+	}
+	return townIndex;
+    }
+
+    public SpatialIndex<ResourceMine> getMineIndex() {
+	if (mineIndex == null) {
+	    mineIndex = SpatialIndex.of(mines, mainMap.getMapWidth(), mainMap.getMapHeight());
+	}
+	return mineIndex;
+    }
+
     public List<Town> getTowns() {
 	return towns;
     }
@@ -528,6 +769,15 @@ public class GameModel implements Serializable
 	return resourceLists.get(currentTeam);
     }
 
+    public int[] getClientIncome() {
+	return incomes.get(currentTeam);
+    }
+
+    /** What the client's own team has explored and currently sees. */
+    public FogOfWar getClientFogOfWar() {
+	return fogsOfWar.get(currentTeam);
+    }
+
     public Team getCurrentTeam() {
 	return currentTeam;
     }
@@ -548,23 +798,109 @@ public class GameModel implements Serializable
      * FeatureMap: Main map features include towns, mines and any other kind of interactable
      * ground feature. A feature does not necessarily prevent Units from standing on them,
      * so they exist as a separate layer.
+     * <p>
+     * Every layer holds terrain ordinals, entity ids or fog bits rather than references, in
+     * chunks that are only allocated once something is written to them (see MapChunks). The
+     * terrain of a map opened from a MapFile stays in the mapped file until it is changed.
      *
      * Information utility methods regarding adjacencies.
      */
     public static class MainMap extends MoverPathMap
     {
 
-	private TerrainType[][] terrainMap;
-	private Interactable[][] featureMap;
-	private boolean[][] fogOfWar = null;
+	private static final TerrainType[] TERRAIN_TYPES = TerrainType.values();
+
+	// The ordinal of the terrain of every tile, and the id in features of the feature covering it,
+	// in chunks (see MapChunks). Chunks of nothing but the first TerrainType and no features
+	// stay null.
+	private final byte[][] terrainChunks;
+	private final int[][] featureChunks;
+	// The terrain chunks of the MapFile the map was opened from, read wherever terrainChunks
+	// is still null. Sent along as plain chunks when the map is serialized.
+	private transient ByteBuffer[] fileTerrainChunks = null;
+	private final EntityTable<Interactable> features = new EntityTable<>();
+	// The XOR of the BoardHash keys of the terrain, kept up to date by setTerrain. Only
+	// computed when first asked for on maps opened from a MapFile.
+	private long terrainHash = 0;
+	private boolean terrainHashKnown = true;
+	// What the current team knows of the map, null on the server.
+	private FogOfWar fogOfWar = null;
 
 	private List<MainMapListener> mainMapListeners = new ArrayList<>();
 
+	// Maps with at least this many tiles are searched through a ClusterGraph instead of flat A*.
+	private static final int HIERARCHICAL_SEARCH_TILES = 128 * 128;
+
+	// Only clients search for paths, so the cache is never sent along with the map.
+	private transient PathCache pathCache = null;
+	private transient ClusterGraph clusterGraph = null;
+
+	// Move cost of every tile as seen by the pathfinder, indexed like the PathMap cells.
+	// Rebuilt from the terrain, feature, unit and fog layers whenever one of them changes.
+	private transient byte[] moveCosts = null;
+	private static final byte IMPASSABLE_COST = 0;
+	// Set on tiles that would be passable if no unit stood on them and the fog didn't hide them.
+	private static final int BLOCKED = 0x40;
+	private static final int COST_MASK = BLOCKED - 1;
+
+	// Optional ALT heuristic. The tables are computed in the background and only start being
+	// used when the next search begins, so a search never sees the heuristic change under it.
+	private transient int[] landmarkSites = null;
+	private transient volatile Landmarks landmarks = null;
+	private transient volatile ForkJoinTask<Landmarks> pendingLandmarks = null;
+
 
 	public MainMap(final int mapWidth, final int mapHeight) {
 	    super(mapWidth, mapHeight);
-	    terrainMap = new TerrainType[mapWidth][mapHeight];
-	    featureMap = new Interactable[mapWidth][mapHeight];
+	    int chunkCount = MapChunks.chunksAcross(mapWidth) * chunkRows;
+	    terrainChunks = new byte[chunkCount][];
+	    featureChunks = new int[chunkCount][];
+	}
+
+	/** A map whose terrain is read from the chunks of a MapFile until it is changed. */
+	MainMap(final int mapWidth, final int mapHeight, final ByteBuffer[] fileTerrainChunks) {
+	    this(mapWidth, mapHeight);
+	    this.fileTerrainChunks = fileTerrainChunks;
+	    this.terrainHashKnown = false;
+	}
+
+	/** A cursor over the tiles inside the bounds, which must lie within the map. */
+	public MapCursor cursor(final int minX, final int minY, final int maxX, final int maxY) {
+	    return new MapCursor(this, fogOfWar, minX, minY, maxX, maxY);
+	}
+
+	/** A cursor over the box that hides the tiles the given fog of war hasn't explored, if any. */
+	public MapCursor cursor(final FogOfWar fogOfWar, final int minX, final int minY, final int maxX,
+				final int maxY)
+	{
+	    return new MapCursor(this, fogOfWar, minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * The terrain ordinals of a chunk, or null if they are read from the map file through
+	 * fileTerrainChunk. Must not be written to.
+	 */
+	byte[] terrainChunk(final int chunk) {
+	    byte[] ordinals = terrainChunks[chunk];
+	    if (ordinals == null && fileTerrainChunks == null) {
+		return MapChunks.DEFAULT_TERRAIN;
+	    }
+	    return ordinals;
+	}
+
+	/** The terrain ordinals of a chunk as they are in the map file. */
+	ByteBuffer fileTerrainChunk(final int chunk) {
+	    return fileTerrainChunks[chunk];
+	}
+
+	/** The feature ids of a chunk. Must not be written to. */
+	int[] featureChunk(final int chunk) {
+	    int[] featureIds = featureChunks[chunk];
+	    return featureIds != null ? featureIds : MapChunks.NO_ENTITIES;
+	}
+
+	Interactable featureById(final int featureId) {
+	    return features.get(featureId);
 	}
 
 
@@ -588,12 +924,224 @@ public class GameModel implements Serializable
 	    return validPositions;
 	}
 
-	public void setFogOfWar(final boolean[][] fogOfWar) {
-	    this.fogOfWar = fogOfWar;
+	public void setFogOfWar(final FogOfWar fogOfWar) {
+	    if (this.fogOfWar != fogOfWar) {
+		this.fogOfWar = fogOfWar;
+		// Any tile may have been hidden or revealed.
+		tilesChanged(0, 0, mapWidth - 1, mapHeight - 1);
+		getPathCache().invalidateAll();
+	    }
+	}
+
+	/**
+	 * Turns on the landmark heuristic, with landmarks chosen among the given tiles. The
+	 * distance tables are computed on the common fork-join pool, and recomputed there
+	 * whenever the terrain or features change. Until they are ready, searches use the
+	 * plain heuristic.
+	 * <p>
+	 * If the previous map, which may be null, uses the same sites and has the same terrain
+	 * and features, its tables (or the computation still making them) are taken over
+	 * instead. The previous map must not be changed any more.
+	 */
+	public void useLandmarks(final Iterable<Position> sites, final MainMap previous) {
+	    List<Integer> cells = new ArrayList<>();
+	    for (Position site : sites) {
+		if (isWithinMap(site)) {
+		    cells.add(cellIndex(site));
+		}
+	    }
+	    landmarkSites = new int[cells.size()];
+	    for (int index = 0; index < landmarkSites.length; index++) {
+		landmarkSites[index] = cells.get(index);
+	    }
+	    if (previous != null && previous.landmarkSites != null && sameStaticCosts(previous) &&
+		Arrays.equals(landmarkSites, previous.landmarkSites)) {
+		landmarks = previous.landmarks;
+		pendingLandmarks = previous.pendingLandmarks;
+		// Same as when a computed table is installed, the heuristic changes for every tile.
+		super.tilesChanged(0, 0, mapWidth - 1, mapHeight - 1);
+		if (pathCache != null) {
+		    pathCache.invalidateAll();
+		}
+		return;
+	    }
+	    refreshLandmarks();
+	}
+
+	/** Whether every tile costs the same on both maps once units and fog are left out. */
+	private boolean sameStaticCosts(final MainMap other) {
+	    if (mapWidth != other.mapWidth || mapHeight != other.mapHeight || terrainHash() != other.terrainHash()) {
+		return false;
+	    }
+	    byte[] costs = moveCosts();
+	    byte[] otherCosts = other.moveCosts();
+	    for (int cell = 0; cell < costs.length; cell++) {
+		if (((costs[cell] ^ otherCosts[cell]) & COST_MASK) != 0) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+
+	private void refreshLandmarks() {
+	    ForkJoinTask<Landmarks> previous = pendingLandmarks;
+	    if (previous != null) {
+		previous.cancel(false);
+	    }
+	    // The old tables may overestimate on the changed map, so they can't be kept meanwhile.
+	    // Cached paths only survive changes outside their search area while the estimates
+	    // they were found with stay valid, so they go too.
+	    landmarks = null;
+	    super.tilesChanged(0, 0, mapWidth - 1, mapHeight - 1);
+	    if (pathCache != null) {
+		pathCache.invalidateAll();
+	    }
+	    pendingLandmarks = Landmarks.compute(ForkJoinPool.commonPool(), staticMoveCosts(), mapWidth, mapHeight,
+						 landmarkSites);
+	}
+
+	/** A copy of the move cost of every tile with units and fog left out, 0 for impassable tiles. */
+	byte[] staticMoveCosts() {
+	    byte[] staticCosts = moveCosts().clone();
+	    for (int cell = 0; cell < staticCosts.length; cell++) {
+		staticCosts[cell] &= COST_MASK;
+	    }
+	    return staticCosts;
+	}
+
+	/** The landmark tables currently in use, or null. */
+	Landmarks getLandmarks() {
+	    return landmarks;
+	}
+
+	/** Starts using the landmark tables if they have been computed since the last search. */
+	@Override void prepareSearch() {
+	    ForkJoinTask<Landmarks> pending = pendingLandmarks;
+	    if (pending == null || !pending.isDone()) {
+		return;
+	    }
+	    pendingLandmarks = null;
+	    if (pending.isCompletedNormally()) {
+		landmarks = pending.join();
+		// Incremental searches have to start over when the heuristic changes.
+		super.tilesChanged(0, 0, mapWidth - 1, mapHeight - 1);
+	    }
+	}
+
+	/** The number of landmarks the heuristic currently uses, 0 if the tables aren't ready. */
+	public int getLandmarkCount() {
+	    Landmarks current = landmarks;
+	    return current == null ? 0 : current.getLandmarkCount();
+	}
+
+	public PathCache getPathCache() {
+	    if (pathCache == null) {
+		pathCache = new PathCache(PathCache.DEFAULT_CAPACITY);
+	    }
+	    return pathCache;
+	}
+
+	/**
+	 * Same as findPath, but answered from the path cache if the same search has already
+	 * been made by the given team and nothing it looked at has changed since.
+	 */
+	public LinkedList<Position> findPath(final Position goal, final Position start, final Team team) {
+	    PathCache cache = getPathCache();
+	    LinkedList<Position> path = cache.get(goal, start, team);
+	    if (path != null) {
+		return path;
+	    }
+	    long searchVersion = cache.getVersion();
+	    if (searchesHierarchically()) {
+		path = getClusterGraph().findPath(goal, start);
+		// The abstract search may have looked anywhere on the map, so any change drops the result.
+		cache.put(goal, start, team, path, searchVersion, 0, 0, mapWidth - 1, mapHeight - 1);
+		return path;
+	    }
+	    path = findPath(goal, start);
+	    if (isWithinMap(start) && isWithinMap(goal) && isPassable(start)) {
+		// Otherwise findPath gave up without searching and the workspace holds an older search.
+		PathWorkspace search = lastSearch();
+		cache.put(goal, start, team, path, searchVersion, search.getClosedMinX(), search.getClosedMinY(),
+			  search.getClosedMaxX(), search.getClosedMaxY());
+	    }
+	    return path;
+	}
+
+	/**
+	 * Same as findPathToAny, but searched through the cluster graph on large maps and
+	 * answered from the path cache if a search for the same set of destinations has
+	 * already been made by the given team and nothing it looked at has changed since.
+	 */
+	public LinkedList<Position> findPathToAny(final Position goal, final Iterable<Position> starts, final Team team) {
+	    PathCache cache = getPathCache();
+	    LinkedList<Position> path = cache.get(goal, starts, team);
+	    if (path != null) {
+		return path;
+	    }
+	    long searchVersion = cache.getVersion();
+	    if (searchesHierarchically()) {
+		path = getClusterGraph().findPathToAny(goal, starts);
+		cache.put(goal, starts, team, path, searchVersion, 0, 0, mapWidth - 1, mapHeight - 1);
+		return path;
+	    }
+	    path = findPathToAny(goal, starts);
+	    if (isWithinMap(goal)) {
+		PathWorkspace search = lastSearch();
+		int minX = search.getClosedMinX();
+		int minY = search.getClosedMinY();
+		int maxX = search.getClosedMaxX();
+		int maxY = search.getClosedMaxY();
+		// A destination the search had to skip may open up and be cheaper than the one it found.
+		for (Position start : starts) {
+		    minX = Integer.min(minX, start.getX());
+		    minY = Integer.min(minY, start.getY());
+		    maxX = Integer.max(maxX, start.getX());
+		    maxY = Integer.max(maxY, start.getY());
+		}
+		cache.put(goal, starts, team, path, searchVersion, minX, minY, maxX, maxY);
+	    }
+	    return path;
+	}
+
+	private boolean searchesHierarchically() {
+	    return mapWidth * mapHeight >= HIERARCHICAL_SEARCH_TILES;
+	}
+
+	private ClusterGraph getClusterGraph() {
+	    if (clusterGraph == null) {
+		clusterGraph = new ClusterGraph(this);
+	    }
+	    return clusterGraph;
+	}
+
+	/** Updates the move costs of the changed tiles and drops cached paths that depend on them. */
+	@Override void tilesChanged(final int minX, final int minY, final int maxX, final int maxY) {
+	    super.tilesChanged(minX, minY, maxX, maxY);
+	    boolean costsChanged = false;
+	    if (moveCosts != null) {
+		MapCursor tiles = cursor(Integer.max(minX, 0), Integer.max(minY, 0), Integer.min(maxX, mapWidth - 1),
+					 Integer.min(maxY, mapHeight - 1));
+		while (tiles.next()) {
+		    int cell = tiles.getX() * mapHeight + tiles.getY();
+		    byte moveCost = computeMoveCost(tiles);
+		    costsChanged |= ((moveCosts[cell] ^ moveCost) & COST_MASK) != 0;
+		    moveCosts[cell] = moveCost;
+		}
+	    }
+	    if (costsChanged && landmarkSites != null) {
+		refreshLandmarks();
+	    }
+	    if (pathCache != null) {
+		pathCache.invalidate(minX, minY, maxX, maxY);
+	    }
+	    if (clusterGraph != null) {
+		clusterGraph.markDirty(minX, minY, maxX, maxY);
+	    }
 	}
 
 	public boolean playerSeesMapTile(final int x, final int y) {
-	    return !fogOfWar[x][y];
+	    return fogOfWar.isExplored(x, y);
 	}
 
 	public boolean playerSeesMapTile(final Position pos) {
@@ -601,43 +1149,71 @@ public class GameModel implements Serializable
 	}
 
 	public boolean isPassable(final Position pos) {
-	    int x = pos.getX();
-	    int y = pos.getY();
-	    if (x > mapWidth - 1 || x < 0 || pos.getY() > mapHeight - 1 || y < 0) {
+	    if (!isWithinMap(pos)) {
 		return false;
 	    }
+	    return isPassableCell(pos.getX() * mapHeight + pos.getY());
+	}
 
-	    if (!playerSeesMapTile(pos)) {
-		return false;
-	    }
+	@Override boolean isPassableCell(final int cell) {
+	    int moveCost = moveCosts()[cell];
+	    return moveCost != IMPASSABLE_COST && moveCost < BLOCKED;
+	}
 
-	    Interactable interactable = getTopLevelInteractable(x, y);
+	@Override boolean isUniformCell(final int cell) {
+	    return moveCosts()[cell] == 1;
+	}
 
-	    if (interactable != null) {
-		int relativeX = x - interactable.getPosition().getX();
-		int relativeY = y - interactable.getPosition().getY();
-		return interactable.getPassabilityMap()[relativeX][relativeY] != Passability.IMPASSABLE;
-	    } else {
-		return terrainMap[x][y].getPassability() != Passability.IMPASSABLE;
+	/** The cost of stepping onto the tile. Units and fog are ignored. */
+	public int passCost(Position pos) {
+	    return passCostCell(pos.getX() * mapHeight + pos.getY());
+	}
+
+	@Override int passCostCell(final int cell) {
+	    int moveCost = moveCosts()[cell] & COST_MASK;
+	    return moveCost == IMPASSABLE_COST ? Passability.IMPASSABLE.getMoveCost() : moveCost;
+	}
+
+	private byte[] moveCosts() {
+	    if (moveCosts == null) {
+		moveCosts = new byte[mapWidth * mapHeight];
+		MapCursor tiles = cursor(0, 0, mapWidth - 1, mapHeight - 1);
+		while (tiles.next()) {
+		    moveCosts[tiles.getX() * mapHeight + tiles.getY()] = computeMoveCost(tiles);
+		}
 	    }
+	    return moveCosts;
 	}
 
-	public int passCost(Position pos) {
-	    Interactable feature = featureMap[pos.getX()][pos.getY()];
+	/*
+	 * A feature decides the passability of the tiles it covers, otherwise the terrain does.
+	 * Units are always impassable, but they don't change what stepping onto the tile costs
+	 * once they have left, so they only set the BLOCKED flag. The same goes for fog.
+	 */
+	private static byte computeMoveCost(final MapCursor tile) {
+	    Passability passability;
+	    Interactable feature = tile.getFeature();
 	    if (feature != null) {
-		int relativeX = pos.getX() - feature.getPosition().getX();
-		int relativeY = pos.getY() - feature.getPosition().getY();
-		return feature.getPassabilityMap()[relativeX][relativeY].getMoveCost();
+		int relativeX = tile.getX() - feature.getPosition().getX();
+		int relativeY = tile.getY() - feature.getPosition().getY();
+		passability = feature.getPassabilityMap()[relativeX][relativeY];
+	    } else {
+		passability = tile.getTerrain().getPassability();
 	    }
-	    return terrainMap[pos.getX()][pos.getY()].getPassability().getMoveCost();
+	    int moveCost = passability == Passability.IMPASSABLE ? IMPASSABLE_COST
+								 : Integer.min(passability.getMoveCost(), COST_MASK);
+	    if (tile.hasUnit() || tile.isHidden()) {
+		moveCost |= BLOCKED;
+	    }
+	    return (byte) moveCost;
 	}
 
 	public Interactable getTopLevelInteractable(final int x, final int y) {
-	    Interactable topLevelInteractable = unitMap[x][y];
+	    Interactable topLevelInteractable = getUnit(x, y);
 	    if (topLevelInteractable != null) {
 		return topLevelInteractable;
 	    }
-	    topLevelInteractable = featureMap[x][y];
+	    topLevelInteractable = getFeature(x, y);
 	    return topLevelInteractable; // null result means none!
 	}
 
@@ -648,34 +1224,97 @@ public class GameModel implements Serializable
 	    return getTopLevelInteractable(pos.getX(), pos.getY());
 	}
 
-	public TerrainType[][] getTerrainMap() {
-	    return terrainMap;
+	public TerrainType getTerrain(final int x, final int y) {
+	    int chunk = chunkIndex(x, y);
+	    byte[] ordinals = terrainChunk(chunk);
+	    if (ordinals == null) {
+		return TERRAIN_TYPES[fileTerrainChunks[chunk].get(MapChunks.tileInChunk(x, y))];
+	    }
+	    return TERRAIN_TYPES[ordinals[MapChunks.tileInChunk(x, y)]];
 	}
 
-	public Interactable[][] getFeatureMap() {
-	    return featureMap;
+	static TerrainType terrainType(final int ordinal) {
+	    return TERRAIN_TYPES[ordinal];
 	}
 
-	/*
-	 * This hashcode is used by the GameModel hashcode method to ensure
-	 * the MainMap attributes are part of the serverside validity check.
-	 * */
-	public int mainMapHashCode() {
-	    int hash = 0;
-	    final int goodPrime = 31;
-	    for (int x = 0; x < mapWidth; x++) {
-		for (int y = 0; y < mapHeight; y++) {
-		    hash += terrainMap[x][y].ordinal();
-		    if (unitMap[x][y] != null) {
-			int heroID = Integer.parseInt(unitMap[x][y].getInteractableID());
-			hash += x * heroID * goodPrime;
-			hash += y * heroID * 3;
-		    } else {
-			hash -= 5 * x * y;
+	public boolean blocksSight(final int x, final int y) {
+	    return getTerrain(x, y).blocksSight();
+	}
+
+	public void setTerrain(final int x, final int y, final TerrainType terrain) {
+	    if (terrainHashKnown) {
+		terrainHash ^= BoardHash.terrain(x, y, getTerrain(x, y).ordinal()) ^ BoardHash.terrain(x, y, terrain.ordinal());
+	    }
+	    int chunk = chunkIndex(x, y);
+	    if (terrainChunks[chunk] == null) {
+		if (fileTerrainChunks != null) {
+		    // The file is shared and read only, so the chunk is copied out of it on its first change.
+		    terrainChunks[chunk] = new byte[MapChunks.TILES];
+		    fileTerrainChunks[chunk].duplicate().get(terrainChunks[chunk]);
+		} else if (terrain.ordinal() == 0) {
+		    return;
+		} else {
+		    terrainChunks[chunk] = new byte[MapChunks.TILES];
+		}
+	    }
+	    terrainChunks[chunk][MapChunks.tileInChunk(x, y)] = (byte) terrain.ordinal();
+	    tilesChanged(x, y, x, y);
+	}
+
+	/** The feature covering the tile, or null. */
+	public Interactable getFeature(final int x, final int y) {
+	    return features.get(featureChunk(chunkIndex(x, y))[MapChunks.tileInChunk(x, y)]);
+	}
+
+	/** Covers the tiles from (x, y) to the width and height of the feature with it. */
+	public void addMapFeature(final Interactable feature, final int x, final int y) {
+	    int featureId = features.add(feature);
+	    for (int featureX = 0; featureX < feature.getWidth(); featureX++) {
+		for (int featureY = 0; featureY < feature.getHeight(); featureY++) {
+		    int chunk = chunkIndex(x + featureX, y + featureY);
+		    if (featureChunks[chunk] == null) {
+			featureChunks[chunk] = MapChunks.newEntityChunk();
 		    }
+		    featureChunks[chunk][MapChunks.tileInChunk(x + featureX, y + featureY)] = featureId;
+		}
+	    }
+	    tilesChanged(x, y, x + feature.getWidth() - 1, y + feature.getHeight() - 1);
+	}
+
+	private void writeObject(final ObjectOutputStream out) throws IOException {
+	    out.defaultWriteObject();
+	    // The receiver may not have the map file, so the chunks still in it are written out too.
+	    byte[] ordinals = new byte[MapChunks.TILES];
+	    for (int chunk = 0; fileTerrainChunks != null && chunk < fileTerrainChunks.length; chunk++) {
+		if (terrainChunks[chunk] == null) {
+		    fileTerrainChunks[chunk].duplicate().get(ordinals);
+		    if (!Arrays.equals(ordinals, MapChunks.DEFAULT_TERRAIN)) {
+			out.writeInt(chunk);
+			out.write(ordinals);
+		    }
+		}
+	    }
+	    out.writeInt(-1);
+	}
+
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+	    in.defaultReadObject();
+	    for (int chunk = in.readInt(); chunk >= 0; chunk = in.readInt()) {
+		terrainChunks[chunk] = new byte[MapChunks.TILES];
+		in.readFully(terrainChunks[chunk]);
+	    }
+	}
+
+	/** The part of the GameModel board hash that covers the terrain. */
+	long terrainHash() {
+	    if (!terrainHashKnown) {
+		MapCursor tiles = cursor(0, 0, mapWidth - 1, mapHeight - 1);
+		while (tiles.next()) {
+		    terrainHash ^= BoardHash.terrain(tiles.getX(), tiles.getY(), tiles.getTerrainOrdinal());
 		}
+		terrainHashKnown = true;
 	    }
-	    return hash;
+	    return terrainHash;
 	}
 
 	public void addMainMapListener(MainMapListener mmL) {
@@ -721,8 +1360,15 @@ public class GameModel implements Serializable
 	    return admissibleGuess;
 	}
 
-	public void clearUnitMap(final Position pos) {
-		unitMap[pos.getX()][pos.getY()] = null;
+	@Override int heuristicCostEstimate(final int cell, final int goalCell) {
+	    int deltaX = abs(goalCell / mapHeight - cell / mapHeight);
+	    int deltaY = abs(goalCell % mapHeight - cell % mapHeight);
+	    int estimate = Integer.max(deltaX, deltaY);
+	    Landmarks current = landmarks;
+	    if (current != null) {
+		estimate = Integer.max(estimate, current.lowerBound(cell, goalCell, passCostCell(cell), passCostCell(goalCell)));
+	    }
+	    return estimate;
 	}
     }
 }
@@ -5,6 +5,7 @@ import entity.TownFactory;
 import entity.TownType;
 import gamemodel.GameModel.MainMap;
 
+import java.nio.file.Path;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -39,18 +40,18 @@ public final class GameModelFactory
 		mainMap = new MainMap(mapWidth, mapHeight);
 		gameModel = new GameModel(mainMap, players, fogOfWar);
 
-		randomizeTerrain(mainMap.getTerrainMap());
+		randomizeTerrain(mainMap);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 1, 9);
-		makeSitePassable(mainMap.getTerrainMap(), 1, 9);
+		makeSitePassable(mainMap, 1, 9);
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 17, 9);
-		makeSitePassable(mainMap.getTerrainMap(), 17, 9);
+		makeSitePassable(mainMap, 17, 9);
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 9, 9);
-		makeSitePassable(mainMap.getTerrainMap(), 9, 9);
+		makeSitePassable(mainMap, 9, 9);
 		gameModel.addFeature(new ResourceMine(Resource.GOLD), 5, 5);
-		makeSitePassable(mainMap.getTerrainMap(), 5, 5);
+		makeSitePassable(mainMap, 5, 5);
 		gameModel.addFeature(new ResourceMine(Resource.GOLD), 13, 13);
-		makeSitePassable(mainMap.getTerrainMap(), 13, 13);
+		makeSitePassable(mainMap, 13, 13);
 		break;
 	    case 4:
 		/*
@@ -69,56 +70,56 @@ public final class GameModelFactory
 		mainMap = new MainMap(mapWidth, mapHeight);
 		gameModel = new GameModel(mainMap, players, fogOfWar);
 
-		randomizeTerrain(mainMap.getTerrainMap());
+		randomizeTerrain(mainMap);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 10, 15);
-		makeSitePassable(mainMap.getTerrainMap(), 10, 15);
+		makeSitePassable(mainMap, 10, 15);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 20, 10);
-		makeSitePassable(mainMap.getTerrainMap(), 20, 10);
+		makeSitePassable(mainMap, 20, 10);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 30, 5);
-		makeSitePassable(mainMap.getTerrainMap(), 30, 5);
+		makeSitePassable(mainMap, 30, 5);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 40, 10);
-		makeSitePassable(mainMap.getTerrainMap(), 40, 10);
+		makeSitePassable(mainMap, 40, 10);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 50, 15);
-		makeSitePassable(mainMap.getTerrainMap(), 50, 15);
+		makeSitePassable(mainMap, 50, 15);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 25, 25);
-		makeSitePassable(mainMap.getTerrainMap(), 25, 25);
+		makeSitePassable(mainMap, 25, 25);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 35, 35);
-		makeSitePassable(mainMap.getTerrainMap(), 35, 35);
+		makeSitePassable(mainMap, 35, 35);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 10, 45);
-		makeSitePassable(mainMap.getTerrainMap(), 10, 45);
+		makeSitePassable(mainMap, 10, 45);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 20, 50);
-		makeSitePassable(mainMap.getTerrainMap(), 20, 50);
+		makeSitePassable(mainMap, 20, 50);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 30, 55);
-		makeSitePassable(mainMap.getTerrainMap(), 30, 55);
+		makeSitePassable(mainMap, 30, 55);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 40, 50);
-		makeSitePassable(mainMap.getTerrainMap(), 40, 50);
+		makeSitePassable(mainMap, 40, 50);
 
 		gameModel.addFeature(TownFactory.makeTown(TownType.CASTLE), 50, 45);
-		makeSitePassable(mainMap.getTerrainMap(), 50, 45);
+		makeSitePassable(mainMap, 50, 45);
 
 		gameModel.addFeature(new ResourceMine(Resource.GOLD), 20, 20);
-		makeSitePassable(mainMap.getTerrainMap(), 20, 20);
+		makeSitePassable(mainMap, 20, 20);
 		gameModel.addFeature(new ResourceMine(Resource.GOLD), 20, 40);
-		makeSitePassable(mainMap.getTerrainMap(), 20, 40);
+		makeSitePassable(mainMap, 20, 40);
 		gameModel.addFeature(new ResourceMine(Resource.GOLD), 56, 30);
-		makeSitePassable(mainMap.getTerrainMap(), 56, 30);
+		makeSitePassable(mainMap, 56, 30);
 		gameModel.addFeature(new ResourceMine(Resource.GOLD), 1, 30);
-		makeSitePassable(mainMap.getTerrainMap(), 1, 30);
+		makeSitePassable(mainMap, 1, 30);
 		gameModel.addFeature(new ResourceMine(Resource.GOLD), 40, 20);
-		makeSitePassable(mainMap.getTerrainMap(), 40, 20);
+		makeSitePassable(mainMap, 40, 20);
 		gameModel.addFeature(new ResourceMine(Resource.GOLD), 40, 40);
-		makeSitePassable(mainMap.getTerrainMap(), 40, 40);
+		makeSitePassable(mainMap, 40, 40);
 		break;
 	    default:
 		throw new UnsupportedPlayerAmountException("Invalid amount of players!");
@@ -128,24 +129,41 @@ public final class GameModelFactory
 	return gameModel;
     }
 
-    public static void randomizeTerrain(final TerrainType[][] terrainMap) {
-	int width = terrainMap.length;
-	int height = terrainMap[0].length;
+    /**
+     * Opens a game on the map in the given MapFile instead of a generated one. The terrain
+     * isn't read in, the map pages it in from the file as it's looked at.
+     */
+    public static GameModel openGameModel(final Path mapFile, final int players, final boolean fogOfWar)
+	    throws UnsupportedPlayerAmountException, UnknownTownTypeException, MapFileException
+    {
+	if (players < 2 || players > 8) {
+	    throw new UnsupportedPlayerAmountException("Invalid amount of players!");
+	}
+	MapFile file = MapFile.open(mapFile);
+	GameModel gameModel = new GameModel(file.createMainMap(), players, fogOfWar);
+	file.addFeatures(gameModel);
+	gameModel.prepareMap();
+	return gameModel;
+    }
+
+    public static void randomizeTerrain(final MainMap mainMap) {
+	int width = mainMap.getMapWidth();
+	int height = mainMap.getMapHeight();
 	for (int x = 0; x < width; x++) {
 	    for (int y = 0; y < height; y++) {
 		if (x == 0 || y == 0 || x == width - 1 || y == height - 1) {
-		    terrainMap[x][y] = TerrainType.SEA;
+		    mainMap.setTerrain(x, y, TerrainType.SEA);
 		} else {
-		    terrainMap[x][y] = TerrainType.values()[ThreadLocalRandom.current().nextInt(3)];
+		    mainMap.setTerrain(x, y, TerrainType.values()[ThreadLocalRandom.current().nextInt(3)]);
 		}
 	    }
 	}
     }
 
-    public static void makeSitePassable(final TerrainType[][] terrainMap, final int x, final int y) {
+    public static void makeSitePassable(final MainMap mainMap, final int x, final int y) {
 	for (int tx = 0; tx < 3; tx++) {
-	    if (terrainMap[tx + x][2 + y].equals(TerrainType.SEA)) {
-		terrainMap[tx + x][2 + y] = TerrainType.GRASS;
+	    if (mainMap.getTerrain(tx + x, 2 + y).equals(TerrainType.SEA)) {
+		mainMap.setTerrain(tx + x, 2 + y, TerrainType.GRASS);
 	    }
 	}
     }
@@ -0,0 +1,190 @@
+package gamemodel;
+
+import entity.Interactable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The state of a game as it was after some message had been applied, for the threads that
+ * only read it: whose turn it is, what the client's team has and has explored, where the
+ * heroes stand, who owns what, and the board hash. Nothing in a snapshot changes after it
+ * has been made, so the view can paint one and the hash check can read one while the
+ * network thread goes on changing the GameModel, without either taking a lock.
+ * <p>
+ * A snapshot is made from the one before it and shares whatever didn't change with it.
+ * The entity lists and the pieces in them are taken over as they are unless an entity
+ * moved or changed hands, and the fog of war is copied a chunk pointer at a time, the
+ * model copying a chunk only once it writes to it again (see FogOfWar.copy). The terrain
+ * and the features stand still once a game has started, so they are read from the MainMap.
+ */
+public final class GameSnapshot
+{
+    private final long boardHash;
+    private final GameState gameState;
+    private final boolean gameStarted;
+    private final boolean onTurn;
+    private final Team turnTaker;
+    private final Team currentTeam;
+    private final boolean affordsHero;
+    private final int[] resources;
+    private final int[] income;
+    private final FogOfWar fogOfWar;
+    private final List<Piece> heroes;
+    private final List<Piece> towns;
+    private final List<Piece> mines;
+
+    GameSnapshot(final GameModel gameModel, final GameSnapshot previous) {
+	this.boardHash = gameModel.gameBoardHash();
+	this.gameState = gameModel.getGameState();
+	this.gameStarted = gameModel.gameStarted();
+	this.onTurn = gameModel.onTurn();
+	this.turnTaker = gameModel.getTurnTaker();
+	this.currentTeam = gameModel.getCurrentTeam();
+	this.affordsHero = gameModel.affordsHero();
+	this.resources = unchangedOr(gameModel.getClientResourceList(), previous == null ? null : previous.resources);
+	this.income = unchangedOr(gameModel.getClientIncome(), previous == null ? null : previous.income);
+	FogOfWar clientFog = gameModel.getClientFogOfWar();
+	this.fogOfWar = clientFog == null ? null : clientFog.copy();
+	this.heroes = pieces(gameModel.getHeroes(), previous == null ? null : previous.heroes);
+	this.towns = pieces(gameModel.getTowns(), previous == null ? null : previous.towns);
+	this.mines = pieces(gameModel.getMines(), previous == null ? null : previous.mines);
+    }
+
+    private static int[] unchangedOr(final int[] current, final int[] previous) {
+	if (current == null) {
+	    return null;
+	}
+	return Arrays.equals(current, previous) ? previous : current.clone();
+    }
+
+    /*
+     * The lists keep the order of the model's, so a piece is compared with the one at the
+     * same index. Once a hero is killed the pieces after it are made anew, which is cheap.
+     */
+    private static List<Piece> pieces(final List<? extends Interactable> entities, final List<Piece> previous) {
+	boolean unchanged = previous != null && previous.size() == entities.size();
+	List<Piece> pieces = new ArrayList<>(entities.size());
+	for (int index = 0; index < entities.size(); index++) {
+	    Interactable entity = entities.get(index);
+	    Piece piece = previous != null && index < previous.size() ? previous.get(index) : null;
+	    if (piece == null || !piece.shows(entity)) {
+		piece = new Piece(entity);
+		unchanged = false;
+	    }
+	    pieces.add(piece);
+	}
+	return unchanged ? previous : Collections.unmodifiableList(pieces);
+    }
+
+    /** The board hash the server checks messages against. */
+    public long getBoardHash() {
+	return boardHash;
+    }
+
+    public GameState getGameState() {
+	return gameState;
+    }
+
+    public boolean gameStarted() {
+	return gameStarted;
+    }
+
+    public boolean onTurn() {
+	return onTurn;
+    }
+
+    public Team getTurnTaker() {
+	return turnTaker;
+    }
+
+    /** The client's own team, or null on the server. */
+    public Team getCurrentTeam() {
+	return currentTeam;
+    }
+
+    /** Whether the team taking its turn has the gold for another hero. */
+    public boolean affordsHero() {
+	return affordsHero;
+    }
+
+    /** The resources of the client's team, or null on the server. Must not be written to. */
+    public int[] getClientResourceList() {
+	return resources;
+    }
+
+    /** What the client's team earns every round, or null on the server. Must not be written to. */
+    public int[] getClientIncome() {
+	return income;
+    }
+
+    /** What the client's team has explored and sees, or null on the server. Must not be changed. */
+    public FogOfWar getFogOfWar() {
+	return fogOfWar;
+    }
+
+    /** Whether the client's team has explored the tile. Everything is seen on the server. */
+    public boolean playerSees(final Position pos) {
+	return fogOfWar == null || fogOfWar.isExplored(pos.getX(), pos.getY());
+    }
+
+    public List<Piece> getHeroes() {
+	return heroes;
+    }
+
+    public List<Piece> getTowns() {
+	return towns;
+    }
+
+    public List<Piece> getMines() {
+	return mines;
+    }
+
+    /**
+     * A hero, town or mine as it stood when the snapshot was made. The entity itself is only
+     * there to be drawn and told apart, what it looked like at the time is read from the piece.
+     */
+    public static final class Piece
+    {
+	private final Interactable interactable;
+	private final int interactableID;
+	private final Team owner;
+	private final Position position;
+	private final Position interactionPoint;
+
+	private Piece(final Interactable interactable) {
+	    this.interactable = interactable;
+	    this.interactableID = interactable.getInteractableID();
+	    this.owner = interactable.getOwner();
+	    this.position = interactable.getPosition();
+	    this.interactionPoint = interactable.getInteractionPoint();
+	}
+
+	private boolean shows(final Interactable entity) {
+	    return interactable == entity && interactableID == entity.getInteractableID() &&
+		   owner == entity.getOwner() && position.equals(entity.getPosition());
+	}
+
+	public Interactable getInteractable() {
+	    return interactable;
+	}
+
+	public int getInteractableID() {
+	    return interactableID;
+	}
+
+	public Team getOwner() {
+	    return owner;
+	}
+
+	public Position getPosition() {
+	    return position;
+	}
+
+	public Position getInteractionPoint() {
+	    return interactionPoint;
+	}
+    }
+}
@@ -0,0 +1,149 @@
+package gamemodel;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of packed map cell indices, used as the open set by the PathMap.
+ * <p>
+ * Every cell remembers where in the heap it currently sits, which lets the pathfinder
+ * check membership and lower the priority of an already queued cell (decrease-key)
+ * without searching the heap for it.
+ * <p>
+ * Priorities are longs so that the PathReplanner can pack its two part keys into one.
+ */
+final class IndexedMinHeap
+{
+    private static final int ABSENT = -1;
+
+    private final int[] heap;
+    private final int[] heapIndex;
+    private final long[] priorities;
+    private int size = 0;
+
+    IndexedMinHeap(final int capacity) {
+	this.heap = new int[capacity];
+	this.heapIndex = new int[capacity];
+	this.priorities = new long[capacity];
+	Arrays.fill(heapIndex, ABSENT);
+    }
+
+    boolean isEmpty() {
+	return size == 0;
+    }
+
+    /** Forgets every queued cell. Only the cells still in the heap need to be touched. */
+    void clear() {
+	for (int index = 0; index < size; index++) {
+	    heapIndex[heap[index]] = ABSENT;
+	}
+	size = 0;
+    }
+
+    boolean contains(final int cell) {
+	return heapIndex[cell] != ABSENT;
+    }
+
+    /**
+     * Queues the cell with the given priority. If the cell is already queued with a
+     * higher priority it is moved up the heap instead.
+     */
+    void insertOrDecrease(final int cell, final long priority) {
+	if (contains(cell)) {
+	    if (priority < priorities[cell]) {
+		priorities[cell] = priority;
+		siftUp(heapIndex[cell]);
+	    }
+	    return;
+	}
+	priorities[cell] = priority;
+	heap[size] = cell;
+	heapIndex[cell] = size;
+	size++;
+	siftUp(size - 1);
+    }
+
+    /** Queues the cell, or moves it to the given priority in either direction if it is already queued. */
+    void update(final int cell, final long priority) {
+	if (!contains(cell)) {
+	    insertOrDecrease(cell, priority);
+	    return;
+	}
+	long previousPriority = priorities[cell];
+	priorities[cell] = priority;
+	if (priority < previousPriority) {
+	    siftUp(heapIndex[cell]);
+	} else {
+	    siftDown(heapIndex[cell]);
+	}
+    }
+
+    /** Removes and returns the cell with the lowest priority. */
+    int poll() {
+	int cheapestCell = heap[0];
+	remove(cheapestCell);
+	return cheapestCell;
+    }
+
+    /** Removes the cell from the heap if it is queued. */
+    void remove(final int cell) {
+	if (!contains(cell)) {
+	    return;
+	}
+	int index = heapIndex[cell];
+	size--;
+	heapIndex[cell] = ABSENT;
+	if (index < size) {
+	    int last = heap[size];
+	    moveTo(last, index);
+	    siftDown(index);
+	    siftUp(heapIndex[last]);
+	}
+    }
+
+    /** The cell with the lowest priority, without removing it. The heap must not be empty. */
+    int peek() {
+	return heap[0];
+    }
+
+    long peekPriority() {
+	return priorities[heap[0]];
+    }
+
+    private void siftUp(int index) {
+	int cell = heap[index];
+	long priority = priorities[cell];
+	while (index > 0) {
+	    int parent = (index - 1) >>> 1;
+	    if (priorities[heap[parent]] <= priority) {
+		break;
+	    }
+	    moveTo(heap[parent], index);
+	    index = parent;
+	}
+	moveTo(cell, index);
+    }
+
+    private void siftDown(int index) {
+	int cell = heap[index];
+	long priority = priorities[cell];
+	int half = size >>> 1;
+	while (index < half) {
+	    int child = 2 * index + 1;
+	    int right = child + 1;
+	    if (right < size && priorities[heap[right]] < priorities[heap[child]]) {
+		child = right;
+	    }
+	    if (priority <= priorities[heap[child]]) {
+		break;
+	    }
+	    moveTo(heap[child], index);
+	    index = child;
+	}
+	moveTo(cell, index);
+    }
+
+    private void moveTo(final int cell, final int index) {
+	heap[index] = cell;
+	heapIndex[cell] = index;
+    }
+}
@@ -0,0 +1,194 @@
+package gamemodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import static java.lang.Math.abs;
+
+/**
+ * Exact distances from a few landmark tiles to every tile of the map, used for the ALT
+ * (A*, landmarks, triangle inequality) heuristic.
+ * <p>
+ * If the cost of walking from the landmark L to every tile is known, the triangle
+ * inequality gives two lower bounds on the cost of walking from a tile A to a tile B:
+ * L to B can't be cheaper than L to A plus A to B, and A to L can't be cheaper than A to
+ * B plus B to L. Unlike the straight line estimate these bounds know about the sea, so a
+ * search no longer floods a whole coastline before walking around it.
+ * <p>
+ * The distances are computed on the terrain and features alone. Units and fog only ever
+ * close tiles, which can't make a path cheaper, so the bounds hold for them as well. Any
+ * other change to the map invalidates the table.
+ * <p>
+ * A distance takes two bytes per tile. Distances too long to store are left out of the
+ * bounds. Everything the computation holds at once stays within MEMORY_BUDGET: the move
+ * costs it reads, the finished tables, and the working buffers of the searches still
+ * running, which at twenty bytes per tile cost ten times as much as a table. The number of
+ * landmarks is capped so that at least one search fits next to all the tables, and only as
+ * many searches run at once as fit in what is left. Each of them keeps its buffers for the
+ * next landmark it is given.
+ */
+final class Landmarks
+{
+    static final int MAX_LANDMARKS = 8;
+    static final long MEMORY_BUDGET = 32L << 20;
+    private static final int TABLE_BYTES_PER_CELL = Character.BYTES;
+    // The best cost of every cell, and the heap, index and priority slots of the IndexedMinHeap.
+    private static final int SEARCH_BYTES_PER_CELL = 3 * Integer.BYTES + Long.BYTES;
+    private static final char SATURATED = 0xFFFE;
+    private static final char UNREACHABLE = 0xFFFF;
+    private static final int NO_COST = Integer.MAX_VALUE;
+
+    private final char[][] distances;
+
+    private Landmarks(final char[][] distances) {
+	this.distances = distances;
+    }
+
+    /**
+     * Picks up to MAX_LANDMARKS of the candidate cells, spread as far apart as possible,
+     * and computes their distance tables on the pool, sharing the landmarks out among as
+     * many tasks as the pool and MEMORY_BUDGET allow.
+     *
+     * @param costs the cost of stepping onto every cell, 0 for impassable cells. Must not
+     *              be changed while the tables are computed.
+     */
+    static ForkJoinTask<Landmarks> compute(final ForkJoinPool pool, final byte[] costs, final int mapWidth,
+					   final int mapHeight, final int[] candidates)
+    {
+	long cells = costs.length;
+	long budget = MEMORY_BUDGET - cells;
+	int count = (int) Long.max(0, Long.min(MAX_LANDMARKS, (budget - SEARCH_BYTES_PER_CELL * cells)
+							    / (TABLE_BYTES_PER_CELL * cells)));
+	int[] landmarkCells = pickLandmarks(costs, mapHeight, candidates, count);
+	long spare = budget - TABLE_BYTES_PER_CELL * cells * landmarkCells.length;
+	int searcherCount = (int) Long.min(Long.min(landmarkCells.length, pool.getParallelism()),
+					   spare / (SEARCH_BYTES_PER_CELL * cells));
+	return pool.submit(new RecursiveTask<Landmarks>()
+	{
+	    @Override protected Landmarks compute() {
+		char[][] distances = new char[landmarkCells.length][];
+		List<RecursiveAction> searchers = new ArrayList<>();
+		for (int searcher = 0; searcher < searcherCount; searcher++) {
+		    int firstLandmark = searcher;
+		    searchers.add(new RecursiveAction()
+		    {
+			// Every searcher writes the tables of its own landmarks, so they never interfere.
+			@Override protected void compute() {
+			    int[] bestCosts = new int[costs.length];
+			    IndexedMinHeap openSet = new IndexedMinHeap(costs.length);
+			    for (int landmark = firstLandmark; landmark < landmarkCells.length; landmark += searcherCount) {
+				distances[landmark] = distancesFrom(costs, mapWidth, mapHeight, landmarkCells[landmark],
+								    bestCosts, openSet);
+			    }
+			}
+		    });
+		}
+		invokeAll(searchers);
+		return new Landmarks(distances);
+	    }
+	});
+    }
+
+    /*
+     * Landmarks work best at the edges of the map, behind the obstacles a search has to go
+     * around. Choosing each landmark as far as possible from the ones already chosen spreads
+     * them out without having to know where those edges are.
+     */
+    private static int[] pickLandmarks(final byte[] costs, final int mapHeight, final int[] candidates, final int count) {
+	int[] chosen = new int[Integer.min(count, candidates.length)];
+	int chosenCount = 0;
+	while (chosenCount < chosen.length) {
+	    int best = -1;
+	    int bestSpread = -1;
+	    for (int candidate : candidates) {
+		if (costs[candidate] == 0) {
+		    continue;
+		}
+		int spread = Integer.MAX_VALUE;
+		for (int index = 0; index < chosenCount; index++) {
+		    int other = chosen[index];
+		    spread = Integer.min(spread, Integer.max(abs(candidate / mapHeight - other / mapHeight),
+							     abs(candidate % mapHeight - other % mapHeight)));
+		}
+		if (spread > bestSpread) {
+		    best = candidate;
+		    bestSpread = spread;
+		}
+	    }
+	    if (best < 0 || bestSpread == 0) {
+		break;
+	    }
+	    chosen[chosenCount] = best;
+	    chosenCount++;
+	}
+	return Arrays.copyOf(chosen, chosenCount);
+    }
+
+    /**
+     * A Dijkstra search from the landmark, counting the cost of every tile stepped onto.
+     * The buffers may hold anything from an earlier search, but the heap must be empty; a
+     * finished search always leaves it so.
+     */
+    private static char[] distancesFrom(final byte[] costs, final int mapWidth, final int mapHeight, final int landmarkCell,
+					final int[] bestCosts, final IndexedMinHeap openSet)
+    {
+	Arrays.fill(bestCosts, NO_COST);
+	bestCosts[landmarkCell] = 0;
+	openSet.insertOrDecrease(landmarkCell, 0);
+	while (!openSet.isEmpty()) {
+	    int cell = openSet.poll();
+	    int cellX = cell / mapHeight;
+	    int cellY = cell % mapHeight;
+	    for (int x = Integer.max(cellX - 1, 0); x <= Integer.min(cellX + 1, mapWidth - 1); x++) {
+		for (int y = Integer.max(cellY - 1, 0); y <= Integer.min(cellY + 1, mapHeight - 1); y++) {
+		    int neighbor = x * mapHeight + y;
+		    if (costs[neighbor] == 0) {
+			continue;
+		    }
+		    int cost = bestCosts[cell] + costs[neighbor];
+		    if (cost < bestCosts[neighbor]) {
+			bestCosts[neighbor] = cost;
+			openSet.insertOrDecrease(neighbor, cost);
+		    }
+		}
+	    }
+	}
+
+	char[] distances = new char[costs.length];
+	for (int cell = 0; cell < distances.length; cell++) {
+	    int cost = bestCosts[cell];
+	    distances[cell] = cost == NO_COST ? UNREACHABLE : (char) Integer.min(cost, SATURATED);
+	}
+	return distances;
+    }
+
+    int getLandmarkCount() {
+	return distances.length;
+    }
+
+    /**
+     * A lower bound on the cost of walking from the cell to the goal, given the cost of
+     * stepping onto either of them.
+     */
+    int lowerBound(final int cell, final int goalCell, final int cellCost, final int goalCost) {
+	int bound = 0;
+	for (char[] landmarkDistances : distances) {
+	    int toCell = landmarkDistances[cell];
+	    int toGoal = landmarkDistances[goalCell];
+	    if (toCell >= SATURATED || toGoal >= SATURATED) {
+		continue;
+	    }
+	    // From the landmark, via the cell, to the goal.
+	    bound = Integer.max(bound, toGoal - toCell);
+	    // From the cell, via the goal, to the landmark. Walking towards the landmark counts
+	    // the landmark instead of the tile walked from, hence the cost corrections.
+	    bound = Integer.max(bound, (toCell - cellCost) - (toGoal - goalCost));
+	}
+	return bound;
+    }
+}
@@ -0,0 +1,45 @@
+package gamemodel;
+
+import java.util.Arrays;
+
+/**
+ * The layout shared by every chunked map layer. A layer is cut into square chunks of SIZE
+ * by SIZE tiles, numbered column by column like the PathMap cells, and each chunk is a
+ * flat array of its tiles, also column by column. A chunk that has never been written to
+ * isn't allocated at all: the layer keeps null in its place and reads the matching
+ * sentinel below instead, so memory grows with the part of the map actually in use.
+ * <p>
+ * The sentinels are shared by every layer of every map and must never be written to.
+ */
+final class MapChunks
+{
+    static final int SHIFT = 6;
+    static final int SIZE = 1 << SHIFT;
+    static final int MASK = SIZE - 1;
+    static final int TILES = SIZE * SIZE;
+
+    /** Read in place of a terrain chunk that is all the first TerrainType. */
+    static final byte[] DEFAULT_TERRAIN = new byte[TILES];
+    /** Read in place of an entity layer chunk with nothing on it. */
+    static final int[] NO_ENTITIES = newEntityChunk();
+    /** Read in place of a bit layer chunk with no bits set, one word per column of the chunk. */
+    static final long[] NO_BITS = new long[SIZE];
+
+    private MapChunks() {}
+
+    /** How many chunks it takes to cover the given number of tiles along one side. */
+    static int chunksAcross(final int tiles) {
+	return (tiles + MASK) >> SHIFT;
+    }
+
+    /** The index of the tile within its chunk. */
+    static int tileInChunk(final int x, final int y) {
+	return (x & MASK) << SHIFT | (y & MASK);
+    }
+
+    static int[] newEntityChunk() {
+	int[] chunk = new int[TILES];
+	Arrays.fill(chunk, EntityTable.NO_ENTITY);
+	return chunk;
+    }
+}
@@ -0,0 +1,133 @@
+package gamemodel;
+
+import entity.Interactable;
+import entity.Mover;
+import gamemodel.GameModel.MainMap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Walks the tiles of a box on the main map chunk by chunk, so that the layers of a chunk
+ * are looked up once and every tile after that is read straight out of the chunk arrays.
+ * Within a chunk the tiles come column by column; callers must not depend on the order
+ * beyond that.
+ * <p>
+ * A cursor is meant for a single pass over a map that doesn't change meanwhile: a chunk
+ * that is first written to after the cursor reached it isn't seen.
+ */
+public final class MapCursor
+{
+    private final MainMap map;
+    private final FogOfWar fogOfWar;
+    private final int maxX;
+    private final int maxY;
+    private final int minY;
+    // The part of the box that lies in the current chunk.
+    private int chunkMinX;
+    private int chunkMinY;
+    private int chunkMaxX;
+    private int chunkMaxY;
+    private int x;
+    private int y;
+    private int tile;
+    private byte[] terrainOrdinals;
+    // Read instead of terrainOrdinals while the chunk is still in the map file.
+    private ByteBuffer fileTerrainOrdinals;
+    private int[] featureIds;
+    private int[] unitIds;
+    private long[] exploredBits;
+
+    MapCursor(final MainMap map, final FogOfWar fogOfWar, final int minX, final int minY, final int maxX,
+	      final int maxY)
+    {
+	this.map = map;
+	this.fogOfWar = fogOfWar;
+	this.maxX = maxX;
+	this.maxY = maxY;
+	this.minY = minY;
+	if (minX > maxX || minY > maxY) {
+	    // Nothing to walk: next finds no tile left in this chunk, nor any chunk after it.
+	    x = chunkMaxX = maxX;
+	    y = chunkMaxY = maxY;
+	    return;
+	}
+	enterChunk(minX, minY);
+	// Step back before the first tile, so that the first call to next lands on it.
+	y--;
+	tile--;
+    }
+
+    /**
+     * Moves on to the next tile.
+     *
+     * @return false once every tile in the box has been visited.
+     */
+    public boolean next() {
+	if (y < chunkMaxY) {
+	    y++;
+	    tile++;
+	} else if (x < chunkMaxX) {
+	    x++;
+	    y = chunkMinY;
+	    tile = MapChunks.tileInChunk(x, y);
+	} else if (chunkMaxY < maxY) {
+	    enterChunk(chunkMinX, chunkMaxY + 1);
+	} else if (chunkMaxX < maxX) {
+	    enterChunk(chunkMaxX + 1, minY);
+	} else {
+	    return false;
+	}
+	return true;
+    }
+
+    private void enterChunk(final int firstX, final int firstY) {
+	chunkMinX = firstX;
+	chunkMinY = firstY;
+	chunkMaxX = Integer.min(firstX | MapChunks.MASK, maxX);
+	chunkMaxY = Integer.min(firstY | MapChunks.MASK, maxY);
+	x = firstX;
+	y = firstY;
+	tile = MapChunks.tileInChunk(x, y);
+	int chunk = map.chunkIndex(x, y);
+	terrainOrdinals = map.terrainChunk(chunk);
+	fileTerrainOrdinals = terrainOrdinals == null ? map.fileTerrainChunk(chunk) : null;
+	featureIds = map.featureChunk(chunk);
+	unitIds = map.unitChunk(chunk);
+	exploredBits = fogOfWar == null ? null : fogOfWar.exploredChunk(chunk);
+    }
+
+    public int getX() {
+	return x;
+    }
+
+    public int getY() {
+	return y;
+    }
+
+    public TerrainType getTerrain() {
+	return MainMap.terrainType(getTerrainOrdinal());
+    }
+
+    int getTerrainOrdinal() {
+	return terrainOrdinals != null ? terrainOrdinals[tile] : fileTerrainOrdinals.get(tile);
+    }
+
+    /** The feature covering the tile, or null. */
+    public Interactable getFeature() {
+	return map.featureById(featureIds[tile]);
+    }
+
+    /** The mover standing on the tile, or null. */
+    public Mover getUnit() {
+	return map.unitById(unitIds[tile]);
+    }
+
+    boolean hasUnit() {
+	return unitIds[tile] != EntityTable.NO_ENTITY;
+    }
+
+    /** Whether the fog of war of the cursor hides the tile. Never on the server. */
+    public boolean isHidden() {
+	return exploredBits != null && (exploredBits[x & MapChunks.MASK] & (1L << y)) == 0;
+    }
+}
@@ -0,0 +1,176 @@
+package gamemodel;
+
+import entity.Interactable;
+import entity.ResourceMine;
+import entity.Town;
+import entity.TownFactory;
+import entity.TownType;
+import gamemodel.GameModel.MainMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The static layers of a main map, its terrain and where its features stand, in a file that
+ * is memory mapped rather than read. The terrain is stored chunk by chunk in the layout of
+ * MapChunks, so a MainMap opened from the file reads it straight out of the mapped pages and
+ * the OS only pages in the chunks that are looked at. Opening a map costs no parsing and no
+ * heap for the terrain, however large the map is, and several games can share one file.
+ * <p>
+ * The file starts with MAGIC, VERSION, the map width and height and the number of features,
+ * followed by a record per feature: its kind, the ordinal of its town type or resource, and
+ * its position. The terrain chunks start at the first multiple of MapChunks.TILES after
+ * that, one byte per tile, so each chunk lies on pages of its own.
+ */
+public final class MapFile
+{
+    private static final int MAGIC = 0x4F484D50; // "OHMP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+    private static final int FEATURE_BYTES = 2 + 2 * Integer.BYTES;
+    private static final byte TOWN = 0;
+    private static final byte MINE = 1;
+
+    private final int mapWidth;
+    private final int mapHeight;
+    private final ByteBuffer features;
+    private final int featureCount;
+    private final ByteBuffer[] terrainChunks;
+
+    private MapFile(final ByteBuffer file, final Path path) throws MapFileException {
+	if (file.capacity() < HEADER_BYTES || file.getInt(0) != MAGIC) {
+	    throw new MapFileException("Not a map file: " + path);
+	}
+	if (file.getInt(Integer.BYTES) != VERSION) {
+	    throw new MapFileException("Unsupported map file version " + file.getInt(Integer.BYTES) + ": " + path);
+	}
+	mapWidth = file.getInt(2 * Integer.BYTES);
+	mapHeight = file.getInt(3 * Integer.BYTES);
+	featureCount = file.getInt(4 * Integer.BYTES);
+	if (mapWidth <= 0 || mapHeight <= 0 || featureCount < 0) {
+	    throw new MapFileException("Corrupt map file header: " + path);
+	}
+	long terrainOffset = terrainOffset(featureCount);
+	long chunkCount = (long) MapChunks.chunksAcross(mapWidth) * MapChunks.chunksAcross(mapHeight);
+	if (terrainOffset + chunkCount * MapChunks.TILES > file.capacity()) {
+	    throw new MapFileException("Truncated map file: " + path);
+	}
+	features = slice(file, HEADER_BYTES, featureCount * FEATURE_BYTES);
+	terrainChunks = new ByteBuffer[(int) chunkCount];
+	for (int chunk = 0; chunk < terrainChunks.length; chunk++) {
+	    terrainChunks[chunk] = slice(file, (int) terrainOffset + chunk * MapChunks.TILES, MapChunks.TILES);
+	}
+    }
+
+    /**
+     * Maps the file into memory. The file is only read from, and may be deleted or replaced
+     * once every map opened from it is gone.
+     */
+    public static MapFile open(final Path path) throws MapFileException {
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+	    if (channel.size() > Integer.MAX_VALUE) {
+		throw new MapFileException("Map file too large: " + path);
+	    }
+	    // The mapping stays valid after the channel is closed.
+	    return new MapFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path);
+	} catch (IOException e) {
+	    throw new MapFileException("Failed to map " + path, e);
+	}
+    }
+
+    /** Writes the terrain and features of the game's main map to the file, replacing it. */
+    public static void write(final GameModel gameModel, final Path path) throws IOException {
+	MainMap map = gameModel.getMainMap();
+	int featureCount = gameModel.getTowns().size() + gameModel.getMines().size();
+	ByteBuffer header = ByteBuffer.allocate((int) terrainOffset(featureCount));
+	header.putInt(MAGIC).putInt(VERSION).putInt(map.getMapWidth()).putInt(map.getMapHeight()).putInt(featureCount);
+	for (Town town : gameModel.getTowns()) {
+	    // Towns don't remember their type yet, and every type is built as a castle anyway.
+	    putFeature(header, TOWN, TownType.CASTLE.ordinal(), town.getPosition());
+	}
+	for (ResourceMine mine : gameModel.getMines()) {
+	    putFeature(header, MINE, mine.getResourceType().ordinal(), mine.getPosition());
+	}
+	header.rewind();
+
+	int chunkCount = MapChunks.chunksAcross(map.getMapWidth()) * MapChunks.chunksAcross(map.getMapHeight());
+	ByteBuffer terrain = ByteBuffer.allocate(chunkCount * MapChunks.TILES);
+	MapCursor tiles = map.cursor(0, 0, map.getMapWidth() - 1, map.getMapHeight() - 1);
+	while (tiles.next()) {
+	    int x = tiles.getX();
+	    int y = tiles.getY();
+	    terrain.put(map.chunkIndex(x, y) * MapChunks.TILES + MapChunks.tileInChunk(x, y),
+			(byte) tiles.getTerrainOrdinal());
+	}
+
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+						    StandardOpenOption.TRUNCATE_EXISTING)) {
+	    while (header.hasRemaining()) {
+		channel.write(header);
+	    }
+	    while (terrain.hasRemaining()) {
+		channel.write(terrain);
+	    }
+	}
+    }
+
+    public int getMapWidth() {
+	return mapWidth;
+    }
+
+    public int getMapHeight() {
+	return mapHeight;
+    }
+
+    /** A main map whose terrain is read from the file until a tile of its chunk is changed. */
+    public MainMap createMainMap() {
+	return new MainMap(mapWidth, mapHeight, terrainChunks);
+    }
+
+    /** Places the towns and mines of the file on the game's main map. */
+    public void addFeatures(final GameModel gameModel) throws MapFileException, UnknownTownTypeException {
+	for (int feature = 0; feature < featureCount; feature++) {
+	    int record = feature * FEATURE_BYTES;
+	    byte kind = features.get(record);
+	    int ordinal = features.get(record + 1) & 0xFF;
+	    int x = features.getInt(record + 2);
+	    int y = features.getInt(record + 2 + Integer.BYTES);
+	    if (kind == TOWN && ordinal < TownType.values().length) {
+		Town town = TownFactory.makeTown(TownType.values()[ordinal]);
+		checkWithinMap(town, x, y);
+		gameModel.addFeature(town, x, y);
+	    } else if (kind == MINE && ordinal < Resource.values().length) {
+		ResourceMine mine = new ResourceMine(Resource.values()[ordinal]);
+		checkWithinMap(mine, x, y);
+		gameModel.addFeature(mine, x, y);
+	    } else {
+		throw new MapFileException("Unknown feature " + kind + "/" + ordinal + " at " + x + ", " + y);
+	    }
+	}
+    }
+
+    private void checkWithinMap(final Interactable feature, final int x, final int y) throws MapFileException {
+	if (x < 0 || y < 0 || x + feature.getWidth() > mapWidth || y + feature.getHeight() > mapHeight) {
+	    throw new MapFileException("Feature at " + x + ", " + y + " doesn't fit on the map");
+	}
+    }
+
+    private static long terrainOffset(final int featureCount) {
+	long featureEnd = HEADER_BYTES + (long) featureCount * FEATURE_BYTES;
+	return (featureEnd + MapChunks.TILES - 1) / MapChunks.TILES * MapChunks.TILES;
+    }
+
+    private static void putFeature(final ByteBuffer buffer, final byte kind, final int ordinal, final Position pos) {
+	buffer.put(kind).put((byte) ordinal).putInt(pos.getX()).putInt(pos.getY());
+    }
+
+    private static ByteBuffer slice(final ByteBuffer buffer, final int offset, final int length) {
+	ByteBuffer view = buffer.duplicate();
+	view.position(offset);
+	view.limit(offset + length);
+	return view.slice();
+    }
+}
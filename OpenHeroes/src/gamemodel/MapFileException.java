@@ -0,0 +1,13 @@
+package gamemodel;
+
+/** Exception thrown when a map file can't be read or isn't a map file at all. */
+public class MapFileException extends Exception
+{
+    public MapFileException(final String s) {
+	super(s);
+    }
+
+    public MapFileException(final String s, final Throwable cause) {
+	super(s, cause);
+    }
+}
@@ -0,0 +1,165 @@
+package gamemodel;
+
+import gamemodel.GameModel.MainMap;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A frozen copy of everything the MainMap pathfinder looks at: the cost of every tile,
+ * where the units stand and what each team's fog of war hides. Nothing in a snapshot is
+ * ever written after it has been made, so any number of threads may search it at once.
+ * <p>
+ * The MainMap itself can't be searched concurrently: it keeps a single search workspace,
+ * and its passability depends on the fog of war of whichever team GameModel.setCurrentTeam
+ * picked last. A snapshot instead hands out a view per team, and every thread searching a
+ * view gets a workspace of its own.
+ */
+public final class MapSnapshot
+{
+    // Set on tiles a unit stands on. The rest of the byte is the cost, 0 for impassable tiles.
+    private static final int OCCUPIED = 0x80;
+    private static final int COST_MASK = OCCUPIED - 1;
+
+    // One search workspace per thread, shared by every snapshot that thread searches.
+    private static final ThreadLocal<PathWorkspace> WORKSPACES = new ThreadLocal<>();
+
+    private final int mapWidth;
+    private final int mapHeight;
+    private final byte[] tiles;
+    private final Landmarks landmarks;
+    private final View omniscientView;
+    private final Map<Team, View> teamViews = new EnumMap<>(Team.class);
+
+    MapSnapshot(final MainMap map, final Map<Team, FogOfWar> fogsOfWar) {
+	this.mapWidth = map.getMapWidth();
+	this.mapHeight = map.getMapHeight();
+	this.tiles = map.staticMoveCosts();
+	MapCursor cursor = map.cursor(0, 0, mapWidth - 1, mapHeight - 1);
+	while (cursor.next()) {
+	    if (cursor.hasUnit()) {
+		tiles[cursor.getX() * mapHeight + cursor.getY()] |= OCCUPIED;
+	    }
+	}
+	this.landmarks = map.getLandmarks();
+	this.omniscientView = new View(null);
+	for (Map.Entry<Team, FogOfWar> entry : fogsOfWar.entrySet()) {
+	    teamViews.put(entry.getKey(), new View(entry.getValue().copy()));
+	}
+    }
+
+    /**
+     * The map as the given team sees it, with tiles hidden by its fog of war counting as
+     * impassable. A null team, or a team without fog of war, sees the whole map.
+     */
+    public PathMap viewFor(final Team team) {
+	View view = team == null ? null : teamViews.get(team);
+	return view == null ? omniscientView : view;
+    }
+
+    public int getMapWidth() {
+	return mapWidth;
+    }
+
+    public int getMapHeight() {
+	return mapHeight;
+    }
+
+    /*
+     * A view holds no search state of its own, the workspace is looked up for the searching
+     * thread on every search. That makes a single view safe to share between threads.
+     */
+    private final class View extends PathMap
+    {
+	private final FogOfWar fogOfWar;
+
+	private View(final FogOfWar fogOfWar) {
+	    this.fogOfWar = fogOfWar;
+	}
+
+	@Override PathWorkspace newSearch() {
+	    int cellCount = mapWidth * mapHeight;
+	    PathWorkspace workspace = WORKSPACES.get();
+	    if (workspace == null) {
+		workspace = new PathWorkspace(cellCount);
+		WORKSPACES.set(workspace);
+	    }
+	    workspace.reset(cellCount, mapHeight);
+	    return workspace;
+	}
+
+	@Override PathWorkspace lastSearch() {
+	    return WORKSPACES.get();
+	}
+
+	@Override boolean isPassableCell(final int cell) {
+	    int tile = tiles[cell];
+	    return (tile & COST_MASK) != 0 && (tile & OCCUPIED) == 0 && (fogOfWar == null || fogOfWar.isExploredCell(cell));
+	}
+
+	@Override int passCostCell(final int cell) {
+	    int moveCost = tiles[cell] & COST_MASK;
+	    return moveCost == 0 ? Passability.IMPASSABLE.getMoveCost() : moveCost;
+	}
+
+	@Override boolean isUniformCell(final int cell) {
+	    return tiles[cell] == 1 && (fogOfWar == null || fogOfWar.isExploredCell(cell));
+	}
+
+	@Override int neighborCells(final int cell, final int[] neighbors) {
+	    int cellX = cell / mapHeight;
+	    int cellY = cell % mapHeight;
+	    int count = 0;
+	    for (int x = Integer.max(cellX - 1, 0); x <= Integer.min(cellX + 1, mapWidth - 1); x++) {
+		for (int y = Integer.max(cellY - 1, 0); y <= Integer.min(cellY + 1, mapHeight - 1); y++) {
+		    if (x == cellX && y == cellY) {continue;}
+		    neighbors[count] = x * mapHeight + y;
+		    count++;
+		}
+	    }
+	    return count;
+	}
+
+	@Override int heuristicCostEstimate(final int cell, final int goalCell) {
+	    int deltaX = Math.abs(goalCell / mapHeight - cell / mapHeight);
+	    int deltaY = Math.abs(goalCell % mapHeight - cell % mapHeight);
+	    int estimate = Integer.max(deltaX, deltaY);
+	    if (landmarks != null) {
+		estimate = Integer.max(estimate, landmarks.lowerBound(cell, goalCell, passCostCell(cell), passCostCell(goalCell)));
+	    }
+	    return estimate;
+	}
+
+	@Override boolean isPassable(final Position pos) {
+	    return isWithinMap(pos) && isPassableCell(cellIndex(pos));
+	}
+
+	@Override int passCost(final Position pos) {
+	    return passCostCell(cellIndex(pos));
+	}
+
+	@Override Set<Position> getNeighbors(final Position pos) {
+	    Set<Position> neighbors = new HashSet<>();
+	    int[] cells = new int[PathWorkspace.MAX_NEIGHBORS];
+	    int count = neighborCells(cellIndex(pos), cells);
+	    for (int i = 0; i < count; i++) {
+		neighbors.add(cellPosition(cells[i]));
+	    }
+	    return neighbors;
+	}
+
+	@Override int heuristicCostEstimate(final Position start, final Position goal) {
+	    return heuristicCostEstimate(cellIndex(start), cellIndex(goal));
+	}
+
+	@Override int getMapWidth() {
+	    return mapWidth;
+	}
+
+	@Override int getMapHeight() {
+	    return mapHeight;
+	}
+    }
+}
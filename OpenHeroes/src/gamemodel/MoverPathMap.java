@@ -3,6 +3,7 @@ package gamemodel;
 import entity.Mover;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -10,6 +11,8 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
 
+import static java.lang.Math.abs;
+
 
 /**
  * A more specialized implementation of the PathMap which adds
@@ -20,26 +23,86 @@ import java.util.Set;
 
 public abstract class MoverPathMap extends PathMap implements Serializable
 {
-    protected Mover[][] unitMap;
+    // The id in units of the mover standing on every tile, in chunks (see MapChunks).
+    private final int[][] unitChunks;
+    private final EntityTable<Mover> units = new EntityTable<>();
     protected int mapWidth;
     protected int mapHeight;
+    protected final int chunkRows;
+
+    // The last CHANGE_LOG_LENGTH changed regions, four ints each, so that a PathReplanner
+    // can find out which tiles changed since it last looked.
+    static final int CHANGE_LOG_LENGTH = 64;
+    private transient int[] changeLog = null;
+    private transient long changeCount = 0;
 
     protected MoverPathMap(final int mapWidth, final int mapHeight) {
 	this.mapHeight = mapHeight;
 	this.mapWidth = mapWidth;
-	this.unitMap = new Mover[mapWidth][mapHeight];
+	this.chunkRows = MapChunks.chunksAcross(mapHeight);
+	this.unitChunks = new int[MapChunks.chunksAcross(mapWidth) * chunkRows][];
     }
 
-    public boolean unitIsAdjacent(final Mover mover, final Position position) {
-	for (int x = -1; x <= 1; x++) {
-	    for (int y = -1; y <= 1; y++) {
-		Position tentativePosition = mover.getPosition().offset(x, y);
-		if (tentativePosition.equals(position)) {
-		    return true;
-		}
+    /** The chunk that holds the tile. */
+    int chunkIndex(final int x, final int y) {
+	return (x >> MapChunks.SHIFT) * chunkRows + (y >> MapChunks.SHIFT);
+    }
+
+    /** The unit ids of a chunk. Must not be written to. */
+    int[] unitChunk(final int chunk) {
+	int[] unitIds = unitChunks[chunk];
+	return unitIds != null ? unitIds : MapChunks.NO_ENTITIES;
+    }
+
+    Mover unitById(final int unitId) {
+	return units.get(unitId);
+    }
+
+    private int unitId(final Position pos) {
+	return unitChunk(chunkIndex(pos.getX(), pos.getY()))[MapChunks.tileInChunk(pos.getX(), pos.getY())];
+    }
+
+    private void setUnitId(final Position pos, final int unitId) {
+	int chunk = chunkIndex(pos.getX(), pos.getY());
+	if (unitChunks[chunk] == null) {
+	    if (unitId == EntityTable.NO_ENTITY) {
+		return;
 	    }
+	    unitChunks[chunk] = MapChunks.newEntityChunk();
 	}
-	return false;
+	unitChunks[chunk][MapChunks.tileInChunk(pos.getX(), pos.getY())] = unitId;
+    }
+
+    /** The mover standing on the tile, or null. */
+    public Mover getUnit(final int x, final int y) {
+	return units.get(unitChunk(chunkIndex(x, y))[MapChunks.tileInChunk(x, y)]);
+    }
+
+    public boolean unitOccupies(final Position pos) {
+	return unitId(pos) != EntityTable.NO_ENTITY;
+    }
+
+    /** Puts the mover on the map at its current position. */
+    public void addMapUnit(final Mover mover) {
+	Position pos = mover.getPosition();
+	setUnitId(pos, units.add(mover));
+	tilesChanged(pos.getX(), pos.getY(), pos.getX(), pos.getY());
+    }
+
+    /** Takes whatever mover stands on the tile off the map. */
+    public void clearUnitMap(final Position pos) {
+	int unitId = unitId(pos);
+	if (unitId != EntityTable.NO_ENTITY) {
+	    units.remove(unitId);
+	    setUnitId(pos, EntityTable.NO_ENTITY);
+	}
+	tilesChanged(pos.getX(), pos.getY(), pos.getX(), pos.getY());
+    }
+
+    /** Whether the position is the mover's own tile or one of the eight tiles around it. */
+    public boolean unitIsAdjacent(final Mover mover, final Position position) {
+	Position moverPosition = mover.getPosition();
+	return abs(moverPosition.getX() - position.getX()) <= 1 && abs(moverPosition.getY() - position.getY()) <= 1;
     }
 
     public int pathMoveCost(final List<Position> path) {
@@ -52,9 +115,55 @@ public abstract class MoverPathMap extends PathMap implements Serializable
     }
 
     public void moveMapUnit(Mover mover, Position pos) {
-	unitMap[pos.getX()][pos.getY()] = mover;
-	unitMap[mover.getPosition().getX()][mover.getPosition().getY()] = null;
+	Position previous = mover.getPosition();
+	int unitId = unitId(previous);
+	setUnitId(previous, EntityTable.NO_ENTITY);
+	setUnitId(pos, unitId);
 	mover.setPosition(pos);
+	tilesChanged(previous.getX(), previous.getY(), previous.getX(), previous.getY());
+	tilesChanged(pos.getX(), pos.getY(), pos.getX(), pos.getY());
+    }
+
+    /**
+     * Must be called whenever anything that decides the passability or cost of the tiles
+     * inside the given bounds changes.
+     */
+    void tilesChanged(final int minX, final int minY, final int maxX, final int maxY) {
+	if (changeLog == null) {
+	    changeLog = new int[4 * CHANGE_LOG_LENGTH];
+	}
+	int entry = 4 * (int) (changeCount % CHANGE_LOG_LENGTH);
+	changeLog[entry] = minX;
+	changeLog[entry + 1] = minY;
+	changeLog[entry + 2] = maxX;
+	changeLog[entry + 3] = maxY;
+	changeCount++;
+    }
+
+    /** The number of changes made to the map so far. */
+    long getChangeCount() {
+	return changeCount;
+    }
+
+    /**
+     * Copies the bounds of the given change into the box. Only the last CHANGE_LOG_LENGTH
+     * changes are remembered.
+     */
+    void readChange(final long change, final int[] box) {
+	System.arraycopy(changeLog, 4 * (int) (change % CHANGE_LOG_LENGTH), box, 0, 4);
+    }
+
+    /**
+     * Starts an incremental search for the cheapest path from the mover to the destination
+     * that can be repaired as the mover walks and the map changes.
+     */
+    public PathReplanner replanner(final Mover mover, final Position destination) {
+	return new PathReplanner(this, mover, Collections.singletonList(destination));
+    }
+
+    /** Same as replanner, but the path may end at whichever of the destinations is cheapest to reach. */
+    public PathReplanner replanner(final Mover mover, final Iterable<Position> destinations) {
+	return new PathReplanner(this, mover, destinations);
     }
 
     public Deque<Position> legalMoves(final Mover mover, final Deque<Position> path) {
@@ -75,6 +184,51 @@ public abstract class MoverPathMap extends PathMap implements Serializable
 	return legalMoves;
     }
 
+    /**
+     * Finds every tile the mover can reach with its remaining movement points using a
+     * single Dijkstra search bounded by those points.
+     */
+    public ReachableTiles reachableTiles(final Mover mover) {
+	Position origin = mover.getPosition();
+	int budget = mover.getRemainingMoveLength();
+	ReachableTiles reachableTiles = new ReachableTiles(origin, budget);
+	reachableTiles.addOrigin();
+
+	PathWorkspace search = newSearch();
+	IndexedMinHeap openSet = search.getOpenSet();
+	int[] neighbors = search.getNeighborBuffer();
+	int originCell = origin.getX() * mapHeight + origin.getY();
+	search.record(originCell, 0, PathWorkspace.NO_CELL);
+	openSet.insertOrDecrease(originCell, 0);
+
+	while (!openSet.isEmpty()) {
+	    int cell = openSet.poll();
+	    search.close(cell);
+	    int cost = search.getGScore(cell);
+	    if (cell != originCell) {
+		int parent = search.getCameFrom(cell);
+		reachableTiles.add(cell / mapHeight, cell % mapHeight, cost, parent / mapHeight, parent % mapHeight);
+	    }
+
+	    int neighborCount = neighborCells(cell, neighbors);
+	    for (int i = 0; i < neighborCount; i++) {
+		int neighbor = neighbors[i];
+		if (search.isClosed(neighbor) || !isPassableCell(neighbor)) {
+		    continue;
+		}
+		int stepCost = passCostCell(neighbor);
+		if (stepCost > budget - cost) {
+		    continue;
+		}
+		if (cost + stepCost < search.getGScore(neighbor)) {
+		    search.record(neighbor, cost + stepCost, cell);
+		    openSet.insertOrDecrease(neighbor, cost + stepCost);
+		}
+	    }
+	}
+	return reachableTiles;
+    }
+
     public Set<Position> getNeighbors(Position pos) {
 	Set<Position> neighbors = new HashSet<>();
 
@@ -88,6 +242,24 @@ public abstract class MoverPathMap extends PathMap implements Serializable
 	return neighbors;
     }
 
+    /*
+     * Same neighborhood as getNeighbors, computed on packed cell indices
+     * so that the pathfinder doesn't have to create any Positions.
+     */
+    @Override int neighborCells(final int cell, final int[] neighbors) {
+	int cellX = cell / mapHeight;
+	int cellY = cell % mapHeight;
+	int count = 0;
+	for (int x = Integer.max(cellX - 1, 0); x <= Integer.min(cellX + 1, mapWidth - 1); x++) {
+	    for (int y = Integer.max(cellY - 1, 0); y <= Integer.min(cellY + 1, mapHeight - 1); y++) {
+		if (x == cellX && y == cellY) {continue;}
+		neighbors[count] = x * mapHeight + y;
+		count++;
+	    }
+	}
+	return count;
+    }
+
     public int getMapHeight() {
 	return mapHeight;
     }
@@ -0,0 +1,64 @@
+package gamemodel;
+
+import entity.Interactable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The entities of one kind sorted by the team that owns them, so that questions about one
+ * team's heroes or towns only look at what that team owns rather than at every entity in
+ * the game.
+ * <p>
+ * Each team's entities are kept in the order they came into its possession. The server and
+ * its clients go through a team's entities in that order, so it must not depend on anything
+ * but the changes they both apply. Entities are told apart by identity, since their equals
+ * and hashCode change as they move.
+ * <p>
+ * The index doesn't watch the entities. Whoever changes an owner has to tell the index.
+ */
+final class OwnerIndex<T extends Interactable> implements Serializable
+{
+    private final Map<Team, List<T>> owned = new EnumMap<>(Team.class);
+
+    void add(final T entity) {
+	members(entity.getOwner()).add(entity);
+    }
+
+    void remove(final T entity) {
+	removeFrom(members(entity.getOwner()), entity);
+    }
+
+    /** Moves the entity over to its current owner after it changed hands from the previous one. */
+    void ownerChanged(final T entity, final Team previous) {
+	removeFrom(members(previous), entity);
+	add(entity);
+    }
+
+    /** What the team owns, as a read-only view that follows later changes. */
+    List<T> ownedBy(final Team team) {
+	return Collections.unmodifiableList(members(team));
+    }
+
+    private List<T> members(final Team team) {
+	List<T> entities = owned.get(team);
+	if (entities == null) {
+	    entities = new ArrayList<>();
+	    owned.put(team, entities);
+	}
+	return entities;
+    }
+
+    private static <T> void removeFrom(final List<T> entities, final T entity) {
+	for (int index = 0; index < entities.size(); index++) {
+	    if (entities.get(index) == entity) {
+		entities.remove(index);
+		return;
+	    }
+	}
+    }
+}
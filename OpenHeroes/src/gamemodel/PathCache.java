@@ -0,0 +1,205 @@
+package gamemodel;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A least recently used cache of paths found on the MainMap, keyed by the mover's
+ * position, the destination and the team whose fog of war the search saw. A search for
+ * the cheapest of several destinations is keyed by the set of them, in any order.
+ * <p>
+ * Every entry remembers the bounding box of the cells its search expanded. A search
+ * only ever looked at those cells and their direct neighbors, so a change to a tile
+ * outside that box grown by one can't produce a cheaper path, and the entry survives.
+ * Changes that can't be pinned to a region (such as swapping the fog of war) move the
+ * version floor instead, which retires every older entry at once.
+ * <p>
+ * The map version is bumped on every change. A path is only stored if the version is
+ * still the one the search started at, so a search that raced a change is never cached.
+ */
+public final class PathCache
+{
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+    private final Map<Key, CachedPath> entries;
+    private long version = 0;
+    private long validFrom = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    PathCache(final int capacity) {
+	this.capacity = capacity;
+	this.entries = new LinkedHashMap<Key, CachedPath>(capacity, 0.75f, true)
+	{
+	    @Override protected boolean removeEldestEntry(final Map.Entry<Key, CachedPath> eldest) {
+		return size() > PathCache.this.capacity;
+	    }
+	};
+    }
+
+    /** Returns a fresh copy of the cached path, or null if there is none. */
+    LinkedList<Position> get(final Position goal, final Position start, final Team team) {
+	return get(new Key(goal, new long[] {Key.pack(start)}, team));
+    }
+
+    /** Same as get, for a search for whichever of the destinations is cheapest to reach. */
+    LinkedList<Position> get(final Position goal, final Iterable<Position> starts, final Team team) {
+	return get(new Key(goal, Key.packAll(starts), team));
+    }
+
+    private LinkedList<Position> get(final Key key) {
+	CachedPath cached = entries.get(key);
+	if (cached == null || cached.version < validFrom) {
+	    misses++;
+	    return null;
+	}
+	hits++;
+	LinkedList<Position> path = new LinkedList<>();
+	for (Position step : cached.path) {
+	    path.add(step);
+	}
+	return path;
+    }
+
+    /**
+     * Stores the result of a search that expanded the cells inside the given box. Ignored
+     * if the map changed since searchVersion was read or if the search expanded nothing.
+     */
+    void put(final Position goal, final Position start, final Team team, final List<Position> path, final long searchVersion,
+	     final int minX, final int minY, final int maxX, final int maxY)
+    {
+	put(new Key(goal, new long[] {Key.pack(start)}, team), path, searchVersion, minX, minY, maxX, maxY);
+    }
+
+    /** Same as put, for a search for whichever of the destinations is cheapest to reach. */
+    void put(final Position goal, final Iterable<Position> starts, final Team team, final List<Position> path,
+	     final long searchVersion, final int minX, final int minY, final int maxX, final int maxY)
+    {
+	put(new Key(goal, Key.packAll(starts), team), path, searchVersion, minX, minY, maxX, maxY);
+    }
+
+    private void put(final Key key, final List<Position> path, final long searchVersion, final int minX, final int minY,
+		     final int maxX, final int maxY)
+    {
+	if (searchVersion != version || minX > maxX) {
+	    return;
+	}
+	// Neighbors of expanded cells were looked at too, so the box is grown by one.
+	CachedPath cached = new CachedPath(path.toArray(new Position[path.size()]), version, minX - 1, minY - 1, maxX + 1,
+					   maxY + 1);
+	entries.put(key, cached);
+    }
+
+    /** Drops every entry whose search could have been affected by a change inside the box. */
+    void invalidate(final int minX, final int minY, final int maxX, final int maxY) {
+	version++;
+	Iterator<CachedPath> iterator = entries.values().iterator();
+	while (iterator.hasNext()) {
+	    CachedPath cached = iterator.next();
+	    if (cached.minX <= maxX && minX <= cached.maxX && cached.minY <= maxY && minY <= cached.maxY) {
+		iterator.remove();
+	    }
+	}
+    }
+
+    void invalidateAll() {
+	version++;
+	validFrom = version;
+	entries.clear();
+    }
+
+    long getVersion() {
+	return version;
+    }
+
+    public long getHits() {
+	return hits;
+    }
+
+    public long getMisses() {
+	return misses;
+    }
+
+    public int getSize() {
+	return entries.size();
+    }
+
+    public int getCapacity() {
+	return capacity;
+    }
+
+    private static final class Key
+    {
+	private final int goalX;
+	private final int goalY;
+	// The destinations packed by pack, sorted so that the order they were given in doesn't matter.
+	private final long[] starts;
+	private final Team team;
+
+	private Key(final Position goal, final long[] starts, final Team team) {
+	    this.goalX = goal.getX();
+	    this.goalY = goal.getY();
+	    this.starts = starts;
+	    this.team = team;
+	}
+
+	private static long pack(final Position pos) {
+	    return (long) pos.getX() << 32 | (pos.getY() & 0xFFFFFFFFL);
+	}
+
+	private static long[] packAll(final Iterable<Position> positions) {
+	    long[] packed = new long[PathWorkspace.MAX_NEIGHBORS + 1];
+	    int count = 0;
+	    for (Position pos : positions) {
+		if (count == packed.length) {
+		    packed = Arrays.copyOf(packed, 2 * count);
+		}
+		packed[count] = pack(pos);
+		count++;
+	    }
+	    packed = Arrays.copyOf(packed, count);
+	    Arrays.sort(packed);
+	    return packed;
+	}
+
+	@Override public boolean equals(final Object o) {
+	    if (this == o) return true;
+	    if (!(o instanceof Key)) return false;
+	    final Key key = (Key) o;
+	    return goalX == key.goalX && goalY == key.goalY && Arrays.equals(starts, key.starts) && team == key.team;
+	}
+
+	@Override public int hashCode() {
+	    int hash = goalX;
+	    hash = 31 * hash + goalY;
+	    hash = 31 * hash + Arrays.hashCode(starts);
+	    return 31 * hash + (team == null ? 0 : team.ordinal());
+	}
+    }
+
+    private static final class CachedPath
+    {
+	private final Position[] path;
+	private final long version;
+	private final int minX;
+	private final int minY;
+	private final int maxX;
+	private final int maxY;
+
+	private CachedPath(final Position[] path, final long version, final int minX, final int minY, final int maxX,
+			   final int maxY)
+	{
+	    this.path = path;
+	    this.version = version;
+	    this.minX = minX;
+	    this.minY = minY;
+	    this.maxX = maxX;
+	    this.maxY = maxY;
+	}
+    }
+}
@@ -1,20 +1,39 @@
 package gamemodel;
 
-import java.util.HashSet;
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static java.lang.Math.abs;
+
 /**
  * An abstract class for maps that provides pathfinding functionality.
  *
  * Implements A* using an admissible heuristic. Modified in that it starts from
  * the goal, this prevents almost all full-edge searches in OpenHeroes.
+ *
+ * Map cells are identified by packed indices (x * mapHeight + y) during the search,
+ * and the open set is an indexed binary heap, so looking up a cell is O(1) and
+ * expanding the most promising cell is O(log n).
+ *
+ * The search state lives in a PathWorkspace that is kept between searches. Subclasses
+ * may override the cell based hooks (isPassableCell, passCostCell, neighborCells and
+ * the cell based heuristicCostEstimate) to let the search run without creating any
+ * Position objects; by default they fall back on the Position based hooks.
+ *
+ * Maps where large areas share the same move cost can be switched to Jump Point Search
+ * through setSearchMode. No map in the game is, see SearchMode for why.
  */
-public abstract class PathMap
+public abstract class PathMap implements Serializable
 {
     private static final Logger LOGGER = Logger.getLogger(PathMap.class.getName());
+    private static final int NO_CELL = PathWorkspace.NO_CELL;
+
+    // Search scratch memory. Never serialized, it is simply rebuilt on the next search.
+    private transient PathWorkspace workspace = null;
+    private SearchMode searchMode = SearchMode.A_STAR;
 
     abstract boolean isPassable(Position pos);
 
@@ -24,6 +43,53 @@ public abstract class PathMap
 
     abstract int heuristicCostEstimate(Position start, Position goal);
 
+    abstract int getMapWidth();
+
+    abstract int getMapHeight();
+
+    boolean isPassableCell(final int cell) {
+        return isPassable(cellPosition(cell));
+    }
+
+    int passCostCell(final int cell) {
+        return passCost(cellPosition(cell));
+    }
+
+    int heuristicCostEstimate(final int cell, final int goalCell) {
+        return heuristicCostEstimate(cellPosition(cell), cellPosition(goalCell));
+    }
+
+    /**
+     * Called on the searching thread before every search. Lets a map start using search
+     * data that was prepared in the background, without it changing during a search.
+     */
+    void prepareSearch() {
+    }
+
+    /**
+     * Whether Jump Point Search may treat the cell as part of a uniform region. Such cells
+     * must be passable and cost exactly one move point, the cheapest step the heuristic
+     * assumes.
+     */
+    boolean isUniformCell(final int cell) {
+        return isPassableCell(cell) && passCostCell(cell) == 1;
+    }
+
+    /**
+     * Writes the on-map neighbors of a cell into the given buffer, which holds at least
+     * PathWorkspace.MAX_NEIGHBORS cells, and returns how many were written.
+     */
+    int neighborCells(final int cell, final int[] neighbors) {
+        int count = 0;
+        for (Position neighborPos : getNeighbors(cellPosition(cell))) {
+            if (isWithinMap(neighborPos) && count < neighbors.length) {
+                neighbors[count] = cellIndex(neighborPos);
+                count++;
+            }
+        }
+        return count;
+    }
+
 
     public LinkedList<Position> findPath(final Position goal, final Position start)
     {
@@ -33,159 +99,377 @@ public abstract class PathMap
          * when a player clicks a tile that they have yet to discover the path to.
          */
 
-        if (!isPassable(start)) {
+        if (!isWithinMap(start) || !isWithinMap(goal) || !isPassable(start)) {
             // We can never go to an impassable tile.
             return new LinkedList<>();
         }
         // We set our own position as the goal.
 
-        Set<Node> closedSet = new HashSet<>();
-        Set<Node> openSet = new HashSet<>();
-        // The first node we check is the final destination node.
-        Node startNode = new Node(start);
-        // The g-score represents the cost of the shortest path we've found to this node.
-        // In this case, the cost of stepping onto the final node of our path.
-        startNode.setgScore(passCost(start));
-        // The f-score represents an estimate of the total cost to move through this node towards the goal.
-        // Roughly: KnownShortestCostToReachThisNode + HeuristicFunctionGuessAtTheRemainder
-        startNode.setfScore(heuristicCostEstimate(start, goal));
-        // Add the start node to our candidate nodes.
-        openSet.add(startNode);
+        prepareSearch();
+        PathWorkspace search = newSearch();
+        int goalCell = cellIndex(goal);
+        // The first cell we check is the final destination.
+        seed(search, cellIndex(start), goalCell);
+        return search(search, goalCell);
+    }
+
+    /**
+     * Finds the cheapest path from the goal to whichever of the given destinations is
+     * cheapest to reach, in a single search.
+     *
+     * Since the search runs backwards, every acceptable destination is queued as a
+     * starting cell up front and the search stops as soon as it reaches the goal. This
+     * costs about as much as a single findPath call, instead of one call per destination.
+     * Destinations that are off the map or impassable are ignored.
+     */
+    public LinkedList<Position> findPathToAny(final Position goal, final Iterable<Position> starts)
+    {
+        if (!isWithinMap(goal)) {
+            return new LinkedList<>();
+        }
+
+        prepareSearch();
+        PathWorkspace search = newSearch();
+        int goalCell = cellIndex(goal);
+        for (Position start : starts) {
+            if (isWithinMap(start) && isPassable(start)) {
+                seed(search, cellIndex(start), goalCell);
+            }
+        }
+        return search(search, goalCell);
+    }
+
+    private void seed(final PathWorkspace search, final int startCell, final int goalCell) {
+        if (search.isSeen(startCell)) {
+            return;
+        }
+        // The g-score represents the cost of the shortest path we've found to a cell.
+        // In this case, the cost of stepping onto the final cell of our path.
+        search.record(startCell, passCostCell(startCell), NO_CELL);
+        // The f-score represents an estimate of the total cost to move through a cell towards the goal.
+        // Roughly: KnownShortestCostToReachThisCell + HeuristicFunctionGuessAtTheRemainder
+        search.getOpenSet().insertOrDecrease(startCell, search.getGScore(startCell) + heuristicCostEstimate(startCell, goalCell));
+    }
+
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+
+    public void setSearchMode(final SearchMode searchMode) {
+        this.searchMode = searchMode;
+    }
+
+    private LinkedList<Position> search(final PathWorkspace search, final int goalCell) {
+        if (searchMode == SearchMode.JUMP_POINT) {
+            return jumpPointSearch(search, goalCell);
+        }
+        IndexedMinHeap openSet = search.getOpenSet();
+        int[] neighbors = search.getNeighborBuffer();
 
         while (!openSet.isEmpty()) {
-            // Retrieve the most promising node we know of.
-            Node currentNode = lowestFScoreNode(openSet);
+            // Retrieve the most promising cell we know of.
+            int currentCell = openSet.poll();
 
-            if (currentNode.getPosition().is(goal)) {
-                /* If the node we're working on is the goal, we're done!
-                 * Since each node remembers the node it is reached most cheaply through, we simple
-                 * recurse through the chain of nodes to retrieve the full path.
+            if (currentCell == goalCell) {
+                /* If the cell we're working on is the goal, we're done!
+                 * Since each cell remembers the cell it is reached most cheaply through, we simply
+                 * walk the chain of cells to retrieve the full path.
                  */
-                return reconstructPath(currentNode);
+                return reconstructPath(search, currentCell);
             }
 
-            // If we're not at the goal, mark this node as checked
-            openSet.remove(currentNode);
-            closedSet.add(currentNode);
+            // If we're not at the goal, mark this cell as checked.
+            search.close(currentCell);
+            int currentGScore = search.getGScore(currentCell);
 
-            // Find all nodes next to our current node and add them unless we've checked them already.
-            // There's no point re-checking nodes since we're working from the most promising nodes first.
-            for (Node neighbor : neighbors(currentNode, goal)) {
-                if (hasNode(closedSet, neighbor)) {
+            // Find all cells next to our current cell and queue them unless we've checked them already.
+            // There's no point re-checking cells since we're working from the most promising cells first.
+            int neighborCount = neighborCells(currentCell, neighbors);
+            for (int i = 0; i < neighborCount; i++) {
+                int neighborCell = neighbors[i];
+                if (search.isClosed(neighborCell)) {
+                    continue;
+                }
+                // As a consequence of starting from the end destination, we must
+                // allow the mover as a neighbor even though they're impassable.
+                if (neighborCell != goalCell && !isPassableCell(neighborCell)) {
                     continue;
                 }
 
-                int nextTilePassCost = passCost(neighbor.getPosition());
-
-                // If the cost of reaching a neighbor node through this node is
+                // If the cost of reaching a neighbor through this cell is
                 // lower than any cost to reach it we've recorded previously,
-                // update its path chain with our node instead.
-                int tentativeGScore = currentNode.getgScore() + nextTilePassCost;
-                if (tentativeGScore < neighbor.getgScore()) {
-                    neighbor.setCameFrom(currentNode);
-                    neighbor.setgScore(tentativeGScore);
-                    neighbor.setfScore(tentativeGScore + heuristicCostEstimate(neighbor.getPosition(), goal));
+                // update its path chain with our cell instead.
+                int tentativeGScore = currentGScore + passCostCell(neighborCell);
+                if (tentativeGScore < search.getGScore(neighborCell)) {
+                    search.record(neighborCell, tentativeGScore, currentCell);
+                    openSet.insertOrDecrease(neighborCell,
+                                             tentativeGScore + heuristicCostEstimate(neighborCell, goalCell));
                 }
-                openSet.add(neighbor);
             }
         }
         LOGGER.log(Level.FINE, "Failed to find a path.");
         return new LinkedList<>();
     }
 
-    private static boolean hasNode(Set<Node> set, Node node) {
+    /*
+     * Jump Point Search. Inside a region where every cell costs the same, most cheapest
+     * paths have many equally cheap twins that only differ in the order of their steps.
+     * Rather than queueing every cell of every twin, the search keeps moving in a straight
+     * or diagonal line until it reaches a cell where the path could have to turn: a cell
+     * next to an obstacle (a forced neighbor), next to a cell with a different cost, or
+     * the goal. Only those jump points are queued. Cells next to costlier terrain, and the
+     * first cells of the search, are expanded like plain A* would.
+     *
+     * Jumps are straight or diagonal lines, so the path between two jump points is
+     * filled back in when the path is reconstructed.
+     */
+    private LinkedList<Position> jumpPointSearch(final PathWorkspace search, final int goalCell) {
+        IndexedMinHeap openSet = search.getOpenSet();
+        int[] neighbors = search.getNeighborBuffer();
+        int[] directions = new int[2 * PathWorkspace.MAX_NEIGHBORS];
+        int height = getMapHeight();
 
-        // Check if a node is in a set
-        for (Node setMember : set) {
-            if (setMember.is(node)) {
-                return true;
+        while (!openSet.isEmpty()) {
+            int currentCell = openSet.poll();
+            if (currentCell == goalCell) {
+                return reconstructPath(search, currentCell);
+            }
+            search.close(currentCell);
+            int currentGScore = search.getGScore(currentCell);
+            int x = currentCell / height;
+            int y = currentCell % height;
+            int parentCell = search.getCameFrom(currentCell);
+
+            if (parentCell == NO_CELL || !isUniformArea(x, y)) {
+                int neighborCount = neighborCells(currentCell, neighbors);
+                for (int i = 0; i < neighborCount; i++) {
+                    int neighborCell = neighbors[i];
+                    if (neighborCell == goalCell || isPassableCell(neighborCell)) {
+                        relax(search, currentCell, currentGScore + passCostCell(neighborCell), neighborCell, goalCell);
+                    }
+                }
+                continue;
+            }
+
+            int dx = Integer.signum(x - parentCell / height);
+            int dy = Integer.signum(y - parentCell % height);
+            int directionCount = prunedDirections(x, y, dx, dy, goalCell, directions);
+            for (int i = 0; i < directionCount; i++) {
+                int jumpCell = jump(search, x, y, directions[2 * i], directions[2 * i + 1], goalCell);
+                if (jumpCell == NO_CELL) {
+                    continue;
+                }
+                // Every cell jumped over costs one, only the jump point itself may cost more.
+                int steps = Integer.max(abs(jumpCell / height - x), abs(jumpCell % height - y));
+                relax(search, currentCell, currentGScore + steps - 1 + passCostCell(jumpCell), jumpCell, goalCell);
             }
         }
-        return false;
+        LOGGER.log(Level.FINE, "Failed to find a path.");
+        return new LinkedList<>();
     }
 
-    private static LinkedList<Position> reconstructPath(final Node currentNode) {
-
-        // Rebuild the entire path from the node chain
-        LinkedList<Position> fullPath = new LinkedList<>();
-        for (Node current = currentNode; current != null; current = current.getCameFrom()) {
-            fullPath.add(current.position);
+    private void relax(final PathWorkspace search, final int fromCell, final int tentativeGScore, final int cell,
+                       final int goalCell)
+    {
+        if (search.isClosed(cell) || tentativeGScore >= search.getGScore(cell)) {
+            return;
         }
-        fullPath.removeFirst();
-        return fullPath;
+        search.record(cell, tentativeGScore, fromCell);
+        search.getOpenSet().insertOrDecrease(cell, tentativeGScore + heuristicCostEstimate(cell, goalCell));
     }
 
-    private Set<Node> neighbors(Node node, Position goal) {
-        //Ask the map
-        Set<Node> neighbors = new HashSet<>();
-        for (Position neighborPos : getNeighbors(node.position)) {
-            // As a consequence if starting from the end destination, we must
-            // allow the mover as a neighbor even though they're impassable.
-            // The check is relatively cheap since it only is made if we can't
-            // pass through something.
-            if (isPassable(neighborPos) || neighborPos.is(goal)) {
-                neighbors.add(new Node(neighborPos));
+    /**
+     * Writes the directions worth continuing in after arriving at (x, y) moving in the
+     * direction (dx, dy), as pairs of offsets, and returns how many there are: the natural
+     * directions plus any forced by an obstacle next to the cell.
+     */
+    private int prunedDirections(final int x, final int y, final int dx, final int dy, final int goalCell,
+                                 final int[] directions)
+    {
+        int count = 0;
+        if (dx != 0 && dy != 0) {
+            count = addDirection(directions, count, dx, 0);
+            count = addDirection(directions, count, 0, dy);
+            count = addDirection(directions, count, dx, dy);
+            if (isBlocked(x - dx, y, goalCell)) {
+                count = addDirection(directions, count, -dx, dy);
+            }
+            if (isBlocked(x, y - dy, goalCell)) {
+                count = addDirection(directions, count, dx, -dy);
+            }
+        } else if (dx != 0) {
+            count = addDirection(directions, count, dx, 0);
+            if (isBlocked(x, y + 1, goalCell)) {
+                count = addDirection(directions, count, dx, 1);
+            }
+            if (isBlocked(x, y - 1, goalCell)) {
+                count = addDirection(directions, count, dx, -1);
+            }
+        } else {
+            count = addDirection(directions, count, 0, dy);
+            if (isBlocked(x + 1, y, goalCell)) {
+                count = addDirection(directions, count, 1, dy);
+            }
+            if (isBlocked(x - 1, y, goalCell)) {
+                count = addDirection(directions, count, -1, dy);
             }
         }
-        return neighbors;
+        return count;
+    }
+
+    private static int addDirection(final int[] directions, final int count, final int dx, final int dy) {
+        directions[2 * count] = dx;
+        directions[2 * count + 1] = dy;
+        return count + 1;
     }
 
-    private static Node lowestFScoreNode(Set<Node> openSet) {
-        int lowestFScore = Integer.MAX_VALUE;
-        Node cheapestNode = null;
-        for (Node node : openSet) {
-            if (node.getfScore() < lowestFScore) {
-                cheapestNode = node;
-                lowestFScore = node.getfScore();
+    /**
+     * Moves from (x, y) in the direction (dx, dy) until reaching a jump point, which is
+     * returned, or a dead end, in which case NO_CELL is returned.
+     */
+    private int jump(final PathWorkspace search, int x, int y, final int dx, final int dy, final int goalCell) {
+        int height = getMapHeight();
+        while (true) {
+            x += dx;
+            y += dy;
+            // The path found depends on these cells too, so the path cache has to know about them.
+            search.markExamined(x, y);
+            if (!isWithinMap(x, y)) {
+                return NO_CELL;
+            }
+            int cell = x * height + y;
+            if (cell == goalCell) {
+                return cell;
+            }
+            if (!isPassableCell(cell)) {
+                return NO_CELL;
+            }
+            // Every jump starts from a cell in a uniform area, so only the cells that came
+            // into reach with this step need to be checked.
+            if (!isUniformLeadingEdge(x, y, dx, dy) || hasForcedNeighbor(x, y, dx, dy, goalCell)) {
+                return cell;
+            }
+            if (dx != 0 && dy != 0 && (jump(search, x, y, dx, 0, goalCell) != NO_CELL ||
+                                       jump(search, x, y, 0, dy, goalCell) != NO_CELL)) {
+                return cell;
             }
         }
-        return cheapestNode;
     }
 
-    private static final class Node
-    {
-        private Position position;
-        private Node cameFrom = null;
-
-        // A node has a terrible initial cost, this means we will always assign a new value upon discovery.
-        private int gScore = Integer.MAX_VALUE;
-        private int fScore = Integer.MAX_VALUE;
-
-        private Node(final Position position) {
-            this.position = position;
+    private boolean hasForcedNeighbor(final int x, final int y, final int dx, final int dy, final int goalCell) {
+        if (dx != 0 && dy != 0) {
+            return (isBlocked(x - dx, y, goalCell) && isOpen(x - dx, y + dy, goalCell)) ||
+                   (isBlocked(x, y - dy, goalCell) && isOpen(x + dx, y - dy, goalCell));
+        } else if (dx != 0) {
+            return (isBlocked(x, y + 1, goalCell) && isOpen(x + dx, y + 1, goalCell)) ||
+                   (isBlocked(x, y - 1, goalCell) && isOpen(x + dx, y - 1, goalCell));
+        } else {
+            return (isBlocked(x + 1, y, goalCell) && isOpen(x + 1, y + dy, goalCell)) ||
+                   (isBlocked(x - 1, y, goalCell) && isOpen(x - 1, y + dy, goalCell));
         }
+    }
 
-        private void setCameFrom(final Node cameFrom) {
-            this.cameFrom = cameFrom;
+    /** True if neither the cell nor any passable neighbor costs more than a uniform cell. */
+    private boolean isUniformArea(final int x, final int y) {
+        for (int nx = x - 1; nx <= x + 1; nx++) {
+            for (int ny = y - 1; ny <= y + 1; ny++) {
+                if (!isUniformOrBlocked(nx, ny)) {
+                    return false;
+                }
+            }
         }
+        return true;
+    }
 
-        public void setgScore(final int gScore) {
-            this.gScore = gScore;
+    /**
+     * Same as isUniformArea, but only checks the neighbors of (x, y) that weren't
+     * neighbors of the cell it was entered from in the direction (dx, dy).
+     */
+    private boolean isUniformLeadingEdge(final int x, final int y, final int dx, final int dy) {
+        for (int offset = -1; offset <= 1; offset++) {
+            if ((dx != 0 && !isUniformOrBlocked(x + dx, y + offset)) || (dy != 0 && !isUniformOrBlocked(x + offset, y + dy))) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        public void setfScore(final int fScore) {
-            this.fScore = fScore;
+    private boolean isUniformOrBlocked(final int x, final int y) {
+        if (!isWithinMap(x, y)) {
+            return true;
         }
+        int cell = x * getMapHeight() + y;
+        return !isPassableCell(cell) || isUniformCell(cell);
+    }
 
-        public Position getPosition() {
-            return position;
+    // The goal counts as an obstacle here, paths never continue past it.
+    private boolean isBlocked(final int x, final int y, final int goalCell) {
+        if (!isWithinMap(x, y)) {
+            return true;
         }
+        int cell = x * getMapHeight() + y;
+        return cell == goalCell || !isPassableCell(cell);
+    }
 
-        public Node getCameFrom() {
-            return cameFrom;
+    private boolean isOpen(final int x, final int y, final int goalCell) {
+        if (!isWithinMap(x, y)) {
+            return false;
         }
+        int cell = x * getMapHeight() + y;
+        return cell == goalCell || isPassableCell(cell);
+    }
 
-        public int getgScore() {
-            return gScore;
+    /** Hands out this map's workspace, cleared for a new search. */
+    PathWorkspace newSearch() {
+        int cellCount = getMapWidth() * getMapHeight();
+        if (workspace == null) {
+            workspace = new PathWorkspace(cellCount);
         }
+        workspace.reset(cellCount, getMapHeight());
+        return workspace;
+    }
 
-        public int getfScore() {
-            return fScore;
-        }
+    /** The workspace of the most recent search, still holding its results, or null if none has run. */
+    PathWorkspace lastSearch() {
+        return workspace;
+    }
 
-        // Nodes are the same if they have the same position.
-        public boolean is(Node node) {
-            return this.position.is(node.position);
+    private LinkedList<Position> reconstructPath(final PathWorkspace search, final int goalCell) {
+
+        // Rebuild the entire path from the cell chain, leaving out the cell we're standing on.
+        // Jump Point Search chains cells that are a straight or diagonal line apart, so the
+        // cells in between are filled in as well.
+        LinkedList<Position> fullPath = new LinkedList<>();
+        int height = getMapHeight();
+        int cell = goalCell;
+        for (int parent = search.getCameFrom(cell); parent != NO_CELL; parent = search.getCameFrom(cell)) {
+            int dx = Integer.signum(parent / height - cell / height);
+            int dy = Integer.signum(parent % height - cell % height);
+            int x = cell / height;
+            int y = cell % height;
+            do {
+                x += dx;
+                y += dy;
+                fullPath.add(Position.of(x, y));
+            } while (x * height + y != parent);
+            cell = parent;
         }
+        return fullPath;
+    }
+
+    protected int cellIndex(final Position pos) {
+        return pos.getX() * getMapHeight() + pos.getY();
+    }
+
+    protected Position cellPosition(final int cell) {
+        return Position.of(cell / getMapHeight(), cell % getMapHeight());
+    }
+
+    protected boolean isWithinMap(final Position pos) {
+        return isWithinMap(pos.getX(), pos.getY());
+    }
+
+    protected boolean isWithinMap(final int x, final int y) {
+        return x >= 0 && x < getMapWidth() && y >= 0 && y < getMapHeight();
     }
 }
@@ -0,0 +1,30 @@
+package gamemodel;
+
+/**
+ * A single search for a PathService: the cheapest path from a mover's position to a
+ * destination, as seen by the given team. A null team sees the whole map.
+ */
+public final class PathQuery
+{
+    private final Position moverPosition;
+    private final Position destination;
+    private final Team team;
+
+    public PathQuery(final Position moverPosition, final Position destination, final Team team) {
+	this.moverPosition = moverPosition;
+	this.destination = destination;
+	this.team = team;
+    }
+
+    public Position getMoverPosition() {
+	return moverPosition;
+    }
+
+    public Position getDestination() {
+	return destination;
+    }
+
+    public Team getTeam() {
+	return team;
+    }
+}
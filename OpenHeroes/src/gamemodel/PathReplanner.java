@@ -0,0 +1,266 @@
+package gamemodel;
+
+import entity.Mover;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * An incremental search for the cheapest path from a mover to a fixed destination, using
+ * D* Lite. The search runs backwards from the destination, so every explored tile knows
+ * the cost of the rest of the path from there. When the mover walks along the path or
+ * tiles change (a hero steps into the way, the fog lifts), only the tiles whose remaining
+ * cost is actually affected are searched again, instead of starting over from scratch.
+ * <p>
+ * The replanner finds out what changed through the change log of its MoverPathMap, so
+ * replan should simply be called whenever the map notifies its listeners. If more changes
+ * were made than the log remembers, the search starts over.
+ * <p>
+ * Paths follow the same rules as PathMap.findPath: they start with the first step, end
+ * at the destination, and the cost of a path is the sum of the costs of its tiles.
+ * <p>
+ * A replanner holds a few arrays the size of the map, so it is meant to be kept for the
+ * selected hero only.
+ */
+public final class PathReplanner
+{
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    private final MoverPathMap map;
+    private final Mover mover;
+    private final int[] destinationCells;
+    private final int[] gScores;
+    private final int[] rhsScores;
+    private final IndexedMinHeap openSet;
+    private final int[] neighbors = new int[PathWorkspace.MAX_NEIGHBORS];
+    // cheapestStep is called while the neighbors of another cell are being walked, so it needs its own buffer.
+    private final int[] stepNeighbors = new int[PathWorkspace.MAX_NEIGHBORS];
+    private final int[] changedBox = new int[4];
+    private int startCell;
+    private int lastStartCell;
+    // Added to every key so that keys queued before the mover moved stay valid.
+    private int keyModifier = 0;
+    private long syncedChanges;
+
+    PathReplanner(final MoverPathMap map, final Mover mover, final Iterable<Position> destinations) {
+	this.map = map;
+	this.mover = mover;
+	int cellCount = map.getMapWidth() * map.getMapHeight();
+	this.gScores = new int[cellCount];
+	this.rhsScores = new int[cellCount];
+	this.openSet = new IndexedMinHeap(cellCount);
+	int count = 0;
+	int[] cells = new int[PathWorkspace.MAX_NEIGHBORS + 1];
+	for (Position destination : destinations) {
+	    if (map.isWithinMap(destination)) {
+		if (count == cells.length) {
+		    cells = Arrays.copyOf(cells, 2 * count);
+		}
+		cells[count] = cell(destination);
+		count++;
+	    }
+	}
+	this.destinationCells = Arrays.copyOf(cells, count);
+	restart();
+    }
+
+    /**
+     * Brings the search up to date with the mover's position and any changes to the map,
+     * and returns the cheapest path from the mover to the destination. The path is empty
+     * if the destination can't be reached.
+     */
+    public LinkedList<Position> replan() {
+	map.prepareSearch();
+	long changes = map.getChangeCount();
+	if (changes - syncedChanges > MoverPathMap.CHANGE_LOG_LENGTH) {
+	    restart();
+	} else {
+	    moveStart();
+	    for (long change = syncedChanges; change < changes; change++) {
+		map.readChange(change, changedBox);
+		if (coversMap(changedBox)) {
+		    // Repairing every tile costs more than starting over, and the heuristic
+		    // (which the queued keys are based on) may have changed along with the map.
+		    restart();
+		    break;
+		}
+		repair(changedBox[0], changedBox[1], changedBox[2], changedBox[3]);
+	    }
+	    syncedChanges = changes;
+	}
+	computeShortestPath();
+	return path();
+    }
+
+    private boolean coversMap(final int[] box) {
+	return box[0] <= 0 && box[1] <= 0 && box[2] >= map.getMapWidth() - 1 && box[3] >= map.getMapHeight() - 1;
+    }
+
+    private void restart() {
+	Arrays.fill(gScores, INFINITE);
+	Arrays.fill(rhsScores, INFINITE);
+	openSet.clear();
+	keyModifier = 0;
+	startCell = cell(mover.getPosition());
+	lastStartCell = startCell;
+	syncedChanges = map.getChangeCount();
+	for (int destinationCell : destinationCells) {
+	    updateVertex(destinationCell);
+	}
+    }
+
+    private void moveStart() {
+	int currentCell = cell(mover.getPosition());
+	if (currentCell != startCell) {
+	    startCell = currentCell;
+	    keyModifier += map.heuristicCostEstimate(lastStartCell, startCell);
+	    lastStartCell = startCell;
+	}
+    }
+
+    /*
+     * A change to a tile changes the cost of stepping onto it, which every neighbor's
+     * remaining cost may depend on, so the neighbors are updated along with the tile.
+     */
+    private void repair(final int minX, final int minY, final int maxX, final int maxY) {
+	int mapWidth = map.getMapWidth();
+	int mapHeight = map.getMapHeight();
+	for (int x = Integer.max(minX - 1, 0); x <= Integer.min(maxX + 1, mapWidth - 1); x++) {
+	    for (int y = Integer.max(minY - 1, 0); y <= Integer.min(maxY + 1, mapHeight - 1); y++) {
+		updateVertex(x * mapHeight + y);
+	    }
+	}
+    }
+
+    private void computeShortestPath() {
+	while (!openSet.isEmpty() &&
+	       (openSet.peekPriority() < key(startCell) || rhsScores[startCell] > gScores[startCell])) {
+	    int cell = openSet.peek();
+	    long oldKey = openSet.peekPriority();
+	    long newKey = key(cell);
+	    if (oldKey < newKey) {
+		openSet.update(cell, newKey);
+	    } else if (gScores[cell] > rhsScores[cell]) {
+		gScores[cell] = rhsScores[cell];
+		openSet.remove(cell);
+		if (cell != startCell && map.isPassableCell(cell)) {
+		    int costThroughCell = map.passCostCell(cell) + gScores[cell];
+		    int neighborCount = map.neighborCells(cell, neighbors);
+		    for (int i = 0; i < neighborCount; i++) {
+			int neighbor = neighbors[i];
+			if (costThroughCell < rhsScores[neighbor] && !isDestination(neighbor) &&
+			    (neighbor == startCell || map.isPassableCell(neighbor))) {
+			    rhsScores[neighbor] = costThroughCell;
+			    queue(neighbor);
+			}
+		    }
+		}
+	    } else {
+		gScores[cell] = INFINITE;
+		updateVertex(cell);
+		int neighborCount = map.neighborCells(cell, neighbors);
+		for (int i = 0; i < neighborCount; i++) {
+		    updateVertex(neighbors[i]);
+		}
+	    }
+	}
+    }
+
+    /*
+     * Recomputes the cheapest remaining cost of the cell from its neighbors. Only the
+     * mover's own tile may be impassable and still lead somewhere, since the mover stands on it.
+     */
+    private void updateVertex(final int cell) {
+	if (isDestination(cell)) {
+	    rhsScores[cell] = map.isPassableCell(cell) || cell == startCell ? 0 : INFINITE;
+	} else if (cell != startCell && !map.isPassableCell(cell)) {
+	    rhsScores[cell] = INFINITE;
+	} else {
+	    rhsScores[cell] = cheapestStep(cell);
+	}
+	queue(cell);
+    }
+
+    private void queue(final int cell) {
+	if (gScores[cell] != rhsScores[cell]) {
+	    openSet.update(cell, key(cell));
+	} else {
+	    openSet.remove(cell);
+	}
+    }
+
+    /** The cheapest cost of stepping onto a neighbor and walking on from there. */
+    private int cheapestStep(final int cell) {
+	int cheapest = INFINITE;
+	int neighborCount = map.neighborCells(cell, stepNeighbors);
+	for (int i = 0; i < neighborCount; i++) {
+	    int neighbor = stepNeighbors[i];
+	    if (gScores[neighbor] == INFINITE || neighbor == startCell || !map.isPassableCell(neighbor)) {
+		continue;
+	    }
+	    cheapest = Integer.min(cheapest, map.passCostCell(neighbor) + gScores[neighbor]);
+	}
+	return cheapest;
+    }
+
+    /*
+     * The D* Lite key (min(g, rhs) + h + keyModifier, min(g, rhs)) packed into one long, so
+     * that comparing packed keys compares the first parts and breaks ties on the second.
+     */
+    private long key(final int cell) {
+	int cost = Integer.min(gScores[cell], rhsScores[cell]);
+	if (cost == INFINITE) {
+	    return Long.MAX_VALUE;
+	}
+	long estimate = (long) cost + map.heuristicCostEstimate(startCell, cell) + keyModifier;
+	return estimate << 32 | cost;
+    }
+
+    private LinkedList<Position> path() {
+	LinkedList<Position> path = new LinkedList<>();
+	if (rhsScores[startCell] == INFINITE) {
+	    return path;
+	}
+	int cell = startCell;
+	int cellCount = gScores.length;
+	while (!isDestination(cell) && path.size() < cellCount) {
+	    int next = PathWorkspace.NO_CELL;
+	    int cheapest = INFINITE;
+	    int neighborCount = map.neighborCells(cell, neighbors);
+	    for (int i = 0; i < neighborCount; i++) {
+		int neighbor = neighbors[i];
+		if (gScores[neighbor] == INFINITE || neighbor == startCell || !map.isPassableCell(neighbor)) {
+		    continue;
+		}
+		int cost = map.passCostCell(neighbor) + gScores[neighbor];
+		if (cost < cheapest) {
+		    cheapest = cost;
+		    next = neighbor;
+		}
+	    }
+	    if (next == PathWorkspace.NO_CELL) {
+		return new LinkedList<>();
+	    }
+	    path.add(position(next));
+	    cell = next;
+	}
+	return path;
+    }
+
+    private boolean isDestination(final int cell) {
+	for (int destinationCell : destinationCells) {
+	    if (destinationCell == cell) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    private int cell(final Position pos) {
+	return pos.getX() * map.getMapHeight() + pos.getY();
+    }
+
+    private Position position(final int cell) {
+	return Position.of(cell / map.getMapHeight(), cell % map.getMapHeight());
+    }
+}
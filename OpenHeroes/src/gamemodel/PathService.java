@@ -0,0 +1,81 @@
+package gamemodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Answers batches of path queries concurrently, for instance every hero of every AI team
+ * at once, or the server checking every submitted path.
+ * <p>
+ * Queries run against a MapSnapshot, never against the live MainMap, so the game can
+ * keep changing while a batch is solved. The batch is split in halves on the fork-join
+ * pool until the pieces are small enough to be searched one query after another; every
+ * thread searches with its own workspace and nothing else is shared but the snapshot.
+ * <p>
+ * Nothing in the game batches its searches through the service yet. PathServiceBenchmark
+ * measures what it gains over searching one query after another, for any pool size.
+ */
+public final class PathService
+{
+    /** Batches are split until a piece has at most this many queries. */
+    private static final int QUERIES_PER_TASK = 4;
+
+    private final ForkJoinPool pool;
+
+    public PathService(final ForkJoinPool pool) {
+	this.pool = pool;
+    }
+
+    public PathService() {
+	this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the path for every query, in the same order as the queries. The paths follow
+     * the rules of PathMap.findPath: they leave out the mover's tile, end at the
+     * destination, and are empty if the destination can't be reached.
+     */
+    public List<LinkedList<Position>> findPaths(final MapSnapshot snapshot, final List<PathQuery> queries) {
+	List<LinkedList<Position>> paths = new ArrayList<>(Collections.nCopies(queries.size(), null));
+	pool.invoke(new QueryBatch(snapshot, queries, paths, 0, queries.size()));
+	return paths;
+    }
+
+    private static final class QueryBatch extends RecursiveAction
+    {
+	private final MapSnapshot snapshot;
+	private final List<PathQuery> queries;
+	// Every task writes its own range of slots and the list is never resized, so tasks never interfere.
+	private final List<LinkedList<Position>> paths;
+	private final int from;
+	private final int to;
+
+	private QueryBatch(final MapSnapshot snapshot, final List<PathQuery> queries, final List<LinkedList<Position>> paths,
+			   final int from, final int to)
+	{
+	    this.snapshot = snapshot;
+	    this.queries = queries;
+	    this.paths = paths;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override protected void compute() {
+	    if (to - from <= QUERIES_PER_TASK) {
+		for (int index = from; index < to; index++) {
+		    PathQuery query = queries.get(index);
+		    PathMap view = snapshot.viewFor(query.getTeam());
+		    paths.set(index, view.findPath(query.getMoverPosition(), query.getDestination()));
+		}
+		return;
+	    }
+	    int middle = (from + to) >>> 1;
+	    invokeAll(new QueryBatch(snapshot, queries, paths, from, middle),
+		      new QueryBatch(snapshot, queries, paths, middle, to));
+	}
+    }
+}
@@ -0,0 +1,98 @@
+package gamemodel;
+
+import gamemodel.GameModel.MainMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures the throughput of PathService against searching the same queries one after
+ * another on the calling thread, on seeded random maps and for every pool size asked for.
+ * Both search the same MapSnapshot, and the paths of every pool are checked against the
+ * serial ones.
+ * <p>
+ * A pool larger than the machine has cores can't show a speedup, so the number of cores
+ * is printed first; numbers meant for comparison should come from a machine with at
+ * least as many cores as the largest pool.
+ * <p>
+ * Arguments, all optional: the pool sizes separated by commas, the random seed, the
+ * number of queries per map and the number of timed rounds, of which the fastest counts.
+ */
+final class PathServiceBenchmark
+{
+    private PathServiceBenchmark() {}
+
+    public static void main(String[] args) {
+	String poolSizes = args.length > 0 ? args[0] : "1,2,4,8";
+	long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+	int queryCount = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+	int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+	Random random = new Random(seed);
+	System.out.printf(Locale.ROOT, "%d cores, seed %d, %d queries per map, best of %d rounds%n",
+			  Runtime.getRuntime().availableProcessors(), seed, queryCount, rounds);
+	System.out.printf(Locale.ROOT, "%-24s %-8s %10s %12s %8s%n", "map", "pool", "ms", "queries/s", "speedup");
+	run("generated 256x256", BenchmarkMaps.randomized(random, 256, 256), random, poolSizes, queryCount, rounds);
+	run("sea lakes 1024x1024", BenchmarkMaps.blobs(random, 1024, 1024, 0.2, TerrainType.SEA), random, poolSizes,
+	    queryCount, rounds);
+    }
+
+    private static void run(final String name, final MainMap map, final Random random, final String poolSizes,
+			    final int queryCount, final int rounds)
+    {
+	MapSnapshot snapshot = new MapSnapshot(map, Collections.emptyMap());
+	List<PathQuery> queries = new ArrayList<>();
+	for (Position[] query : BenchmarkMaps.queries(random, map, queryCount)) {
+	    queries.add(new PathQuery(query[0], query[1], null));
+	}
+
+	List<LinkedList<Position>> serialPaths = searchSerially(snapshot, queries);
+	long serialNanos = Long.MAX_VALUE;
+	for (int round = 0; round < rounds; round++) {
+	    long start = System.nanoTime();
+	    searchSerially(snapshot, queries);
+	    serialNanos = Long.min(serialNanos, System.nanoTime() - start);
+	}
+	report(name, "serial", serialNanos, serialNanos, queries.size());
+
+	for (String poolSize : poolSizes.split(",")) {
+	    ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(poolSize.trim()));
+	    try {
+		PathService service = new PathService(pool);
+		if (!service.findPaths(snapshot, queries).equals(serialPaths)) {
+		    System.out.printf(Locale.ROOT, "%-24s %-8s paths differ from the serial ones%n", name, poolSize);
+		}
+		long nanos = Long.MAX_VALUE;
+		for (int round = 0; round < rounds; round++) {
+		    long start = System.nanoTime();
+		    service.findPaths(snapshot, queries);
+		    nanos = Long.min(nanos, System.nanoTime() - start);
+		}
+		report(name, poolSize, nanos, serialNanos, queries.size());
+	    } finally {
+		pool.shutdown();
+	    }
+	}
+    }
+
+    private static List<LinkedList<Position>> searchSerially(final MapSnapshot snapshot, final List<PathQuery> queries) {
+	List<LinkedList<Position>> paths = new ArrayList<>(queries.size());
+	for (PathQuery query : queries) {
+	    PathMap view = snapshot.viewFor(query.getTeam());
+	    paths.add(view.findPath(query.getMoverPosition(), query.getDestination()));
+	}
+	return paths;
+    }
+
+    private static void report(final String name, final String pool, final long nanos, final long serialNanos,
+			       final int queryCount)
+    {
+	System.out.printf(Locale.ROOT, "%-24s %-8s %10.1f %12.0f %7.2fx%n", name, pool, nanos / 1.0e6,
+			  queryCount / (nanos / 1.0e9), (double) serialNanos / nanos);
+    }
+}
@@ -0,0 +1,138 @@
+package gamemodel;
+
+/**
+ * Reusable scratch memory for a PathMap search.
+ * <p>
+ * Search state is kept in flat primitive arrays indexed by packed cell indices. Instead
+ * of clearing the arrays between searches, every search is given a new generation number
+ * and a cell's g-score, parent and closed flag only count if they were stamped during the
+ * current generation. Starting a new search is therefore O(1), and a search in steady state
+ * allocates nothing beyond the path it returns.
+ * <p>
+ * The workspace also keeps the bounding box of the cells examined during the current
+ * search, which tells the PathCache which part of the map a result depends on.
+ * <p>
+ * A workspace belongs to a single searching thread at a time.
+ */
+final class PathWorkspace
+{
+    /** The most neighbors a cell can report through PathMap.neighborCells. */
+    static final int MAX_NEIGHBORS = 8;
+    static final int NO_CELL = -1;
+
+    private int[] gScores;
+    private int[] cameFrom;
+    private int[] seenGeneration;
+    private int[] closedGeneration;
+    private IndexedMinHeap openSet;
+    private final int[] neighborBuffer = new int[MAX_NEIGHBORS];
+    private int generation = 0;
+    private int mapHeight = 1;
+    private int closedMinX;
+    private int closedMinY;
+    private int closedMaxX;
+    private int closedMaxY;
+    private int expansions;
+
+    PathWorkspace(final int cellCount) {
+	allocate(cellCount);
+    }
+
+    private void allocate(final int cellCount) {
+	gScores = new int[cellCount];
+	cameFrom = new int[cellCount];
+	seenGeneration = new int[cellCount];
+	closedGeneration = new int[cellCount];
+	openSet = new IndexedMinHeap(cellCount);
+	generation = 0;
+    }
+
+    /** Forgets the previous search. Reallocates only if the map size has changed. */
+    void reset(final int cellCount, final int mapHeight) {
+	this.mapHeight = mapHeight;
+	closedMinX = Integer.MAX_VALUE;
+	closedMinY = Integer.MAX_VALUE;
+	closedMaxX = Integer.MIN_VALUE;
+	closedMaxY = Integer.MIN_VALUE;
+	expansions = 0;
+	if (gScores.length != cellCount) {
+	    allocate(cellCount);
+	}
+	openSet.clear();
+	generation++;
+	if (generation == 0) {
+	    // The stamps have wrapped around, so old stamps could be mistaken for current ones.
+	    allocate(cellCount);
+	    generation++;
+	}
+    }
+
+    int getGScore(final int cell) {
+	return seenGeneration[cell] == generation ? gScores[cell] : Integer.MAX_VALUE;
+    }
+
+    int getCameFrom(final int cell) {
+	return seenGeneration[cell] == generation ? cameFrom[cell] : NO_CELL;
+    }
+
+    boolean isSeen(final int cell) {
+	return seenGeneration[cell] == generation;
+    }
+
+    void record(final int cell, final int gScore, final int parent) {
+	gScores[cell] = gScore;
+	cameFrom[cell] = parent;
+	seenGeneration[cell] = generation;
+    }
+
+    boolean isClosed(final int cell) {
+	return closedGeneration[cell] == generation;
+    }
+
+    void close(final int cell) {
+	closedGeneration[cell] = generation;
+	expansions++;
+	markExamined(cell / mapHeight, cell % mapHeight);
+    }
+
+    /**
+     * Widens the bounds of the current search to include a cell it looked at without
+     * closing it, such as the cells Jump Point Search moves across.
+     */
+    void markExamined(final int x, final int y) {
+	closedMinX = Integer.min(closedMinX, x);
+	closedMinY = Integer.min(closedMinY, y);
+	closedMaxX = Integer.max(closedMaxX, x);
+	closedMaxY = Integer.max(closedMaxY, y);
+    }
+
+    /** Bounds of the cells examined so far. The minimum exceeds the maximum if none were. */
+    int getClosedMinX() {
+	return closedMinX;
+    }
+
+    int getClosedMinY() {
+	return closedMinY;
+    }
+
+    int getClosedMaxX() {
+	return closedMaxX;
+    }
+
+    int getClosedMaxY() {
+	return closedMaxY;
+    }
+
+    /** How many cells the current search has closed, for comparing search modes. */
+    int getExpansions() {
+	return expansions;
+    }
+
+    IndexedMinHeap getOpenSet() {
+	return openSet;
+    }
+
+    int[] getNeighborBuffer() {
+	return neighborBuffer;
+    }
+}
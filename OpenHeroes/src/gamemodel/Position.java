@@ -1,34 +1,67 @@
 package gamemodel;
 
 import java.io.Serializable;
-import java.util.Objects;
 
 /**
  * The position class holds a coordinate tuple and offers some convenience methods for working on coordinates.
+ * <p>
+ * Positions are immutable values and are only used where coordinates cross an API
+ * boundary; the pathfinder works on packed cell indices instead. They are made through
+ * Position.of, which hands out one shared instance per coordinate on any map up to
+ * CACHE_SIDE tiles wide and high, so paths, neighbor sets and deserialized game models
+ * don't allocate a new object for every tile they mention.
  */
-public class Position implements Serializable
+public final class Position implements Serializable
 {
-    private int x;
-    private int y;
+    /** Coordinates from 0 up to (but not including) this are interned. */
+    public static final int CACHE_SIDE = 256;
+    // Filled in lazily. Positions are immutable, so racing threads at worst create duplicates.
+    private static final Position[] CACHE = new Position[CACHE_SIDE * CACHE_SIDE];
 
-    public Position(final int x, final int y) {
+    private final int x;
+    private final int y;
+
+    private Position(final int x, final int y) {
 	this.x = x;
 	this.y = y;
     }
 
+    public static Position of(final int x, final int y) {
+	if (x < 0 || y < 0 || x >= CACHE_SIDE || y >= CACHE_SIDE) {
+	    return new Position(x, y);
+	}
+	int slot = x * CACHE_SIDE + y;
+	Position position = CACHE[slot];
+	if (position == null) {
+	    position = new Position(x, y);
+	    CACHE[slot] = position;
+	}
+	return position;
+    }
+
+    // Positions read from a stream are swapped for the shared instances.
+    private Object readResolve() {
+	return of(x, y);
+    }
+
     @Override public boolean equals(final Object o) {
 	if (this == o) return true;
-	if (o == null || !Objects.equals(getClass(), o.getClass())) return false;
+	if (!(o instanceof Position)) return false;
 	final Position position = (Position) o;
 	return x == position.x && y == position.y;
     }
 
+    @Override public int hashCode() {
+	// Unique for every coordinate below 65536, which covers any map.
+	return (x << 16) ^ y;
+    }
+
     public Position offset(final int x, final int y) {
-	return new Position(this.x + x, this.y + y);
+	return of(this.x + x, this.y + y);
     }
 
     public Position add(final Position pos) {
-	return new Position(this.x + pos.x, this.y + pos.y);
+	return of(this.x + pos.x, this.y + pos.y);
     }
 
     @Override public String toString() {
@@ -0,0 +1,141 @@
+package gamemodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+
+import static java.lang.Math.abs;
+
+/**
+ * The result of a movement range flood fill on a MoverPathMap. Holds every tile a mover
+ * can reach with its remaining movement points, together with the cheapest cost of
+ * reaching it and the tile it is reached through.
+ * <p>
+ * Since every step costs at least one movement point, nothing outside a square of
+ * radius remainingMoves around the mover can be reached. The tables only cover that
+ * square, so the memory used depends on the mover, not on the size of the map.
+ * <p>
+ * Paths read from the table start with the first step and end at the destination,
+ * just like the paths produced by PathMap.findPath.
+ */
+public class ReachableTiles
+{
+    private static final int UNREACHABLE = -1;
+
+    private final Position origin;
+    private final int budget;
+    private final int windowX;
+    private final int windowY;
+    private final int windowSide;
+    private final int[] costs;
+    private final int[] parents;
+    private final List<Position> positions = new ArrayList<>();
+
+    ReachableTiles(final Position origin, final int budget) {
+	this.origin = origin;
+	this.budget = Integer.max(budget, 0);
+	this.windowX = origin.getX() - this.budget;
+	this.windowY = origin.getY() - this.budget;
+	this.windowSide = 2 * this.budget + 1;
+	this.costs = new int[windowSide * windowSide];
+	this.parents = new int[windowSide * windowSide];
+	Arrays.fill(costs, UNREACHABLE);
+    }
+
+    void add(final int x, final int y, final int cost, final int parentX, final int parentY) {
+	int slot = slot(x, y);
+	costs[slot] = cost;
+	parents[slot] = slot(parentX, parentY);
+	positions.add(Position.of(x, y));
+    }
+
+    void addOrigin() {
+	costs[slot(origin.getX(), origin.getY())] = 0;
+    }
+
+    private int slot(final int x, final int y) {
+	return (x - windowX) * windowSide + (y - windowY);
+    }
+
+    private int slot(final Position pos) {
+	int x = pos.getX();
+	int y = pos.getY();
+	if (x < windowX || y < windowY || x >= windowX + windowSide || y >= windowY + windowSide) {
+	    return UNREACHABLE;
+	}
+	return slot(x, y);
+    }
+
+    private Position slotPosition(final int slot) {
+	return Position.of(windowX + slot / windowSide, windowY + slot % windowSide);
+    }
+
+    public boolean isReachable(final Position pos) {
+	int slot = slot(pos);
+	return slot != UNREACHABLE && costs[slot] != UNREACHABLE && !pos.is(origin);
+    }
+
+    /** Returns the cheapest movement point cost of reaching the tile, or -1 if it can't be reached. */
+    public int getCost(final Position pos) {
+	int slot = slot(pos);
+	return slot == UNREACHABLE ? UNREACHABLE : costs[slot];
+    }
+
+    /** The tile the given tile is most cheaply reached through, or null if it can't be reached. */
+    public Position getParent(final Position pos) {
+	if (!isReachable(pos)) {
+	    return null;
+	}
+	return slotPosition(parents[slot(pos)]);
+    }
+
+    /** Reads the cheapest path to a tile out of the parent table. Empty if the tile can't be reached. */
+    public LinkedList<Position> pathTo(final Position destination) {
+	LinkedList<Position> path = new LinkedList<>();
+	if (!isReachable(destination)) {
+	    return path;
+	}
+	int originSlot = slot(origin.getX(), origin.getY());
+	for (int slot = slot(destination); slot != originSlot; slot = parents[slot]) {
+	    path.addFirst(slotPosition(slot));
+	}
+	return path;
+    }
+
+    /**
+     * The longest prefix of a path that the mover can legally walk. Each step has to be
+     * next to the previous one, reachable, and affordable with the movement points left.
+     * <p>
+     * The cost of stepping onto a tile doesn't depend on the direction it is entered from,
+     * so it is simply the difference between the tile's cost and its parent's cost.
+     */
+    public Deque<Position> legalMoves(final Deque<Position> path) {
+	Deque<Position> legalMoves = new LinkedList<>();
+	Position previous = origin;
+	int spent = 0;
+	for (Position step : path) {
+	    if (!isReachable(step) || abs(step.getX() - previous.getX()) > 1 || abs(step.getY() - previous.getY()) > 1) {
+		break;
+	    }
+	    int slot = slot(step);
+	    spent += costs[slot] - costs[parents[slot]];
+	    if (spent > budget) {
+		break;
+	    }
+	    legalMoves.add(step);
+	    previous = step;
+	}
+	return legalMoves;
+    }
+
+    /** All reachable tiles, in the order they were settled (cheapest first). */
+    public List<Position> getPositions() {
+	return positions;
+    }
+
+    public Position getOrigin() {
+	return origin;
+    }
+}
@@ -0,0 +1,21 @@
+package gamemodel;
+
+/**
+ * The search algorithms a PathMap can find its paths with. Both find the cheapest path.
+ */
+public enum SearchMode
+{
+    /** Plain A*, expanding every neighbor of every cell it visits. */
+    A_STAR,
+    /**
+     * Jump Point Search across regions where every cell has the same move cost, skipping
+     * the many equally cheap paths through them. Falls back on plain A* expansions next
+     * to cells that cost more, such as rough terrain.
+     * <p>
+     * Opt-in only, nothing in the game selects it. On maps with lakes on open grass it
+     * closes over 20 times fewer cells than A_STAR, but every jump steps through the cells
+     * it skips one at a time, and on every kind of map SearchModeBenchmark generates it
+     * takes longer than A_STAR all the same. Run the benchmark on a map before choosing it.
+     */
+    JUMP_POINT
+}
@@ -0,0 +1,88 @@
+package gamemodel;
+
+import gamemodel.GameModel.MainMap;
+
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares the SearchModes on seeded random maps: how many cells each closes, how long
+ * the same queries take, and whether both find paths of the same cost. Every map is
+ * searched flat, the way PathMap.findPath searches it, without the PathCache or the
+ * ClusterGraph of the MainMap in front.
+ * <p>
+ * Arguments, all optional: the random seed, the number of queries per map and the number
+ * of timed rounds, of which the fastest counts.
+ */
+final class SearchModeBenchmark
+{
+    private SearchModeBenchmark() {}
+
+    public static void main(String[] args) {
+	long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+	int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+	int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+	Random random = new Random(seed);
+	System.out.printf(Locale.ROOT, "seed %d, %d queries per map, best of %d rounds%n", seed, queryCount, rounds);
+	System.out.printf(Locale.ROOT, "%-28s %-10s %12s %10s %10s%n", "map", "mode", "expansions", "ms", "same cost");
+	run("generated 60x60", BenchmarkMaps.randomized(random, 60, 60), random, queryCount, rounds);
+	run("generated 256x256", BenchmarkMaps.randomized(random, 256, 256), random, queryCount, rounds);
+	run("sea lakes 256x256", BenchmarkMaps.blobs(random, 256, 256, 0.2, TerrainType.SEA), random, queryCount, rounds);
+	run("sea and mud 256x256", BenchmarkMaps.blobs(random, 256, 256, 0.3, TerrainType.SEA, TerrainType.MUD), random,
+	    queryCount, rounds);
+	run("scattered sea 256x256", BenchmarkMaps.scattered(random, 256, 256, 0.1, TerrainType.SEA), random, queryCount,
+	    rounds);
+	run("sea lakes 1024x1024", BenchmarkMaps.blobs(random, 1024, 1024, 0.2, TerrainType.SEA), random, queryCount / 5,
+	    rounds);
+    }
+
+    private static void run(final String name, final MainMap map, final Random random, final int queryCount,
+			    final int rounds)
+    {
+	Position[][] queries = BenchmarkMaps.queries(random, map, queryCount);
+	long[] costs = new long[queries.length];
+	search(map, SearchMode.A_STAR, queries, costs);
+	long aStarExpansions = report(name, map, SearchMode.A_STAR, queries, costs, rounds);
+	long jumpPointExpansions = report(name, map, SearchMode.JUMP_POINT, queries, costs, rounds);
+	System.out.printf(Locale.ROOT, "%-28s %-10s %11.1fx%n", name, "ratio",
+			  (double) aStarExpansions / Long.max(jumpPointExpansions, 1));
+	map.setSearchMode(SearchMode.A_STAR);
+    }
+
+    private static long report(final String name, final MainMap map, final SearchMode mode, final Position[][] queries,
+			       final long[] aStarCosts, final int rounds)
+    {
+	long[] costs = new long[queries.length];
+	long expansions = search(map, mode, queries, costs);
+	long bestNanos = Long.MAX_VALUE;
+	for (int round = 0; round < rounds; round++) {
+	    long start = System.nanoTime();
+	    search(map, mode, queries, costs);
+	    bestNanos = Long.min(bestNanos, System.nanoTime() - start);
+	}
+	int sameCost = 0;
+	for (int index = 0; index < costs.length; index++) {
+	    if (costs[index] == aStarCosts[index]) {
+		sameCost++;
+	    }
+	}
+	System.out.printf(Locale.ROOT, "%-28s %-10s %12d %10.1f %5d/%d%n", name, mode, expansions, bestNanos / 1.0e6,
+			  sameCost, costs.length);
+	return expansions;
+    }
+
+    /** Runs every query once and returns how many cells the searches closed in all. */
+    private static long search(final MainMap map, final SearchMode mode, final Position[][] queries, final long[] costs) {
+	map.setSearchMode(mode);
+	long expansions = 0;
+	for (int index = 0; index < queries.length; index++) {
+	    LinkedList<Position> path = map.findPath(queries[index][0], queries[index][1]);
+	    costs[index] = BenchmarkMaps.pathCost(map, path);
+	    PathWorkspace search = map.lastSearch();
+	    expansions += search == null ? 0 : search.getExpansions();
+	}
+	return expansions;
+    }
+}
@@ -0,0 +1,192 @@
+package gamemodel;
+
+import entity.Interactable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static java.lang.Math.abs;
+
+/**
+ * The entities of one kind on the main map, sorted into a uniform grid of square buckets
+ * of BUCKET_SIZE tiles by their interaction point. A query only looks at the buckets its
+ * area overlaps, so finding what lies in the viewport or around a hero takes time in
+ * proportion to the area and the entities in it rather than to every entity in the game.
+ * <p>
+ * Distances are counted in steps that may go diagonally, like sight ranges: a radius of r
+ * covers the box reaching r tiles from the center in every direction.
+ * <p>
+ * The index doesn't watch the entities. Whoever moves one has to tell the index where it
+ * came from.
+ */
+public final class SpatialIndex<T extends Interactable>
+{
+    private static final int BUCKET_SHIFT = 3;
+    private static final int BUCKET_SIZE = 1 << BUCKET_SHIFT;
+
+    private final int mapWidth;
+    private final int mapHeight;
+    private final int bucketColumns;
+    private final int bucketRows;
+    // The entities in each bucket, numbered column by column. Null until something is put there.
+    private final List<List<T>> buckets;
+    private int size = 0;
+
+    SpatialIndex(final int mapWidth, final int mapHeight) {
+	this.mapWidth = mapWidth;
+	this.mapHeight = mapHeight;
+	this.bucketColumns = (mapWidth + BUCKET_SIZE - 1) >> BUCKET_SHIFT;
+	this.bucketRows = (mapHeight + BUCKET_SIZE - 1) >> BUCKET_SHIFT;
+	int bucketCount = bucketColumns * bucketRows;
+	this.buckets = new ArrayList<>(bucketCount);
+	for (int bucket = 0; bucket < bucketCount; bucket++) {
+	    buckets.add(null);
+	}
+    }
+
+    /** An index holding the given entities, which must already stand on the map. */
+    static <T extends Interactable> SpatialIndex<T> of(final Iterable<T> entities, final int mapWidth,
+							final int mapHeight)
+    {
+	SpatialIndex<T> index = new SpatialIndex<>(mapWidth, mapHeight);
+	for (T entity : entities) {
+	    index.add(entity);
+	}
+	return index;
+    }
+
+    void add(final T entity) {
+	int bucket = bucketOf(entity.getInteractionPoint());
+	List<T> entities = buckets.get(bucket);
+	if (entities == null) {
+	    entities = new ArrayList<>();
+	    buckets.set(bucket, entities);
+	}
+	entities.add(entity);
+	size++;
+    }
+
+    void remove(final Interactable entity) {
+	if (removeFrom(bucketOf(entity.getInteractionPoint()), entity) != null) {
+	    size--;
+	}
+    }
+
+    /** Moves the entity into the right bucket after its interaction point changed from the given one. */
+    void moved(final Interactable entity, final Position from) {
+	int previousBucket = bucketOf(from);
+	int bucket = bucketOf(entity.getInteractionPoint());
+	if (bucket == previousBucket) {
+	    return;
+	}
+	T stored = removeFrom(previousBucket, entity);
+	if (stored != null) {
+	    size--;
+	    add(stored);
+	}
+    }
+
+    private T removeFrom(final int bucket, final Interactable entity) {
+	List<T> entities = buckets.get(bucket);
+	if (entities == null) {
+	    return null;
+	}
+	for (int index = 0; index < entities.size(); index++) {
+	    if (entities.get(index) == entity) {
+		// Order within a bucket doesn't matter, so the gap is filled with the last entity.
+		T stored = entities.get(index);
+		entities.set(index, entities.get(entities.size() - 1));
+		entities.remove(entities.size() - 1);
+		return stored;
+	    }
+	}
+	return null;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    /** The entities whose interaction point lies inside the bounds. The bounds may reach off the map. */
+    public List<T> within(final int minX, final int minY, final int maxX, final int maxY) {
+	List<T> found = new ArrayList<>();
+	int firstColumn = Integer.max(minX, 0) >> BUCKET_SHIFT;
+	int lastColumn = Integer.min(maxX, mapWidth - 1) >> BUCKET_SHIFT;
+	int firstRow = Integer.max(minY, 0) >> BUCKET_SHIFT;
+	int lastRow = Integer.min(maxY, mapHeight - 1) >> BUCKET_SHIFT;
+	for (int column = firstColumn; column <= lastColumn; column++) {
+	    for (int row = firstRow; row <= lastRow; row++) {
+		List<T> entities = buckets.get(column * bucketRows + row);
+		if (entities == null) {
+		    continue;
+		}
+		for (T entity : entities) {
+		    Position pos = entity.getInteractionPoint();
+		    if (pos.getX() >= minX && pos.getX() <= maxX && pos.getY() >= minY && pos.getY() <= maxY) {
+			found.add(entity);
+		    }
+		}
+	    }
+	}
+	return found;
+    }
+
+    /** The entities at most radius steps from the center. */
+    public List<T> inRange(final Position center, final int radius) {
+	return within(center.getX() - radius, center.getY() - radius, center.getX() + radius, center.getY() + radius);
+    }
+
+    /**
+     * The entity closest to the given position that the filter accepts, or null if there is
+     * none. Buckets are searched in rings around the position, and the search stops as soon
+     * as no bucket further out can hold anything closer than the best entity so far.
+     */
+    public T closest(final Position from, final Predicate<? super T> filter) {
+	if (size == 0) {
+	    return null;
+	}
+	int column = Integer.min(Integer.max(from.getX(), 0), mapWidth - 1) >> BUCKET_SHIFT;
+	int row = Integer.min(Integer.max(from.getY(), 0), mapHeight - 1) >> BUCKET_SHIFT;
+	int maxRing = Integer.max(Integer.max(column, bucketColumns - 1 - column), Integer.max(row, bucketRows - 1 - row));
+	T best = null;
+	int bestDistance = Integer.MAX_VALUE;
+	for (int ring = 0; ring <= maxRing; ring++) {
+	    // Every tile of a bucket in this ring is at least this many steps away.
+	    int ringDistance = ring == 0 ? 0 : (ring - 1) * BUCKET_SIZE + 1;
+	    if (ringDistance > bestDistance) {
+		break;
+	    }
+	    for (int ringColumn = column - ring; ringColumn <= column + ring; ringColumn++) {
+		if (ringColumn < 0 || ringColumn >= bucketColumns) {
+		    continue;
+		}
+		// Only the top and bottom bucket of the inner columns lie on the ring.
+		boolean edgeColumn = ringColumn == column - ring || ringColumn == column + ring;
+		int rowStep = edgeColumn || ring == 0 ? 1 : 2 * ring;
+		for (int ringRow = row - ring; ringRow <= row + ring; ringRow += rowStep) {
+		    if (ringRow < 0 || ringRow >= bucketRows) {
+			continue;
+		    }
+		    List<T> entities = buckets.get(ringColumn * bucketRows + ringRow);
+		    if (entities == null) {
+			continue;
+		    }
+		    for (T entity : entities) {
+			Position pos = entity.getInteractionPoint();
+			int distance = Integer.max(abs(pos.getX() - from.getX()), abs(pos.getY() - from.getY()));
+			if (distance < bestDistance && filter.test(entity)) {
+			    best = entity;
+			    bestDistance = distance;
+			}
+		    }
+		}
+	    }
+	}
+	return best;
+    }
+
+    private int bucketOf(final Position pos) {
+	return (pos.getX() >> BUCKET_SHIFT) * bucketRows + (pos.getY() >> BUCKET_SHIFT);
+    }
+}
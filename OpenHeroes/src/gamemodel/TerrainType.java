@@ -15,12 +15,13 @@ import java.util.logging.Logger;
 public enum TerrainType
 {
     /** */
-    SEA(Passability.IMPASSABLE, Color.BLUE, "img/sea.png"), /** */
-GRASS(Passability.NORMAL, Color.GREEN, "img/grass.png"), /** */
-MUD(Passability.ROUGH, new Color(89, 41, 0), "img/mud.png");
+    SEA(Passability.IMPASSABLE, true, Color.BLUE, "img/sea.png"), /** */
+GRASS(Passability.NORMAL, false, Color.GREEN, "img/grass.png"), /** */
+MUD(Passability.ROUGH, false, new Color(89, 41, 0), "img/mud.png");
 
 
     private final Passability passability;
+    private final boolean blocksSight;
     private final Color color;
     private final boolean useImage;
     private final BufferedImage image;
@@ -29,9 +30,10 @@ MUD(Passability.ROUGH, new Color(89, 41, 0), "img/mud.png");
      * If the TerrainType constructor fails to load its specified image, it will
      * flag as such, allowing calling functions to draw a primitive shape instead.
      */
-    TerrainType(final Passability passability, final Color color, final String imagePath) {
+    TerrainType(final Passability passability, final boolean blocksSight, final Color color, final String imagePath) {
 
 	this.passability = passability;
+	this.blocksSight = blocksSight;
 	this.color = color;
 	this.image = loadImage(imagePath);
 	useImage = this.image != null;
@@ -51,6 +53,11 @@ MUD(Passability.ROUGH, new Color(89, 41, 0), "img/mud.png");
 	return passability;
     }
 
+    /** Whether a hero can't see past tiles of this terrain. The tiles themselves can still be seen. */
+    public boolean blocksSight() {
+	return blocksSight;
+    }
+
     public Color getColor() {
 	return color;
     }
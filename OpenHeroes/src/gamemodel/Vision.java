@@ -0,0 +1,200 @@
+package gamemodel;
+
+import entity.Mover;
+import gamemodel.GameModel.MainMap;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Line of sight on the main map. A mover sees the tiles within its sight radius that
+ * aren't hidden behind terrain that blocks sight, such as the sea.
+ * <p>
+ * Fields of view are found with symmetric shadowcasting: the area around the mover is
+ * split into four quadrants, and each is scanned row by row outwards from the mover while
+ * keeping track of the slopes that walls have cut off. A tile is seen if its center lies
+ * within the unblocked slopes, which makes sight symmetric: if A sees B, B sees A. Walls
+ * themselves are seen as soon as any part of them is.
+ * <p>
+ * How wide each row of a quadrant may get before it leaves the sight radius depends on the
+ * radius alone, so those widths are computed once per radius and shared. The last field of
+ * view of every mover is kept, so that a step only has to update the fog of war where the
+ * field actually changed: the tiles coming into view at the front, and those dropping out
+ * of view behind.
+ */
+final class Vision
+{
+    private static final Map<Integer, int[]> ROW_WIDTHS = new ConcurrentHashMap<>();
+    // The x and y steps from one row of a quadrant to the next, then along a row. North, east, south and west.
+    private static final int[][] QUADRANTS = { { 0, -1, 1, 0 }, { 1, 0, 0, 1 }, { 0, 1, 1, 0 }, { -1, 0, 0, 1 } };
+
+    private final MainMap map;
+    private final Map<Mover, int[]> fields = new IdentityHashMap<>();
+    // The rows left to scan, five ints each: depth and the start and end slopes as fractions.
+    private int[] rows = new int[5 * 16];
+    private int[] cells = new int[64];
+    private int cellCount;
+
+    Vision(final MainMap map) {
+	this.map = map;
+    }
+
+    /**
+     * Looks around from the mover's position and remembers what it saw.
+     *
+     * @return the cells the mover sees, sorted.
+     */
+    int[] look(final Mover mover) {
+	Position pos = mover.getPosition();
+	int[] field = fieldOfView(pos.getX(), pos.getY(), mover.getSightRadius());
+	fields.put(mover, field);
+	return field;
+    }
+
+    /**
+     * The cells the mover saw when it last looked, or what it sees from the given position
+     * if it hasn't looked yet.
+     */
+    int[] lastField(final Mover mover, final Position pos) {
+	int[] field = fields.get(mover);
+	return field != null ? field : fieldOfView(pos.getX(), pos.getY(), mover.getSightRadius());
+    }
+
+    void forget(final Mover mover) {
+	fields.remove(mover);
+    }
+
+    /** The cells seen from the given tile, sorted. */
+    int[] fieldOfView(final int originX, final int originY, final int radius) {
+	cellCount = 0;
+	addCell(originX, originY);
+	int[] rowWidths = rowWidths(radius);
+	for (int[] quadrant : QUADRANTS) {
+	    scanQuadrant(originX, originY, quadrant, rowWidths);
+	}
+	int[] field = Arrays.copyOf(cells, cellCount);
+	Arrays.sort(field);
+	// The diagonals are scanned by two quadrants each.
+	int distinct = 0;
+	for (int index = 0; index < field.length; index++) {
+	    if (index == 0 || field[index] != field[index - 1]) {
+		field[distinct] = field[index];
+		distinct++;
+	    }
+	}
+	return Arrays.copyOf(field, distinct);
+    }
+
+    /** How far to either side of the center a row of a quadrant reaches, for every depth up to the radius. */
+    private static int[] rowWidths(final int radius) {
+	int[] widths = ROW_WIDTHS.get(radius);
+	if (widths != null) {
+	    return widths;
+	}
+	widths = new int[radius + 1];
+	// A little over the radius itself, which rounds the circle off more nicely.
+	int limit = radius * radius + radius;
+	for (int depth = 0; depth <= radius; depth++) {
+	    int width = 0;
+	    while (depth * depth + (width + 1) * (width + 1) <= limit) {
+		width++;
+	    }
+	    widths[depth] = width;
+	}
+	ROW_WIDTHS.put(radius, widths);
+	return widths;
+    }
+
+    /*
+     * Slopes are kept as fractions, numerator over a positive denominator, so that tiles are
+     * judged exactly. A row starts out spanning the slopes -1 to 1, the whole quadrant.
+     */
+    private void scanQuadrant(final int originX, final int originY, final int[] quadrant, final int[] rowWidths) {
+	int rowCount = 0;
+	rowCount = pushRow(rowCount, 1, -1, 1, 1, 1);
+	while (rowCount > 0) {
+	    rowCount--;
+	    int base = 5 * rowCount;
+	    int depth = rows[base];
+	    int startNumerator = rows[base + 1];
+	    int startDenominator = rows[base + 2];
+	    int endNumerator = rows[base + 3];
+	    int endDenominator = rows[base + 4];
+	    if (depth >= rowWidths.length) {
+		continue;
+	    }
+	    int width = rowWidths[depth];
+	    int minColumn = Integer.max(roundTiesUp(depth * startNumerator, startDenominator), -width);
+	    int maxColumn = Integer.min(roundTiesDown(depth * endNumerator, endDenominator), width);
+	    boolean previousWall = false;
+	    boolean previousFloor = false;
+	    for (int column = minColumn; column <= maxColumn; column++) {
+		int x = originX + depth * quadrant[0] + column * quadrant[2];
+		int y = originY + depth * quadrant[1] + column * quadrant[3];
+		boolean wall = blocksSight(x, y);
+		boolean symmetric = column * startDenominator >= depth * startNumerator &&
+				    column * endDenominator <= depth * endNumerator;
+		if (wall || symmetric) {
+		    addCell(x, y);
+		}
+		if (previousWall && !wall) {
+		    // The row goes on past the wall, from the slope of this tile's near edge.
+		    startNumerator = 2 * column - 1;
+		    startDenominator = 2 * depth;
+		}
+		if (previousFloor && wall) {
+		    // The open stretch before the wall carries on into the next row.
+		    rowCount = pushRow(rowCount, depth + 1, startNumerator, startDenominator, 2 * column - 1, 2 * depth);
+		}
+		previousWall = wall;
+		previousFloor = !wall;
+	    }
+	    if (previousFloor) {
+		rowCount = pushRow(rowCount, depth + 1, startNumerator, startDenominator, endNumerator, endDenominator);
+	    }
+	}
+    }
+
+    private int pushRow(final int rowCount, final int depth, final int startNumerator, final int startDenominator,
+			final int endNumerator, final int endDenominator)
+    {
+	if (5 * rowCount + 5 > rows.length) {
+	    rows = Arrays.copyOf(rows, 2 * rows.length);
+	}
+	int base = 5 * rowCount;
+	rows[base] = depth;
+	rows[base + 1] = startNumerator;
+	rows[base + 2] = startDenominator;
+	rows[base + 3] = endNumerator;
+	rows[base + 4] = endDenominator;
+	return rowCount + 1;
+    }
+
+    /** Tiles off the map can't be seen, and can't be seen past. */
+    private boolean blocksSight(final int x, final int y) {
+	return x < 0 || y < 0 || x >= map.getMapWidth() || y >= map.getMapHeight() || map.blocksSight(x, y);
+    }
+
+    private void addCell(final int x, final int y) {
+	if (x < 0 || y < 0 || x >= map.getMapWidth() || y >= map.getMapHeight()) {
+	    return;
+	}
+	if (cellCount == cells.length) {
+	    cells = Arrays.copyOf(cells, 2 * cellCount);
+	}
+	cells[cellCount] = x * map.getMapHeight() + y;
+	cellCount++;
+    }
+
+    /** The fraction rounded to the nearest integer, halves rounded up. */
+    private static int roundTiesUp(final int numerator, final int denominator) {
+	return Math.floorDiv(2 * numerator + denominator, 2 * denominator);
+    }
+
+    /** The fraction rounded to the nearest integer, halves rounded down. */
+    private static int roundTiesDown(final int numerator, final int denominator) {
+	return -Math.floorDiv(-(2 * numerator - denominator), 2 * denominator);
+    }
+}
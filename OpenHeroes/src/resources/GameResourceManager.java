@@ -1,10 +1,10 @@
 package resources;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.ConnectException;
@@ -48,7 +48,7 @@ public final class GameResourceManager
     private Map<String, Socket> messageSockets = new HashMap<>();
     private Map<String, Socket> dataSockets = new HashMap<>();
     private Map<String, DataOutputStream> messageOuts = new HashMap<>();
-    private Map<String, BufferedReader> messageIns = new HashMap<>();
+    private Map<String, DataInputStream> messageIns = new HashMap<>();
     private Map<String, ObjectOutputStream> dataOuts = new HashMap<>();
     private Map<String, ObjectInputStream> dataIns = new HashMap<>();
 
@@ -101,7 +101,7 @@ public final class GameResourceManager
      * Sends interrupt messages to all threads.
      * <p>
      * Note that TCPListener thread may not halt on interrupt
-     * because its BufferedReader does not listen for interrupts.
+     * because its message stream does not listen for interrupts.
      * <p>
      * As such, the TCPListener threads may remain alive until
      * they realize their socket has shut down. (Time varies.)
@@ -189,14 +189,14 @@ public final class GameResourceManager
 	return messageOut;
     }
 
-    public BufferedReader getMessageIn(String id) throws SocketGenerationException, IOException {
+    public DataInputStream getMessageIn(String id) throws SocketGenerationException, IOException {
 	if (!messageSockets.containsKey(id)) {
 	    throw new SocketGenerationException("Prerequisite sockets not initialized!");
 	}
 
-	BufferedReader messageIn;
+	DataInputStream messageIn;
 	if (!messageIns.containsKey(id)) {
-	    messageIn = new BufferedReader(new InputStreamReader(messageSockets.get(id).getInputStream()));
+	    messageIn = new DataInputStream(new BufferedInputStream(messageSockets.get(id).getInputStream()));
 	    messageIns.put(id, messageIn);
 	    allSockets.add(messageIn);
 	    LOGGER.log(Level.FINER, "GameResourceManager opened a new messageIn socket with ID: " + id);
@@ -5,15 +5,19 @@ import entity.Hero;
 import entity.Interactable;
 import entity.InteractionType;
 import entity.Mover;
-import entity.ResourceMine;
-import entity.Town;
 import gamelogic.ClientSession;
 import gamelogic.ExitCode;
 import gamelogic.ServerSession;
+import gamelogic.SnapshotListener;
+import gamemodel.FogOfWar;
 import gamemodel.GameModel;
 import gamemodel.GameModelFactory;
+import gamemodel.GameSnapshot;
+import gamemodel.GameSnapshot.Piece;
 import gamemodel.GameState;
+import gamemodel.PathReplanner;
 import gamemodel.Position;
+import gamemodel.ReachableTiles;
 import gamemodel.Resource;
 import gamemodel.Team;
 import gamemodel.UnknownTownTypeException;
@@ -45,6 +49,7 @@ import java.net.ConnectException;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.logging.Level;
@@ -330,7 +335,12 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 		clientSession.sendInteractMessage(mainMapInterface.getSelectedUnit(), topLevelInteractable,
 						  mainMapInterface.getProposedPath());
 	    } else if (!mainMapInterface.proposedPath.isEmpty()) {
-		clientSession.move(mainMapInterface.selectedUnit, mainMapInterface.getProposedPath());
+		if (mainMapInterface.reachableTiles != null) {
+		    clientSession.move(mainMapInterface.selectedUnit, mainMapInterface.getProposedPath(),
+				       mainMapInterface.reachableTiles);
+		} else {
+		    clientSession.move(mainMapInterface.selectedUnit, mainMapInterface.getProposedPath());
+		}
 	    }
 
 	}
@@ -367,6 +377,9 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
     {
 	this.clientSession = new ClientSession(mainMenu.getPlayerName(), mainMenu.getConnectionAddress(), mainMenu.getPort());
 	clientSession.addClientListener(this);
+	clientSession.addSnapshotListener(mainMapInterface);
+	clientSession.addSnapshotListener(gameInfoPanel);
+	clientSession.addSnapshotListener(gameControlPanel);
 	GameResourceManager.instance().executeParallel(clientSession);
     }
 
@@ -530,8 +543,6 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	    buildGameView();
 	}
 	getMainMap().addMainMapListener(mainMapInterface);
-	getMainMap().addMainMapListener(gameInfoPanel);
-	getMainMap().addMainMapListener(gameControlPanel);
 	mainMapInterface.clearSelectedHero();
 	getMainMap().notifyMainMapListeners();
 	LOGGER.log(Level.FINE, "Finished hooking listeners to the GameModel.");
@@ -570,7 +581,7 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	});
     }
 
-    private final class GameControlPanel extends JComponent implements MainMapListener
+    private final class GameControlPanel extends JComponent implements SnapshotListener
     {
 	private BufferedImage bgImage;
 	private JLabel turnLabel;
@@ -675,13 +686,13 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	    drawRepeatedBackground(graphics, bgImage);
 	}
 
-	@Override public void mapChanged(final MainMapEvent e) {
-	    if (getGameModel().gameStarted()) {
+	@Override public void snapshotPublished(final GameSnapshot snapshot) {
+	    if (snapshot.gameStarted()) {
 	        SwingUtilities.invokeLater(new Runnable() {
 		    @Override public void run() {
 			String turnText =
-				getGameModel().getPlayerNames().get(getGameModel().getTurnTaker());
-			if (getGameModel().onTurn()) {
+				getGameModel().getPlayerNames().get(snapshot.getTurnTaker());
+			if (snapshot.onTurn()) {
 			    turnText += " (You!)";
 			}
 			turnLabel.setText(turnText);
@@ -707,11 +718,11 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	@Override protected void paintComponent(final Graphics graphics) {
 	    super.paintComponent(graphics);
 
-	    for (int x = 0; x < mapWidth; x++) {
-		for (int y = 0; y < mapHeight; y++) {
-		    drawVisibleMap(graphics, getGameModel(), x, y);
-		}
+	    GameSnapshot snapshot = getSnapshot();
+	    if (snapshot == null) {
+		return;
 	    }
+	    drawVisibleMap(graphics, getMainMap(), snapshot.getFogOfWar(), visibleTiles(graphics, getMainMap()));
 	}
 
 
@@ -850,12 +861,13 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	}
     }
 
-    private final class GameInfoPanel extends JPanel implements MainMapListener
+    private final class GameInfoPanel extends JPanel implements SnapshotListener
     {
 	private static final int BORDER = 4;
 	public static final int RESOURCE_LABEL_TEXT_COLOR = 0xc0c0c;
 	private final BufferedImage[] resourceIcons = new BufferedImage[Resource.values().length];
 	private final JLabel[] resourceAmountLabels = new JLabel[Resource.values().length];
+	private final JLabel exploredLabel = new JLabel();
 	private final BufferedImage bgImage;
 
 	private GameInfoPanel() throws ImageReadException {
@@ -872,17 +884,28 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 		resourceAmountLabels[i].setBackground(new Color(RESOURCE_LABEL_TEXT_COLOR));
 		this.add(resourceAmountLabels[i]);
 	    }
+	    exploredLabel.setForeground(Color.WHITE);
+	    this.add(exploredLabel);
 	}
 
-	@Override public void mapChanged(final MainMapEvent e) {
+	@Override public void snapshotPublished(final GameSnapshot snapshot) {
 	    SwingUtilities.invokeLater(new Runnable() {
 
 		@Override public void run() {
-		    int[] playerResourceList = getGameModel().getClientResourceList();
+		    int[] playerResourceList = snapshot.getClientResourceList();
+		    int[] playerIncome = snapshot.getClientIncome();
 		    for (int i = 0; i < resourceAmountLabels.length; i++) {
 			String resourceAmount = Integer.toString(playerResourceList[i]);
+			if (playerIncome != null && playerIncome[i] != 0) {
+			    resourceAmount += " (+" + playerIncome[i] + ")";
+			}
 			resourceAmountLabels[i].setText(resourceAmount);
 		    }
+		    FogOfWar fogOfWar = snapshot.getFogOfWar();
+		    if (fogOfWar != null) {
+			long explored = 100L * fogOfWar.getExploredTileCount() / fogOfWar.getTileCount();
+			exploredLabel.setText("Explored: " + explored + "%");
+		    }
 		    GameInfoPanel.this.revalidate();
 		}
 	    });
@@ -961,14 +984,33 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
      * The scrolling functionality is actually provided by the ScrollPane which the MainMapInterface
      * is a subcomponent of.
      */
-    private final class MainMapInterface extends MainMapViewer implements MainMapListener
+    private final class MainMapInterface extends MainMapViewer implements MainMapListener, SnapshotListener
     {
 
 	private static final int MAX_GRID_SIZE = 256;
 	private static final int MIN_GRID_SIZE = 16;
+	/*
+	 * Paths are searched on the session thread, the only thread that may search the MainMap,
+	 * and handed back to the EDT. The fields up to pathRequests belong to the EDT, the rest to
+	 * the session thread. selectedUnit is read by both.
+	 */
 	private LinkedList<Position> proposedPath = new LinkedList<>();
-	private Hero selectedUnit = null;
+	private volatile Hero selectedUnit = null;
 	private Position moveTarget = null;
+	// Movement range of the selected hero, so paths within range are read from a table instead of searched.
+	// Never changes once made, so it can be handed from one thread to the other.
+	private ReachableTiles reachableTiles = null;
+	// Counts the paths proposed, so that a search finishing after the player picked another
+	// target is dropped instead of shown.
+	private int pathRequests = 0;
+
+	// Where the proposed path leads, and for which hero and request. Once the map changes under
+	// the path, it is kept up to date by a replanner instead of being searched again from scratch.
+	private MainMap plannedMap = null;
+	private Hero plannedUnit = null;
+	private Iterable<Position> pathDestinations = null;
+	private int plannedRequest = 0;
+	private PathReplanner pathReplanner = null;
 
 	private int mapWidth;
 	private int mapHeight;
@@ -1003,20 +1045,22 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 		}
 	    }
 
-	    for (int x = 0; x < mapWidth; x++) {
-		for (int y = 0; y < mapHeight; y++) {
-		    drawVisibleMap(graphics, clientSession.getGameModel(), x, y);
-		}
+	    // Painted from the last snapshot, since the network thread may be changing the model meanwhile.
+	    GameSnapshot snapshot = getSnapshot();
+	    if (snapshot == null) {
+		return;
 	    }
+	    Rectangle tiles = visibleTiles(graphics, getMainMap());
+	    drawVisibleMap(graphics, getMainMap(), snapshot.getFogOfWar(), tiles);
 
-	    for (Hero hero : getGameModel().getHeroes()
-		 ) {
-		if (getMainMap().playerSeesMapTile(hero.getPosition())) {
-		    drawInteractable(graphics, hero);
+	    for (Piece hero : snapshot.getHeroes()) {
+		Position heroPos = hero.getPosition();
+		if (tiles.contains(heroPos.getX(), heroPos.getY()) && snapshot.playerSees(heroPos)) {
+		    drawImage(graphics, hero.getInteractable().getImage(), heroPos.getX(), heroPos.getY());
 		}
 	    }
 
-	    drawOwnerFlags(graphics);
+	    drawOwnerFlags(graphics, snapshot, tiles);
 
 	    if (!proposedPath.isEmpty()) {
 		drawPath(graphics);
@@ -1026,10 +1070,41 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	    }
 	}
 
-	private void shortenProposedPath() {
-	    if (!proposedPath.isEmpty()) {
-		proposedPath.removeFirst();
+	/*
+	 * Runs on the session thread. The replanner is only made once the map actually changes
+	 * under a proposed path, since it holds search state the size of the map and most
+	 * proposed paths are just looked at.
+	 */
+	private void replanProposedPath() {
+	    if (pathDestinations == null || plannedMap != getMainMap()) {
+		return;
+	    }
+	    if (pathReplanner == null) {
+		pathReplanner = getMainMap().replanner(plannedUnit, pathDestinations);
 	    }
+	    showPath(plannedRequest, pathReplanner.replan());
+	}
+
+	/** Runs on the session thread. Forgets the previous path, and remembers where the new one leads. */
+	private void planPath(final Hero unit, final Iterable<Position> destinations, final int request) {
+	    plannedMap = getMainMap();
+	    plannedUnit = unit;
+	    pathDestinations = destinations;
+	    plannedRequest = request;
+	    pathReplanner = null;
+	}
+
+	/** Shows a path found on the session thread, unless another one has been proposed since. */
+	private void showPath(final int request, final LinkedList<Position> path) {
+	    SwingUtilities.invokeLater(new Runnable()
+	    {
+		@Override public void run() {
+		    if (request == pathRequests) {
+			proposedPath = path;
+			MainMapInterface.this.repaint();
+		    }
+		}
+	    });
 	}
 
 	public void selectHero(Hero hero) {
@@ -1038,6 +1113,8 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 		    clearProposedPath();
 		    MainMapInterface.this.moveTarget = null;
 		    MainMapInterface.this.selectedUnit = hero;
+		    MainMapInterface.this.reachableTiles = null;
+		    refreshReachableTiles();
 		    MainMapInterface.this.repaint();
 		}
 	    });
@@ -1045,34 +1122,87 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	}
 
 	public void clearProposedPath() {
-	    proposedPath.clear();
+	    proposedPath = new LinkedList<>();
+	    final int request = ++pathRequests;
+	    runOnSessionThread(new Runnable()
+	    {
+		@Override public void run() {
+		    planPath(null, null, request);
+		}
+	    });
 	}
 
+	/** Searches the movement range of the selected hero on the session thread. */
+	private void refreshReachableTiles() {
+	    runOnSessionThread(new Runnable()
+	    {
+		@Override public void run() {
+		    final Hero unit = selectedUnit;
+		    final ReachableTiles tiles = unit == null ? null : getMainMap().reachableTiles(unit);
+		    SwingUtilities.invokeLater(new Runnable()
+		    {
+			@Override public void run() {
+			    if (selectedUnit == unit) {
+				reachableTiles = tiles;
+			    }
+			}
+		    });
+		}
+	    });
+	}
+
+	/** Proposes a path to the tile, or drops the target if it can't be walked onto. */
 	public void proposePath(final Position pos) {
-	    proposedPath = getGameModel().findPath(selectedUnit.getPosition(), pos);
+	    final Hero unit = selectedUnit;
+	    final int request = ++pathRequests;
+	    final boolean inRange = reachableTiles != null && reachableTiles.isReachable(pos);
+	    if (inRange) {
+		proposedPath = reachableTiles.pathTo(pos);
+	    }
+	    runOnSessionThread(new Runnable()
+	    {
+		@Override public void run() {
+		    if (!getMainMap().isPassable(pos)) {
+			planPath(null, null, request);
+			dropTarget(request);
+			return;
+		    }
+		    planPath(unit, Collections.singletonList(pos), request);
+		    if (!inRange) {
+			showPath(request, getGameModel().findPath(unit.getPosition(), pos));
+		    }
+		}
+	    });
 	}
 
+	/** Proposes a path to the interactable, or none if the hero can already interact with it. */
 	public void proposePath(final Interactable interactable) {
-
-	    LinkedList<Position> cheapestPath = new LinkedList<>();
-	    if (getMainMap().unitCanInteractWith(selectedUnit, interactable)) {
-		proposedPath = cheapestPath;
-		return;
-	    }
-	    Iterable<Position> possibleDestinations = getMainMap().passableInteractionPositions(interactable);
-	    int cheapestPathCost = Integer.MAX_VALUE;
-	    for (Position destination : possibleDestinations) {
-		LinkedList<Position> tentativePath = getGameModel().findPath(selectedUnit.getPosition(), destination);
-		if (tentativePath.isEmpty()) {
-		    continue;
+	    final Hero unit = selectedUnit;
+	    final int request = ++pathRequests;
+	    runOnSessionThread(new Runnable()
+	    {
+		@Override public void run() {
+		    if (getMainMap().unitCanInteractWith(unit, interactable)) {
+			planPath(null, null, request);
+			showPath(request, new LinkedList<>());
+			return;
+		    }
+		    Iterable<Position> possibleDestinations = getMainMap().passableInteractionPositions(interactable);
+		    planPath(unit, possibleDestinations, request);
+		    showPath(request, getGameModel().findPathToAny(unit.getPosition(), possibleDestinations));
 		}
-		int currentMoveCost = getMainMap().pathMoveCost(tentativePath);
-		if (currentMoveCost < cheapestPathCost) {
-		    cheapestPathCost = currentMoveCost;
-		    cheapestPath = tentativePath;
+	    });
+	}
+
+	private void dropTarget(final int request) {
+	    SwingUtilities.invokeLater(new Runnable()
+	    {
+		@Override public void run() {
+		    if (request == pathRequests) {
+			clearHeroTarget();
+		    }
 		}
-	    }
-	    proposedPath = cheapestPath;
+	    });
 	}
 
 	public Deque<Position> getProposedPath() {
@@ -1087,12 +1217,8 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	    SwingUtilities.invokeLater(new Runnable()
 	    {
 		@Override public void run() {
-		    if (getMainMap().isPassable(pos)) {
-			proposePath(pos);
-			moveTarget = pos;
-		    } else {
-		        clearHeroTarget();
-		    }
+		    proposePath(pos);
+		    moveTarget = pos;
 		}
 	    });
 	    this.repaint();
@@ -1101,11 +1227,7 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	    SwingUtilities.invokeLater(new Runnable()
 	    {
 		@Override public void run() {
-		    if (getMainMap().unitCanInteractWith(selectedUnit, interactable)) {
-			clearProposedPath();
-		    } else {
-			proposePath(interactable);
-		    }
+		    proposePath(interactable);
 		    moveTarget = interactable.getInteractionPoint();
 		}
 	    });
@@ -1117,24 +1239,20 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	    clearProposedPath();
 	}
 
-	private void drawOwnerFlags(final Graphics graphics) {
-	    for (Hero hero : getGameModel().getHeroes()) {
-		Position heroPos = hero.getPosition();
-		if (getMainMap().playerSeesMapTile(heroPos)) {
-		    drawImageSquare(graphics, heroPos, hero.getOwner().getFlagImage());
-		}
-	    }
-	    for (Town town : getGameModel().getTowns()) {
-		Position townPos = town.getInteractionPoint();
-		if (getMainMap().playerSeesMapTile(townPos)) {
-		    drawImageSquare(graphics, townPos, town.getOwner().getFlagImage());
-		}
-	    }
+	/** Draws the flags of the heroes, towns and mines whose interaction point lies on the given tiles. */
+	private void drawOwnerFlags(final Graphics graphics, final GameSnapshot snapshot, final Rectangle tiles) {
+	    drawOwnerFlags(graphics, snapshot, snapshot.getHeroes(), tiles);
+	    drawOwnerFlags(graphics, snapshot, snapshot.getTowns(), tiles);
+	    drawOwnerFlags(graphics, snapshot, snapshot.getMines(), tiles);
+	}
 
-	    for (ResourceMine mine : getGameModel().getMines()) {
-		Position minePos = mine.getInteractionPoint();
-		if (getMainMap().playerSeesMapTile(minePos)) {
-		    drawImageSquare(graphics, minePos, mine.getOwner().getFlagImage());
+	private void drawOwnerFlags(final Graphics graphics, final GameSnapshot snapshot, final Iterable<Piece> pieces,
+				    final Rectangle tiles)
+	{
+	    for (Piece piece : pieces) {
+		Position flagPos = piece.getInteractionPoint();
+		if (tiles.contains(flagPos.getX(), flagPos.getY()) && snapshot.playerSees(flagPos)) {
+		    drawImageSquare(graphics, flagPos, piece.getOwner().getFlagImage());
 		}
 	    }
 	}
@@ -1170,12 +1288,14 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 
 	    // InvokeLater ensures we're operating from the Swing EventDispatchThread.
 	    // Not using it could have unpredictable results on the Swing thread.
+	    // The map is in the middle of a change here, so paths are searched again once it is done.
 	    switch (e.getType()) {
 		case HERO_MOVED:
+		    runOnSessionThread(this::replanProposedPath);
 		    SwingUtilities.invokeLater(new Runnable()
 		    {
 			@Override public void run() {
-			    shortenProposedPath();
+			    refreshReachableTiles();
 			    centerCameraOnHero(e.getMover());
 			    MainMapInterface.this.repaint();
 			}
@@ -1185,12 +1305,23 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 		    // If the selected hero was killed, clear the selection.
 		    if (selectedUnit != null && e.getMover().equals(selectedUnit)) {
 			SwingUtilities.invokeLater(this::clearSelectedHero);
+		    } else {
+			runOnSessionThread(this::replanProposedPath);
 		    }
 		    break;
+		case NONE:
+		    // Generic changes include movement points being refreshed at the start of a turn.
+		    runOnSessionThread(this::replanProposedPath);
+		    refreshReachableTiles();
+		    break;
 	    }
 	    this.repaint();
 	}
 
+	@Override public void snapshotPublished(final GameSnapshot snapshot) {
+	    this.repaint();
+	}
+
 	private void drawPath(final Graphics graphics) {
 	    Position[] pathArray = proposedPath.toArray(new Position[proposedPath.size()]);
 	    int remainingMoves = selectedUnit.getRemainingMoveLength();
@@ -1261,7 +1392,7 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	    if (gridX >= mapWidth || gridY >= mapHeight) {
 		return null;
 	    }
-	    return new Position(gridX, gridY);
+	    return Position.of(gridX, gridY);
 	}
 
 	public Dimension getResolution() {
@@ -1285,6 +1416,16 @@ public class HeroesFrame extends JFrame implements ClientListener, GameEventList
 	return clientSession.getGameModel();
     }
 
+    private GameSnapshot getSnapshot() {
+	return clientSession.getSnapshot();
+    }
+
+    private void runOnSessionThread(final Runnable task) {
+	if (clientSession != null) {
+	    clientSession.runOnSessionThread(task);
+	}
+    }
+
     private MainMap getMainMap() {
 	return clientSession.getGameModel().getMainMap();
     }
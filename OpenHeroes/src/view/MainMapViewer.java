@@ -1,7 +1,9 @@
 package view;
 
 import entity.Interactable;
-import gamemodel.GameModel;
+import gamemodel.FogOfWar;
+import gamemodel.GameModel.MainMap;
+import gamemodel.MapCursor;
 import gamemodel.Position;
 import gamemodel.TerrainType;
 
@@ -18,17 +20,44 @@ public abstract class MainMapViewer extends JComponent
     protected int zoomOffsetX = 0;
     protected int zoomOffsetY = 0;
 
-    /** Draws the map terrain for a given position. If it was visible it returns true, otherwise false. */
-    protected void drawVisibleMap(final Graphics graphics, GameModel gameModel, final int x, final int y) {
-	if (!gameModel.getMainMap().playerSeesMapTile(x, y)) {
-	    drawFog(graphics, x, y);
-	    return;
+    /**
+     * The map tiles inside the clip bounds of the graphics, or the whole map if there are
+     * none, with the corners given as tile coordinates. May be empty.
+     */
+    protected Rectangle visibleTiles(final Graphics graphics, final MainMap mainMap) {
+	int minX = 0;
+	int minY = 0;
+	int maxX = mainMap.getMapWidth() - 1;
+	int maxY = mainMap.getMapHeight() - 1;
+	Rectangle clip = graphics.getClipBounds();
+	if (clip != null && gridSize > 0) {
+	    minX = Integer.max(minX, Math.floorDiv(clip.x - zoomOffsetX, gridSize));
+	    minY = Integer.max(minY, Math.floorDiv(clip.y - zoomOffsetY, gridSize));
+	    maxX = Integer.min(maxX, Math.floorDiv(clip.x + clip.width - 1 - zoomOffsetX, gridSize));
+	    maxY = Integer.min(maxY, Math.floorDiv(clip.y + clip.height - 1 - zoomOffsetY, gridSize));
 	}
-	drawTerrain(graphics, gameModel.getMainMap().getTerrainMap(), x, y);
+	return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
 
-	Interactable feature = gameModel.getMainMap().getFeatureMap()[x][y];
-	if (feature != null) {
-	    drawInteractable(graphics, feature, x, y);
+    /**
+     * Draws the terrain and features of the given tiles. Tiles the fog of war hasn't explored
+     * are drawn as fog.
+     */
+    protected void drawVisibleMap(final Graphics graphics, final MainMap mainMap, final FogOfWar fogOfWar,
+				  final Rectangle tiles)
+    {
+	MapCursor cursor = mainMap.cursor(fogOfWar, tiles.x, tiles.y, tiles.x + tiles.width - 1,
+					  tiles.y + tiles.height - 1);
+	while (cursor.next()) {
+	    if (cursor.isHidden()) {
+		drawFog(graphics, cursor.getX(), cursor.getY());
+		continue;
+	    }
+	    drawTerrain(graphics, cursor.getTerrain(), cursor.getX(), cursor.getY());
+	    Interactable feature = cursor.getFeature();
+	    if (feature != null) {
+		drawInteractable(graphics, feature, cursor.getX(), cursor.getY());
+	    }
 	}
     }
 
@@ -68,11 +97,11 @@ public abstract class MainMapViewer extends JComponent
 			   startY + gridSize, 0, 0, imageWidth, imageHeight, this);
     }
 
-    protected void drawTerrain(final Graphics g, final TerrainType[][] terrainMap, final int x, final int y) {
-	if (terrainMap[x][y].hasImage()) {
-	    drawImageSquare(g, new Position(x, y), terrainMap[x][y].getImage());
+    protected void drawTerrain(final Graphics g, final TerrainType terrain, final int x, final int y) {
+	if (terrain.hasImage()) {
+	    drawImageSquare(g, Position.of(x, y), terrain.getImage());
 	} else {
-	    g.setColor(terrainMap[x][y].getColor());
+	    g.setColor(terrain.getColor());
 	    g.fillRect(x * gridSize + zoomOffsetX, y * gridSize + zoomOffsetY, gridSize, gridSize);
 	}
     }